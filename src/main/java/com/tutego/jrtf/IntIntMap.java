@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.util.Arrays;
+
+/**
+ * Minimal open-addressing hash map from non-negative {@code int} keys to {@code int} values.
+ * Keys and values live in two parallel primitive arrays, so lookups neither box nor allocate.
+ * Used by {@link RtfColorTable} to map 24-bit RGB values to color table indexes.
+ */
+final class IntIntMap {
+
+  /**
+   * Marks an unused slot. Keys must therefore not be negative.
+   */
+  private static final int FREE = -1;
+
+  private int[] keys;
+  private int[] values;
+  private int size;
+  private int mask;
+
+  /**
+   * Creates a map that can hold {@code expectedSize} entries without rehashing.
+   */
+  IntIntMap( int expectedSize ) {
+    int capacity = Integer.highestOneBit( Math.max( 4, expectedSize * 2 ) - 1 ) << 1;
+    allocate( capacity );
+  }
+
+  private void allocate( int capacity ) {
+    keys = new int[ capacity ];
+    Arrays.fill( keys, FREE );
+    values = new int[ capacity ];
+    mask = capacity - 1;
+  }
+
+  private int slot( int key ) {
+    int h = key * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * Returns the value for {@code key}, or {@code defaultValue} if the key is not present.
+   */
+  int get( int key, int defaultValue ) {
+    for ( int i = slot( key ); ; i = (i + 1) & mask ) {
+      int k = keys[ i ];
+      if ( k == key )
+        return values[ i ];
+      if ( k == FREE )
+        return defaultValue;
+    }
+  }
+
+  /**
+   * Associates {@code value} with {@code key}, replacing an older value.
+   */
+  void put( int key, int value ) {
+    if ( key < 0 )
+      throw new IllegalArgumentException( "Negative key " + key );
+
+    for ( int i = slot( key ); ; i = (i + 1) & mask ) {
+      int k = keys[ i ];
+      if ( k == key ) {
+        values[ i ] = value;
+        return;
+      }
+      if ( k == FREE ) {
+        keys[ i ] = key;
+        values[ i ] = value;
+        if ( ++size * 2 > keys.length )
+          rehash();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Associates {@code value} with {@code key} unless the key is already present.
+   */
+  void putIfAbsent( int key, int value ) {
+    if ( get( key, FREE ) == FREE )
+      put( key, value );
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void rehash() {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate( oldKeys.length * 2 );
+    size = 0;
+    for ( int i = 0; i < oldKeys.length; i++ )
+      if ( oldKeys[ i ] != FREE )
+        put( oldKeys[ i ], oldValues[ i ] );
+  }
+}
@@ -31,22 +31,39 @@
  */
 package com.tutego.jrtf;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import org.jspecify.annotations.Nullable;
 
@@ -70,6 +87,11 @@ public class Rtf {
                                            .onUnmappableCharacter( REPORT ) );
   final static String CHARSET1252 = charset.name();
 
+  /**
+   * Font 0 if no header fonts are registered.
+   */
+  static final String DEFAULT_FONT_NAME = "Times New Roman";
+
   /**
    * Associates an index with a color.
    */
@@ -100,6 +122,37 @@ public class Rtf {
    */
   private @Nullable String generator;
 
+  /**
+   * Write the document in compact mode, see {@link #compact()}.
+   */
+  private boolean compact;
+
+  /**
+   * Add colors referenced by value to the color table, see {@link #autoColorTable()}.
+   */
+  private boolean autoColorTable;
+
+  /**
+   * {@link #p(Object...)} appends to the last section, see {@link #coalesceParagraphs()}.
+   */
+  private boolean coalesceParagraphs;
+
+  /**
+   * {@code true} if {@link #p(Object...)} appends its paragraph to the last section, because it was
+   * started with {@link #newSection()} or in {@link #coalesceParagraphs()} mode.
+   */
+  private boolean sectionOpen;
+
+  /**
+   * Listener for timings and counters, see {@link #metrics(RtfMetrics)}.
+   */
+  private RtfMetrics metrics = RtfMetrics.NONE;
+
+  /**
+   * Limits of every output, see {@link #limits(RtfLimits)}.
+   */
+  private RtfLimits limits = RtfLimits.NONE;
+
   /**
    * Document info renderers.
    */
@@ -120,14 +173,57 @@ public class Rtf {
    */
   private final List<@Nullable Consumer<RtfOutput>> secfmtHdrftrRenderers = new ArrayList<>();
   /**
-   * and another list for the paragraphs itself.
+   * and another list for the paragraphs itself. The paragraphs of the last section grow
+   * with every {@link #p(Object...)}.
+   */
+  private final List<List<RtfPara>> sectionParagraphs = new ArrayList<>();
+
+  /**
+   * The paragraph lists of the first {@code sharedSections} sections are shared with other
+   * documents, see {@link #variant()}, and are copied before they are changed.
    */
-  private final List<RtfPara[]> sectionParagraphs = new ArrayList<>();
+  private int sharedSections;
+
+  /**
+   * {@code true} for a snapshot made by {@link #freeze()}, which can't be changed.
+   */
+  private final boolean frozen;
 
   /**
    * Private constructor. The user will not instantiate this class.
    */
-  private Rtf() {}
+  private Rtf() {
+    frozen = false;
+  }
+
+  /**
+   * Copies a document for {@link #freeze()} or {@link #variant()}. The collections are copied,
+   * but not the paragraph lists of the sections, which both documents share from now on. All
+   * collections are filled here, so the final fields publish them safely to every thread.
+   */
+  private Rtf( Rtf source, boolean frozen ) {
+    headerColors.putAll( source.headerColors );
+    headerFonts.addAll( source.headerFonts );
+    headerStyles.addAll( source.headerStyles );
+    lists.addAll( source.lists );
+    tableStyles.addAll( source.tableStyles );
+    generator = source.generator;
+    compact = source.compact;
+    coalesceParagraphs = source.coalesceParagraphs;
+    sectionOpen = source.sectionOpen;
+    autoColorTable = source.autoColorTable;
+    metrics = source.metrics;
+    limits = source.limits;
+    infoRenderers.addAll( source.infoRenderers );
+    docfmtRenderers.addAll( source.docfmtRenderers );
+    documentVariables.putAll( source.documentVariables );
+    secfmtHdrftrRenderers.addAll( source.secfmtHdrftrRenderers );
+    sectionParagraphs.addAll( source.sectionParagraphs );
+    sharedSections = sectionParagraphs.size();
+    if ( !source.frozen )
+      source.sharedSections = sharedSections;
+    this.frozen = frozen;
+  }
 
   /**
    * Creates a new RTF document.
@@ -145,7 +241,19 @@ public class Rtf {
    * @param rawText Raw text to escape.
    */
   static void asRtf( RtfOutput out, String rawText ) {
-    for ( int i = 0; i < rawText.length(); i++ ) {
+    asRtf( out, rawText, 0, rawText.length() );
+  }
+
+  /**
+   * Converts a range of a given char sequence into RTF format and writes it to the output buffer.
+   *
+   * @param out     Output buffer.
+   * @param rawText Raw text to escape.
+   * @param start   Index of the first char to convert.
+   * @param end     Index after the last char to convert.
+   */
+  static void asRtf( RtfOutput out, CharSequence rawText, int start, int end ) {
+    for ( int i = start; i < end; i++ ) {
       char c = rawText.charAt( i );
 
       if ( c == '\n' )
@@ -192,10 +300,69 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf generator( String name ) {
+    checkNotFrozen();
     this.generator = name;
     return this;
   }
 
+  /**
+   * Writes the document in a compact form. The output renders exactly like the normal
+   * output but is smaller:
+   * <ul>
+   * <li>line breaks that only make the RTF source readable are dropped,</li>
+   * <li>control words that repeat a default value (like the style {@code \s0} of a plain paragraph
+   *     or the empty cell shading {@code \clcbpat0}) are omitted,</li>
+   * <li>empty groups are dropped and adjacent runs with identical character formatting,
+   *     e.g. {@code p(bold("a"), bold("b"))}, are merged into one group.</li>
+   * </ul>
+   *
+   * @return {@code this}-reference.
+   */
+  public Rtf compact() {
+    checkNotFrozen();
+    this.compact = true;
+    return this;
+  }
+
+  /**
+   * Switches {@link #p(Object...)} to a body-builder mode: every paragraph goes into the current
+   * section, that is the last one started with {@code section(...)} or {@link #newSection()},
+   * and only {@link #newSection()} sets a section break. So a document built with thousands of
+   * {@code p(...)} calls is one section and not thousands of sections separated by {@code \sect}.
+   * Note that a paragraph appended after {@code section(secfmt, ...)} gets the formatting, header and
+   * footer of that section.
+   * <p>
+   * Without this mode every {@code p(...)} starts a new section of its own, unless it follows
+   * {@link #newSection()}.
+   *
+   * @return {@code this}-reference.
+   */
+  public Rtf coalesceParagraphs() {
+    checkNotFrozen();
+    this.coalesceParagraphs = true;
+    sectionOpen = !sectionParagraphs.isEmpty();
+    return this;
+  }
+
+  /**
+   * Builds the color table automatically. Colors referenced by value, like in
+   * {@code color( RtfHeader.color( 0xFF8000 ), "orange" )} or
+   * {@link RtfCell#backgroundColor(RtfHeaderColor)}, then don't have to be registered with
+   * {@link #header(RtfHeader...)}: every new RGB value gets the next free index behind
+   * the registered colors, equal values share one index.
+   * <p>
+   * Because the color table precedes the text, the document is rendered into memory
+   * before the header is written. Without this option colors referenced by value have to
+   * be registered, the output is streamed and an unknown color raises an {@link RtfException}.
+   *
+   * @return {@code this}-reference.
+   */
+  public Rtf autoColorTable() {
+    checkNotFrozen();
+    this.autoColorTable = true;
+    return this;
+  }
+
   /**
    * Sets RTF headers for the document.
    *
@@ -203,6 +370,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf header( RtfHeader... headers ) {
+    checkNotFrozen();
     for ( RtfHeader rtfHeader : headers ) {
       if ( rtfHeader instanceof RtfHeaderColor )
         headerColors.put( ((RtfHeaderColor) rtfHeader).colorindex, (RtfHeaderColor) rtfHeader );
@@ -213,6 +381,33 @@ public class Rtf {
     return this;
   }
 
+  /**
+   * Replaces RTF headers, e.g. in a {@link #variant()}: a color replaces the color with the
+   * same index, a font the font with the same number. Headers without a counterpart are added
+   * like with {@link #header(RtfHeader...)}.
+   *
+   * @param headers Sequence of headers.
+   * @return {@code this}-reference.
+   */
+  public Rtf replaceHeader( RtfHeader... headers ) {
+    checkNotFrozen();
+    for ( RtfHeader rtfHeader : headers ) {
+      if ( rtfHeader instanceof RtfHeaderFont ) {
+        RtfHeaderFont font = (RtfHeaderFont) rtfHeader;
+        int index = 0;
+        while ( index < headerFonts.size() && headerFonts.get( index ).number() != font.number() )
+          index++;
+        if ( index < headerFonts.size() ) {
+          headerFonts.set( index, font );
+          continue;
+        }
+      }
+      header( rtfHeader );
+    }
+
+    return this;
+  }
+
   /**
    * Writes stylesheet group, which contains information about styles used in the document.
    *
@@ -220,6 +415,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf headerStyles( RtfHeaderStyle... styles ) {
+    checkNotFrozen();
     for ( RtfHeaderStyle rtfStyle : styles ) {
       if ( headerStyles.contains( rtfStyle ) )
         continue;
@@ -238,17 +434,17 @@ public class Rtf {
   /**
    * Registers list definitions, so paragraphs can reference them with
    * {@link RtfTextPara#list(RtfList, int)}. Registering the same list twice has no effect.
+   * The lists are numbered in the order they are registered with this document, so one list
+   * can be used by many documents.
    *
    * @param lists Lists to register. Must not be {@code null}.
    * @return {@code this}-reference.
    */
   public Rtf lists( RtfList... lists ) {
+    checkNotFrozen();
     for ( RtfList list : lists ) {
-      if ( this.lists.contains( list ) )
-        continue;
-
-      list.overrideIndex = this.lists.size() + 1;
-      this.lists.add( list );
+      if ( !this.lists.contains( list ) )
+        this.lists.add( list );
     }
 
     return this;
@@ -262,6 +458,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf tableStyles( RtfTableStyle... styles ) {
+    checkNotFrozen();
     for ( RtfTableStyle style : styles ) {
       if ( tableStyles.contains( style ) )
         continue;
@@ -280,6 +477,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf info( RtfInfo... infos ) {
+    checkNotFrozen();
     for ( RtfInfo rtfInfo : infos )
       infoRenderers.add( rtfInfo::rtf );
 
@@ -295,6 +493,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf docvar( String key, String value ) {
+    checkNotFrozen();
     if ( key == null || key.isEmpty() )
       throw new IllegalArgumentException( "Document variable key must not be empty" );
     documentVariables.put( key, value == null ? "" : value );
@@ -309,6 +508,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf documentFormatting( RtfDocfmt... documentFormattings ) {
+    checkNotFrozen();
     for ( RtfDocfmt rtfDocfmt : documentFormattings )
       docfmtRenderers.add( rtfDocfmt::rtf );
 
@@ -335,6 +535,63 @@ public class Rtf {
     return section( null, paragraphs.toArray( new RtfPara[ paragraphs.size() ] ) );
   }
 
+  /**
+   * Creates a new section whose paragraphs are taken from {@code paragraphs} only when the
+   * document is written. The {@link Iterable} is iterated each time the document is written
+   * and every paragraph can be garbage collected right after it is written, so the paragraphs
+   * never have to be in memory at once.
+   *
+   * @param paragraphs Paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   */
+  public Rtf section( Iterable<? extends RtfPara> paragraphs ) {
+    return section( null, paragraphs );
+  }
+
+  /**
+   * Creates a new formatted section whose paragraphs are taken from {@code paragraphs} only
+   * when the document is written, see {@link #section(Iterable)}.
+   *
+   * @param secfmtHdrftr Formattings. May be {@code null} (the section gets no extra formatting).
+   * @param paragraphs   Paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   */
+  public Rtf section( @Nullable RtfSectionFormatAndHeaderFooter secfmtHdrftr, Iterable<? extends RtfPara> paragraphs ) {
+    if ( paragraphs == null )
+      throw new IllegalArgumentException( "Paragraphs can't be null" );
+    return section( secfmtHdrftr, RtfPara.sequence( () -> StreamSupport.stream( paragraphs.spliterator(), false ) ) );
+  }
+
+  /**
+   * Creates a new section whose paragraphs are generated while the document is written:
+   * the supplier is called for a new stream each time the document is written and the stream
+   * is closed afterwards. Generating and writing the paragraphs is one pass, for example
+   * <pre>
+   * rtf().section( () -&gt; orders.stream().map( o -&gt; p( o.id(), tab(), o.total() ) ) ).out( writer );
+   * </pre>
+   *
+   * @param paragraphs Supplies the stream of paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   */
+  public Rtf section( Supplier<? extends Stream<? extends RtfPara>> paragraphs ) {
+    return section( null, paragraphs );
+  }
+
+  /**
+   * Creates a new formatted section whose paragraphs are generated while the document is
+   * written, see {@link #section(Supplier)}.
+   *
+   * @param secfmtHdrftr Formattings. May be {@code null} (the section gets no extra formatting).
+   * @param paragraphs   Supplies the stream of paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   */
+  public Rtf section( @Nullable RtfSectionFormatAndHeaderFooter secfmtHdrftr,
+                      Supplier<? extends Stream<? extends RtfPara>> paragraphs ) {
+    if ( paragraphs == null )
+      throw new IllegalArgumentException( "Paragraph supplier can't be null" );
+    return section( secfmtHdrftr, RtfPara.sequence( paragraphs ) );
+  }
+
   /**
    * Creates a new formatted section with paragraphs and appends them to the RTF document.
    *
@@ -343,6 +600,7 @@ public class Rtf {
    * @return {@code this}-reference.
    */
   public Rtf section( @Nullable RtfSectionFormatAndHeaderFooter secfmtHdrftr, RtfPara... paragraphs ) {
+    checkNotFrozen();
     if ( paragraphs == null )
       throw new IllegalArgumentException( "There has to be atleast one paragraph in a section" );
 
@@ -355,32 +613,186 @@ public class Rtf {
 
     // then the paragraphs itself to the second list
 
-    sectionParagraphs.add( paragraphs );
+    sectionParagraphs.add( new ArrayList<>( Arrays.asList( paragraphs ) ) );
+    sectionOpen = coalesceParagraphs;
+
+    return this;
+  }
+
+  /**
+   * Starts a new section. The following {@link #p(Object...)} calls append their paragraphs to it.
+   *
+   * @return {@code this}-reference.
+   */
+  public Rtf newSection() {
+    section( null, new RtfPara[ 0 ] );
+    sectionOpen = true;
+    return this;
+  }
 
+  /**
+   * Starts a new formatted section, e.g. with another page orientation or header.
+   * The following {@link #p(Object...)} calls append their paragraphs to it.
+   *
+   * @param secfmtHdrftr Formattings of the new section. Must not be {@code null}.
+   * @return {@code this}-reference.
+   */
+  public Rtf newSection( RtfSectionFormatAndHeaderFooter secfmtHdrftr ) {
+    if ( secfmtHdrftr == null )
+      throw new IllegalArgumentException( "Section formatting can't be null" );
+    section( secfmtHdrftr, new RtfPara[ 0 ] );
+    sectionOpen = true;
     return this;
   }
 
   /**
-   * Appends a sequence of text in a new paragraph to the RTF document.
-   * A convenience method which is equals to {@code section(RtfPara.p(texts));}.
+   * Appends a sequence of text in a new paragraph. Like {@code section(p(texts))} the paragraph
+   * gets a new section of its own, unless the last section was started with {@link #newSection()}
+   * or {@link #coalesceParagraphs()} is set; then the paragraph is appended to that section.
    *
    * @param texts Text to put in paragraph.
    * @return {@code this}-reference.
    */
   public Rtf p( Object... texts ) {
-    return section( RtfPara.p( texts ) );
+    return appendToCurrentSection( RtfPara.p( texts ) );
   }
 
   /**
-   * Appends a sequence of text in a new paragraph to the RTF document.
-   * A convenience method which is equals to {@code section(RtfPara.p( style, texts));}.
+   * Appends a sequence of text in a new paragraph with a style to the current section,
+   * see {@link #p(Object...)}.
    *
    * @param style Style sheet to set in paragraph.
    * @param texts Text to put in paragraph.
    * @return {@code this}-reference.
    */
   public Rtf p( RtfHeaderStyle style, Object... texts ) {
-    return section( RtfPara.p( style, texts ) );
+    return appendToCurrentSection( RtfPara.p( style, texts ) );
+  }
+
+  /**
+   * Returns an immutable snapshot of this document that can be written by many threads at the
+   * same time, e.g. to a file and to an HTTP response. Later changes of this document don't
+   * change the snapshot, and the snapshot itself rejects all changes. Nothing is copied when the
+   * snapshot is written: images, templates and embedded fonts are read once, by the first thread
+   * that needs them, and shared afterwards.
+   * <p>
+   * Paragraphs, headers and other parts are not copied; they must not be changed while the
+   * snapshot is written.
+   *
+   * @return Frozen snapshot, or {@code this} if this document is already frozen.
+   */
+  public Rtf freeze() {
+    return frozen ? this : new Rtf( this, true );
+  }
+
+  /**
+   * Derives a new document from this one, e.g. a variant in another language or with other
+   * colors. The variant starts with the same headers, settings and sections and can then be
+   * changed like any document: {@link #replaceSection(int, RtfPara...)} exchanges whole
+   * sections, {@link #replaceHeader(RtfHeader...)} exchanges colors and fonts.
+   * <pre>
+   * Rtf manual = rtf().header( color( 0x003366 ).at( 1 ) ).section( intro ).section( chapters ... );
+   * Rtf german = manual.variant().replaceSection( 0, introDe ).replaceHeader( color( 0x990000 ).at( 1 ) );
+   * </pre>
+   * The paragraphs of the sections are not copied but shared by both documents, so a variant
+   * only needs memory for what is different. A section is copied only when paragraphs are
+   * appended to it with {@link #p(Object...)}. The shared paragraph objects themselves must
+   * not be changed afterwards.
+   *
+   * @return New document.
+   */
+  public Rtf variant() {
+    return new Rtf( this, false );
+  }
+
+  /**
+   * Replaces the paragraphs of a section, keeping its formatting.
+   *
+   * @param index      Index of the section, starting with {@code 0}.
+   * @param paragraphs New paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if there is no section {@code index}.
+   */
+  public Rtf replaceSection( int index, RtfPara... paragraphs ) {
+    checkNotFrozen();
+    checkSectionIndex( index );
+    if ( paragraphs == null )
+      throw new IllegalArgumentException( "Paragraphs can't be null" );
+    sectionParagraphs.set( index, new ArrayList<>( Arrays.asList( paragraphs ) ) );
+    return this;
+  }
+
+  /**
+   * Replaces the formatting and paragraphs of a section.
+   *
+   * @param index        Index of the section, starting with {@code 0}.
+   * @param secfmtHdrftr New formattings. May be {@code null} (the section gets no extra formatting).
+   * @param paragraphs   New paragraphs. Must not be {@code null}.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if there is no section {@code index}.
+   */
+  public Rtf replaceSection( int index, @Nullable RtfSectionFormatAndHeaderFooter secfmtHdrftr, RtfPara... paragraphs ) {
+    replaceSection( index, paragraphs );
+    secfmtHdrftrRenderers.set( index, secfmtHdrftr == null ? null : secfmtHdrftr::rtf );
+    return this;
+  }
+
+  private void checkSectionIndex( int index ) {
+    if ( index < 0 || index >= sectionParagraphs.size() )
+      throw new IllegalArgumentException( "Section " + index + " doesn't exist, there are " + sectionParagraphs.size() + " sections" );
+  }
+
+  /**
+   * @throws RtfException if this document is a frozen snapshot.
+   */
+  private void checkNotFrozen() {
+    if ( frozen )
+      throw new RtfException( "Document is frozen and can't be changed, build a new one or change the original" );
+  }
+
+  private Rtf appendToCurrentSection( RtfPara paragraph ) {
+    checkNotFrozen();
+    if ( sectionParagraphs.isEmpty() || !sectionOpen )
+      return section( paragraph );
+    int last = sectionParagraphs.size() - 1;
+    if ( last < sharedSections ) {
+      // Copy on write, the other documents keep their paragraphs
+      sectionParagraphs.set( last, new ArrayList<>( sectionParagraphs.get( last ) ) );
+      sharedSections = last;
+    }
+    sectionParagraphs.get( last ).add( paragraph );
+    return this;
+  }
+
+  /**
+   * Reports timings and counters of every output of this document to a listener,
+   * e.g. a {@link RtfMetricsAggregator}.
+   *
+   * @param metrics Listener. {@link RtfMetrics#NONE} switches reporting off.
+   * @return {@code this}-reference.
+   */
+  public Rtf metrics( RtfMetrics metrics ) {
+    checkNotFrozen();
+    if ( metrics == null )
+      throw new IllegalArgumentException( "Metrics can't be null, use RtfMetrics.NONE" );
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Limits every output of this document in time, size and number of paragraphs, and allows to
+   * cancel it. An output that exceeds a limit or whose thread is interrupted is aborted with
+   * a {@link RtfAbortedException}.
+   *
+   * @param limits Limits. {@link RtfLimits#NONE} switches the checks off.
+   * @return {@code this}-reference.
+   */
+  public Rtf limits( RtfLimits limits ) {
+    checkNotFrozen();
+    if ( limits == null )
+      throw new IllegalArgumentException( "Limits can't be null, use RtfLimits.NONE" );
+    this.limits = limits;
+    return this;
   }
 
   /**
@@ -396,7 +808,213 @@ public class Rtf {
       throw new IllegalArgumentException( "Appendable is not allowed to be null" );
 
     try ( @Nullable Closeable closeable = out instanceof Closeable ? (Closeable) out : null ) {
-      writeRtfDocument( new RtfOutput( out ) );
+      writeRtfDocument( out, null );
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Writes the RTF document like {@link #stream(Appendable, RtfFlushPolicy)} and flushes the
+   * target after each section.
+   *
+   * @param out Destination of this RTF output, not closed. Must not be {@code null}.
+   * @throws IllegalArgumentException if {@code out} is {@code null}.
+   */
+  public void stream( Appendable out ) {
+    stream( out, RtfFlushPolicy.afterEachSection() );
+  }
+
+  /**
+   * Writes the RTF document to an {@link Appendable} and flushes it while the document is
+   * written, if it is {@link java.io.Flushable}, e.g. the {@link java.io.Writer} of a HTTP response.
+   * So the client receives the first sections while later ones are still written. Unlike
+   * {@link #out(Appendable)} the target is not closed, only flushed at the end.
+   * <p>
+   * With {@link #autoColorTable()} the color table comes first but is only known at the end,
+   * so the document is written at once at the end.
+   *
+   * @param out    Destination of this RTF output, not closed. Must not be {@code null}.
+   * @param policy When to flush. Must not be {@code null}.
+   * @throws IllegalArgumentException if {@code out} or {@code policy} is {@code null}.
+   */
+  public void stream( Appendable out, RtfFlushPolicy policy ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "Appendable is not allowed to be null" );
+    if ( policy == null )
+      throw new IllegalArgumentException( "Flush policy is not allowed to be null" );
+
+    RtfFlushingWriter writer = new RtfFlushingWriter( out, policy );
+    writeRtfDocument( writer, null );
+    try {
+      writer.flush();
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Writes the RTF document like {@link #out(Appendable)} and tells which parts the bytes of
+   * the document come from: header tables, fonts, pictures, table definitions, text, fields
+   * and sections. The report is collected while the document is written, in the same pass.
+   *
+   * @param out Destination of this RTF output. Must not be {@code null}.
+   * @return Report of the written document.
+   * @throws IllegalArgumentException if {@code out} is {@code null}.
+   */
+  public RtfSizeReport outWithSizeReport( Appendable out ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "Appendable is not allowed to be null" );
+
+    try ( @Nullable Closeable closeable = out instanceof Closeable ? (Closeable) out : null ) {
+      RtfSizeReport.Recorder sizes = new RtfSizeReport.Recorder();
+      long bytes = writeRtfDocument( out, sizes );
+      return sizes.report( bytes );
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Writes the RTF document like {@link #out(Appendable)} and computes the SHA-256 digest of
+   * the output while it is written. The characters are digested as Windows-1252 bytes, so for
+   * a file the result is the SHA-256 of the file. jRTF writes the same document always the
+   * same way, so the digest can identify documents already stored.
+   *
+   * @param out Destination of this RTF output. Must not be {@code null}.
+   * @return SHA-256 digest (32 bytes) of the written document.
+   * @throws IllegalArgumentException if {@code out} is {@code null}.
+   * @see #digest()
+   */
+  public byte[] outWithDigest( Appendable out ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "Appendable is not allowed to be null" );
+
+    try ( @Nullable Closeable closeable = out instanceof Closeable ? (Closeable) out : null ) {
+      RtfDigestWriter digest = new RtfDigestWriter( out );
+      writeRtfDocument( digest, null );
+      return digest.digest();
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Computes the SHA-256 digest of the RTF document like {@link #outWithDigest(Appendable)},
+   * without keeping the output. Useful to check if a document has to be written at all.
+   *
+   * @return SHA-256 digest (32 bytes) of the document.
+   */
+  public byte[] digest() {
+    RtfDigestWriter digest = new RtfDigestWriter( null );
+    writeRtfDocument( digest, null );
+    return digest.digest();
+  }
+
+  /**
+   * Writes the RTF document into a file without blocking the caller, see
+   * {@link #outAsync(Path, Executor)}. The document is rendered in the common
+   * {@link ForkJoinPool}.
+   *
+   * @param target File to write, an existing file is replaced. Must not be {@code null}.
+   * @return Future with the number of bytes written; completes exceptionally with an
+   *         {@link RtfException} if writing fails.
+   */
+  public CompletableFuture<Long> outAsync( Path target ) {
+    return outAsync( target, ForkJoinPool.commonPool() );
+  }
+
+  /**
+   * Writes the RTF document into a file without blocking the caller. The document is rendered
+   * by {@code executor} into one of two buffers; a full buffer is written with an
+   * {@link java.nio.channels.AsynchronousFileChannel} while the next part is rendered into the
+   * other buffer. The future completes when the file is written and closed.
+   * <p>
+   * The document is written into a temporary file next to {@code target} that replaces the target
+   * when the document is complete. If writing fails, an existing target is left as it was.
+   *
+   * @param target   File to write, an existing file is replaced. Must not be {@code null}.
+   * @param executor Renders the document. Must not be {@code null}.
+   * @return Future with the number of bytes written; completes exceptionally with an
+   *         {@link RtfException} if writing fails.
+   */
+  public CompletableFuture<Long> outAsync( Path target, Executor executor ) {
+    if ( target == null )
+      throw new IllegalArgumentException( "Target file is not allowed to be null" );
+    if ( executor == null )
+      throw new IllegalArgumentException( "Executor is not allowed to be null" );
+
+    return CompletableFuture.supplyAsync( () -> {
+      try {
+        return outAsyncFile( target );
+      }
+      catch ( IOException e ) {
+        throw new RtfException( e );
+      }
+    }, executor );
+  }
+
+  /**
+   * Writes into a sibling of {@code target} that replaces the target once the document is complete.
+   */
+  private long outAsyncFile( Path target ) throws IOException {
+    Path temp = RtfFiles.sibling( target );
+    boolean moved = false;
+    try {
+      RtfAsyncFileWriter writer = RtfAsyncFileWriter.open( temp );
+      try {
+        writeRtfDocument( writer, null );
+      }
+      catch ( RuntimeException | Error e ) {
+        // A failing close() must not hide why the document failed
+        try { writer.close(); } catch ( IOException | RuntimeException closeFailure ) { e.addSuppressed( closeFailure ); }
+        throw e;
+      }
+      writer.close();
+      RtfFiles.replace( temp, target );
+      moved = true;
+      return writer.bytes();
+    }
+    finally {
+      if ( !moved )
+        try { Files.deleteIfExists( temp ); } catch ( IOException e ) { /* the failure of the document matters */ }
+    }
+  }
+
+  /**
+   * Writes the RTF document GZIP compressed with the default compression level,
+   * see {@link #outGzip(OutputStream, int)}.
+   *
+   * @param out Destination of the compressed document. Must not be {@code null}.
+   * @throws IllegalArgumentException if {@code out} is {@code null}.
+   */
+  public void outGzip( OutputStream out ) {
+    outGzip( out, Deflater.DEFAULT_COMPRESSION );
+  }
+
+  /**
+   * Writes the RTF document GZIP compressed into an {@link OutputStream}. The document is
+   * compressed while it is written, there is no uncompressed copy of the document.
+   * The stream is closed after writing. For many documents in one archive use {@link RtfZip}.
+   *
+   * @param out   Destination of the compressed document. Must not be {@code null}.
+   * @param level Compression level from {@code 0} (no compression) to {@code 9} (best compression),
+   *              or {@link Deflater#DEFAULT_COMPRESSION}.
+   * @throws IllegalArgumentException if {@code out} is {@code null} or {@code level} is not a compression level.
+   */
+  public void outGzip( OutputStream out, int level ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "OutputStream is not allowed to be null" );
+    RtfZip.checkLevel( level );
+
+    try ( Writer writer = new BufferedWriter( new OutputStreamWriter( new GZIPOutputStream( out, 8192 ) {
+      { def.setLevel( level ); }
+    }, charset ) ) ) {
+      writeRtfDocument( writer, null );
     }
     catch ( IOException e ) {
       throw new RtfException( e );
@@ -410,7 +1028,7 @@ public class Rtf {
    */
   public CharSequence out() {
     StringBuilder result = new StringBuilder( 4096 );
-    writeRtfDocument( new RtfOutput( result ) );
+    writeRtfDocument( result, null );
     return result.toString();
   }
 
@@ -436,8 +1054,109 @@ public class Rtf {
 
   /**
    * Writes the complete RTF document.
+   *
+   * @param sizes Collects the size report, or {@code null}.
+   * @return Number of characters written if they were counted for metrics, JFR or the size report, otherwise {@code -1}.
+   */
+  long writeRtfDocument( Appendable target, RtfSizeReport.@Nullable Recorder sizes ) {
+    RtfMetrics metrics = this.metrics;
+    RtfLimits limits = this.limits;
+    @Nullable Object event = RtfFlightRecorder.DOCUMENT.begin();
+    // Checked once, not for every section
+    boolean sectionEvents = RtfFlightRecorder.SECTION.enabled();
+    @Nullable RtfCountingWriter counter = metrics == RtfMetrics.NONE && event == null && sizes == null && limits == RtfLimits.NONE
+                                          ? null : new RtfCountingWriter( target );
+    RtfOutput out = new RtfOutput( counter != null ? counter : target, compact );
+    out.counter = counter;
+    out.sizes = sizes;
+    out.flushing = target instanceof RtfFlushingWriter ? (RtfFlushingWriter) target : null;
+    if ( limits != RtfLimits.NONE )
+      out.governor = new RtfLimits.Governor( limits );
+    if ( metrics != RtfMetrics.NONE )
+      out.measure( metrics );
+    long start = out.startNanos();
+
+    // Aborted documents are reported too, with the bytes written so far
+    try {
+      RtfColorTable colorTable = new RtfColorTable( headerColors, autoColorTable );
+      out.colorTable = colorTable;
+      out.defaultFontName = defaultFontName();
+      out.fontNames = fontNames();
+      out.listNumbers = listNumbers();
+
+      out.open();   // '{' <header> <document>'}'
+
+      if ( autoColorTable ) {
+        // The document may add colors, so it has to be complete before the color table is written
+        StringBuilder document = new StringBuilder( 4096 );
+        RtfOutput documentOut = out.buffered( document );
+        documentOut.sizes = sizes;
+        writeDocument( documentOut, sectionEvents );
+        out.enterSize( RtfSizeReport.Category.HEADER, null );
+        writeHeader( out, colorTable );
+        out.exitSize();
+        out.enterSize( null, null );  // counted while it was written into the buffer
+        out.append( document );
+        out.exitSize();
+      }
+      else {
+        out.enterSize( RtfSizeReport.Category.HEADER, null );
+        writeHeader( out, colorTable );
+        out.exitSize();
+        writeDocument( out, sectionEvents );
+      }
+
+      // We are done
+
+      out.close();
+      out.flush();
+    }
+    finally {
+      out.phase( RtfMetrics.Phase.DOCUMENT, -1, start );
+      RtfFlightRecorder.DOCUMENT.end( event, counter != null ? counter.count() : -1L, sectionParagraphs.size() );
+    }
+
+    if ( counter != null ) {
+      out.count( RtfMetrics.Counter.BYTES, counter.count() );
+      out.reportCounters();
+    }
+    return counter != null ? counter.count() : -1;
+  }
+
+  /**
+   * Returns the names of the fonts of the header by number.
+   */
+  private Map<Integer, String> fontNames() {
+    Map<Integer, String> names = new HashMap<>();
+    for ( RtfHeaderFont font : headerFonts )
+      names.put( font.number(), font.name() );
+    return names;
+  }
+
+  /**
+   * Numbers the registered lists in registration order, starting with {@code 1}.
+   */
+  private Map<RtfList, Integer> listNumbers() {
+    Map<RtfList, Integer> numbers = new IdentityHashMap<>();
+    for ( int i = 0; i < lists.size(); i++ )
+      numbers.put( lists.get( i ), i + 1 );
+    return numbers;
+  }
+
+  /**
+   * Returns the name of font 0, the default font given by {@code \deff0}.
+   */
+  private String defaultFontName() {
+    for ( RtfHeaderFont font : headerFonts )
+      if ( font.number() == 0 )
+        return font.name();
+    return DEFAULT_FONT_NAME;
+  }
+
+  /**
+   * Writes the {@code <header>} of the document.
    */
-  private void writeRtfDocument( RtfOutput out ) {
+  private void writeHeader( RtfOutput out, RtfColorTable colorTable ) {
     /*
      * <File>     := '{' <header> <document>'}'
      * <header>   := \rtf <charset> \deff? <fonttbl> <colortbl> <stylesheet>?
@@ -462,7 +1181,7 @@ public class Rtf {
      *               <generator>?
      */
 
-    out.open();   // '{' <header> <document>'}'
+    long start = out.startNanos();
 
     // The RTF version will always be 1 and the
     // character is \ansi = Windows 1252
@@ -480,7 +1199,7 @@ public class Rtf {
     out.nl().open( RtfControlWords.FONT_TABLE );
 
     if ( headerFonts.isEmpty() )
-      out.entry( RtfControlWords.FONT, "0 Times New Roman" );
+      out.entry( RtfControlWords.FONT, "0 " + DEFAULT_FONT_NAME );
     else {
       for ( RtfHeaderFont font : headerFonts )
         font.writeFontInfo( out );
@@ -491,23 +1210,8 @@ public class Rtf {
     /*
      * <colortbl> := '{' \colortbl <colordef>+ '}'
      */
-    if ( !headerColors.isEmpty() ) {
-      out.nl().open( RtfControlWords.COLOR_TABLE );
-
-      int maxColorIndex = headerColors.lastKey();
-
-      for ( int i = 0; i <= maxColorIndex; i++ ) {
-        RtfHeaderColor color = headerColors.get( i );
-        if ( color == null )
-          out.semi();
-        else
-          color.writeColordef( out );
-      }
-
-      out.close();
-    }
-    else
-      out.nl().tag( RtfControlWords.COLOR_TABLE, ";" );
+    out.nl();
+    colorTable.write( out );
 
     /*
      * <stylesheet> := '{' \ stylesheet <style>+ '}'
@@ -526,11 +1230,12 @@ public class Rtf {
      */
     if ( !lists.isEmpty() ) {
       out.nl().open( RtfControlWords.LIST_TABLE_DESTINATION ).nl();
-      for ( RtfList list : lists )
-        list.writeListDefinition( out );
+      // Numbered by the position in this document, so a list shared by documents is written the same way by each
+      for ( int i = 0; i < lists.size(); i++ )
+        lists.get( i ).writeListDefinition( out, i + 1 );
       out.close().nl().open( RtfControlWords.LIST_OVERRIDE_TABLE_DESTINATION ).nl();
-      for ( RtfList list : lists )
-        list.writeListOverride( out );
+      for ( int i = 0; i < lists.size(); i++ )
+        lists.get( i ).writeListOverride( out, i + 1 );
       out.close();
     }
 
@@ -543,20 +1248,32 @@ public class Rtf {
     }
 
     out.nl();
+    out.phase( RtfMetrics.Phase.HEADER, -1, start );
+  }
 
+  /**
+   * Writes the {@code <document>} part: info, document formatting, variables and sections.
+   */
+  private void writeDocument( RtfOutput out, boolean sectionEvents ) {
     // Write <info>
 
+    long start = out.startNanos();
+    out.enterSize( RtfSizeReport.Category.INFO, null );
     if ( !infoRenderers.isEmpty() ) {
       out.open( RtfControlWords.INFO_DESTINATION );
       for ( Consumer<RtfOutput> infoRenderer : infoRenderers )
         infoRenderer.accept( out );
       out.close().nl();
+      out.phase( RtfMetrics.Phase.INFO, -1, start );
     }
 
     // Write <docfmt>
 
+    start = out.startNanos();
     for ( Consumer<RtfOutput> docfmtRenderer : docfmtRenderers )
       docfmtRenderer.accept( out );
+    if ( !docfmtRenderers.isEmpty() )
+      out.phase( RtfMetrics.Phase.DOCFMT, -1, start );
 
     // Write document variables
 
@@ -568,6 +1285,7 @@ public class Rtf {
            .close().nl();
       }
     }
+    out.exitSize();
 
     /*
      * <document> := <info>? <docfmt>* <section>+
@@ -575,28 +1293,40 @@ public class Rtf {
      */
 
     for ( int sectionCnt = 0; sectionCnt < sectionParagraphs.size(); sectionCnt++ ) {
-      RtfPara[] paragraphs = sectionParagraphs.get( sectionCnt );
+      List<RtfPara> paragraphs = sectionParagraphs.get( sectionCnt );
       @Nullable Consumer<RtfOutput> secfmtHdrftrRenderer = secfmtHdrftrRenderers.get( sectionCnt );
+      start = out.startNanos();
+      @Nullable Object event = RtfFlightRecorder.SECTION.begin( sectionEvents );
+      try {
+        out.enterSize( RtfSizeReport.Category.SECTION, "section " + (sectionCnt + 1) );
+
+        // <secfmt>* <hdrftr>?
 
-      // <secfmt>* <hdrftr>?
+        if ( secfmtHdrftrRenderer != null )
+          secfmtHdrftrRenderer.accept( out );
 
-      if ( secfmtHdrftrRenderer != null )
-        secfmtHdrftrRenderer.accept( out );
+        // <para>+
 
-      // <para>+
+        for ( RtfPara rtfPara : paragraphs ) {
+          rtfPara.rtf( out, true );
+          out.paragraphWritten( rtfPara );
+        }
 
-      for ( RtfPara rtfPara : paragraphs )
-        rtfPara.rtf( out, true );
+        out.exitSize();
+      }
+      finally {
+        out.phase( RtfMetrics.Phase.SECTION, sectionCnt, start );
+        RtfFlightRecorder.SECTION.end( event, sectionCnt );
+      }
 
       // write \sect between sections but not at the end
 
       if ( sectionCnt != sectionParagraphs.size() - 1 )
         out.ctrl( RtfControlWords.SECTION );
-    }
-
-    // We are done
 
-    out.close();
+      out.sectionWritten();
+      out.checkLimits();
+    }
   }
 
   /**
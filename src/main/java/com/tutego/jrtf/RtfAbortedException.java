@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+/**
+ * Thrown if writing a document or template is aborted because of its {@link RtfLimits}.
+ */
+public class RtfAbortedException extends RtfException {
+  private static final long serialVersionUID = 5177061837441093214L;
+
+  /**
+   * Why the output was aborted.
+   */
+  public enum Reason {
+    /** The output took longer than {@link RtfLimits#timeout(java.time.Duration)}. */
+    TIMEOUT,
+    /** The output got larger than {@link RtfLimits#maxBytes(long)}. */
+    MAX_BYTES,
+    /** The document had more than {@link RtfLimits#maxParagraphs(long)} paragraphs. */
+    MAX_PARAGRAPHS,
+    /** The writing thread was interrupted. */
+    INTERRUPTED,
+    /** The output was cancelled, see {@link RtfLimits#cancelWhen(java.util.function.BooleanSupplier)}. */
+    CANCELLED
+  }
+
+  private final Reason reason;
+
+  /**
+   * RTF exception with reason and message.
+   *
+   * @param reason  Why the output was aborted.
+   * @param message Error message.
+   */
+  public RtfAbortedException( Reason reason, String message ) {
+    super( message );
+    this.reason = reason;
+  }
+
+  /**
+   * Returns why the output was aborted.
+   *
+   * @return Reason.
+   */
+  public Reason reason() {
+    return reason;
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Writes characters Windows-1252 encoded into a file with an {@link AsynchronousFileChannel},
+ * see {@link Rtf#outAsync(Path)}. Two buffers take turns: while one is written to the disk, the
+ * document is rendered into the other one. A buffer is only filled again once its previous
+ * write is finished.
+ * <p>
+ * The direct byte buffers are taken from a small pool shared by all writers and given back
+ * when a writer is closed, so many documents written at once don't each allocate direct memory.
+ */
+final class RtfAsyncFileWriter extends Writer {
+
+  /** Size of each of the two buffers. */
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Idle direct buffers kept in the shared pool; more are allocated when needed, but not kept. */
+  static final int MAX_POOLED_BUFFERS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static final int POOLED_BUFFER_BYTES =
+      (int) Math.ceil( BUFFER_SIZE * (double) Rtf.charset.newEncoder().maxBytesPerChar() );
+  private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger POOLED = new AtomicInteger();
+
+  private final AsynchronousFileChannel channel;
+  private final CharsetEncoder encoder = Rtf.charset.newEncoder()
+                                                    .onMalformedInput( CodingErrorAction.REPLACE )
+                                                    .onUnmappableCharacter( CodingErrorAction.REPLACE );
+  private final char[] chars;
+  private int count;
+  private final Slot[] slots;
+  private int current;
+  private long position;
+  private boolean closed;
+
+  /**
+   * A buffer and its running write.
+   */
+  private static final class Slot {
+    final ByteBuffer buffer;
+    @Nullable Future<Integer> write;
+    long position;
+
+    Slot( ByteBuffer buffer ) {
+      this.buffer = buffer;
+    }
+  }
+
+  private RtfAsyncFileWriter( AsynchronousFileChannel channel, int bufferSize ) {
+    this.channel = channel;
+    this.chars = new char[ bufferSize ];
+    int bytes = (int) Math.ceil( bufferSize * (double) encoder.maxBytesPerChar() );
+    slots = new Slot[]{ new Slot( borrow( bytes ) ), new Slot( borrow( bytes ) ) };
+  }
+
+  /**
+   * Buffers of the default size come from the pool, others are heap buffers.
+   */
+  private static ByteBuffer borrow( int bytes ) {
+    if ( bytes != POOLED_BUFFER_BYTES )
+      return ByteBuffer.allocate( bytes );
+    ByteBuffer buffer = POOL.poll();
+    if ( buffer == null )
+      return ByteBuffer.allocateDirect( bytes );
+    POOLED.decrementAndGet();
+    return buffer;
+  }
+
+  private static void release( ByteBuffer buffer ) {
+    if ( !buffer.isDirect() )
+      return;
+    if ( POOLED.incrementAndGet() <= MAX_POOLED_BUFFERS )
+      POOL.offer( buffer );
+    else
+      POOLED.decrementAndGet();
+  }
+
+  static int pooledBuffers() {
+    return POOLED.get();
+  }
+
+  /**
+   * Opens or replaces the file {@code target}.
+   */
+  static RtfAsyncFileWriter open( Path target ) throws IOException {
+    return open( target, BUFFER_SIZE );
+  }
+
+  static RtfAsyncFileWriter open( Path target, int bufferSize ) throws IOException {
+    AsynchronousFileChannel channel = AsynchronousFileChannel.open( target, StandardOpenOption.WRITE,
+                                                                    StandardOpenOption.CREATE,
+                                                                    StandardOpenOption.TRUNCATE_EXISTING );
+    return new RtfAsyncFileWriter( channel, bufferSize );
+  }
+
+  /**
+   * Number of bytes handed to the file so far.
+   */
+  long bytes() {
+    return position;
+  }
+
+  @Override public void write( char[] cbuf, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      int n = Math.min( len, chars.length - count );
+      System.arraycopy( cbuf, off, chars, count, n );
+      count += n;
+      off += n;
+      len -= n;
+      if ( count == chars.length )
+        submit();
+    }
+  }
+
+  @Override public void write( int c ) throws IOException {
+    chars[ count++ ] = (char) c;
+    if ( count == chars.length )
+      submit();
+  }
+
+  @Override public void write( String str, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      int n = Math.min( len, chars.length - count );
+      str.getChars( off, off + n, chars, count );
+      count += n;
+      off += n;
+      len -= n;
+      if ( count == chars.length )
+        submit();
+    }
+  }
+
+  @Override public Writer append( @Nullable CharSequence csq, int start, int end ) throws IOException {
+    CharSequence chars = csq == null ? "null" : csq;
+    if ( chars instanceof String ) {
+      write( (String) chars, start, end - start );
+      return this;
+    }
+    for ( int i = start; i < end; i++ )
+      write( chars.charAt( i ) );
+    return this;
+  }
+
+  @Override public Writer append( @Nullable CharSequence csq ) throws IOException {
+    CharSequence chars = csq == null ? "null" : csq;
+    return append( chars, 0, chars.length() );
+  }
+
+  /**
+   * Encodes the collected characters into the free buffer and starts writing it.
+   */
+  private void submit() throws IOException {
+    if ( count == 0 )
+      return;
+    Slot slot = slots[ current ];
+    ByteBuffer buffer = slot.buffer;
+    await( slot );   // the buffer is free once its last write is done
+    buffer.clear();
+    encoder.reset();
+    encoder.encode( CharBuffer.wrap( chars, 0, count ), buffer, true );
+    encoder.flush( buffer );
+    buffer.flip();
+    count = 0;
+
+    int length = buffer.remaining();
+    slot.position = position;
+    slot.write = channel.write( buffer, position );
+    position += length;
+    current = 1 - current;
+  }
+
+  /**
+   * Waits for the write of {@code slot}. A write may be partial; the rest is written then.
+   */
+  private void await( Slot slot ) throws IOException {
+    Future<Integer> write = slot.write;
+    if ( write == null )
+      return;
+    slot.write = null;
+    ByteBuffer buffer = slot.buffer;
+    try {
+      long at = slot.position + write.get();
+      while ( buffer.hasRemaining() )
+        at += channel.write( buffer, at ).get();
+    }
+    catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "Interrupted while writing" );
+    }
+    catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException( cause );
+    }
+  }
+
+  /**
+   * Starts writing what is collected; returns without waiting for the disk.
+   */
+  @Override public void flush() throws IOException {
+    submit();
+  }
+
+  /**
+   * Writes everything, waits for all writes and closes the file. The buffers go back to the
+   * pool only if all writes are finished; after a failure they are left to the garbage collector.
+   */
+  @Override public void close() throws IOException {
+    if ( closed )
+      return;
+    closed = true;
+    try {
+      submit();
+      await( slots[ 0 ] );
+      await( slots[ 1 ] );
+      release( slots[ 0 ].buffer );
+      release( slots[ 1 ].buffer );
+    }
+    finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes many documents into files at the same time, e.g. all letters of a night.
+ * <pre>
+ * RtfBatch.Report report = RtfBatch.batch().parallelism( 32 )
+ *     .run( customers.stream().map( c -&gt; RtfBatch.job( () -&gt; letter( c ), dir.resolve( c.id() + ".rtf" ) ) ) );
+ * System.out.println( report );   // 1000000 documents, 3 failed, 2850.3 documents/s, p50 9.1 ms, p99 31.0 ms
+ * </pre>
+ * At most {@link #parallelism(int) parallelism} documents are built and written at once. The
+ * jobs are taken from the stream only as fast as documents are finished, so a producer that
+ * reads from a database is slowed down instead of filling the memory. On Java 21 and newer every
+ * document gets its own virtual thread, on older versions a pool of {@code parallelism}
+ * threads is used.
+ * <p>
+ * A failing job doesn't stop the batch; it is counted and listed in the {@link Report}. A
+ * document is written into a temporary file next to its target and moved over the target when
+ * it is complete, so a failed job leaves the target as it was.
+ */
+public final class RtfBatch {
+
+  /** Default number of documents written at the same time. */
+  public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+  /** Failures listed in a report, further failures are only counted. */
+  static final int MAX_LISTED_FAILURES = 1000;
+
+  private int parallelism = DEFAULT_PARALLELISM;
+
+  private RtfBatch() {}
+
+  /**
+   * Creates a new batch renderer.
+   *
+   * @return New batch renderer.
+   */
+  public static RtfBatch batch() {
+    return new RtfBatch();
+  }
+
+  /**
+   * Creates a job that builds a document and writes it into a file.
+   *
+   * @param document Builds the document, called on the thread that writes it.
+   * @param target   File to write, an existing file is overwritten.
+   * @return New job.
+   * @throws IllegalArgumentException if {@code document} or {@code target} is {@code null}.
+   */
+  public static Job job( Supplier<Rtf> document, Path target ) {
+    if ( document == null || target == null )
+      throw new IllegalArgumentException( "Document and target of a job must not be null" );
+    return new Job( document, target );
+  }
+
+  /**
+   * Sets the number of documents built and written at the same time.
+   *
+   * @param parallelism Number, at least {@code 1}.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if {@code parallelism} is smaller than {@code 1}.
+   */
+  public RtfBatch parallelism( int parallelism ) {
+    if ( parallelism < 1 )
+      throw new IllegalArgumentException( "Parallelism must be at least 1 but was " + parallelism );
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Runs all jobs and waits until the last document is written. The stream is closed at the end.
+   *
+   * @param jobs Jobs. Must not be {@code null} or contain {@code null}.
+   * @return Report about the batch.
+   * @throws RtfException if the calling thread is interrupted; the running jobs are finished first.
+   */
+  public Report run( Stream<Job> jobs ) {
+    if ( jobs == null )
+      throw new IllegalArgumentException( "Jobs must not be null" );
+
+    int parallelism = this.parallelism;
+    Semaphore running = new Semaphore( parallelism );
+    Report report = new Report();
+    long start = System.nanoTime();
+    ExecutorService executor = executor( parallelism );
+    boolean interrupted = false;
+
+    try ( Stream<Job> stream = jobs ) {
+      for ( Iterator<Job> iterator = stream.iterator(); iterator.hasNext(); ) {
+        Job job = iterator.next();
+        if ( job == null )
+          throw new IllegalArgumentException( "Jobs must not contain null" );
+        running.acquire();   // backpressure: wait until a document is finished
+        try {
+          executor.execute( () -> {
+            try {
+              report.record( write( job ) );
+            }
+            catch ( Throwable e ) {
+              // Errors are counted too, so documents + failures is always the number of jobs
+              report.fail( job, e );
+              if ( e instanceof VirtualMachineError )
+                throw (VirtualMachineError) e;
+            }
+            finally {
+              running.release();
+            }
+          } );
+        }
+        catch ( RejectedExecutionException e ) {
+          running.release();
+          throw new RtfException( e );
+        }
+      }
+    }
+    catch ( InterruptedException e ) {
+      interrupted = true;
+    }
+    finally {
+      executor.shutdown();
+      try {
+        while ( !executor.awaitTermination( 1, TimeUnit.SECONDS ) ) {
+          // wait for the running documents
+        }
+      }
+      catch ( InterruptedException e ) {
+        interrupted = true;
+      }
+    }
+
+    report.finish( System.nanoTime() - start );
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+      throw new RtfException( "Batch was interrupted after " + report.documents() + " documents" );
+    }
+    return report;
+  }
+
+  private static long write( Job job ) throws IOException {
+    long start = System.nanoTime();
+    Rtf rtf = job.document.get();
+    if ( rtf == null )
+      throw new RtfException( "Document of " + job.target + " is null" );
+    // Written next to the target and moved at the end, a failed job leaves no truncated file
+    Path temp = RtfFiles.sibling( job.target );
+    boolean moved = false;
+    try {
+      Writer writer = Files.newBufferedWriter( temp, Rtf.charset, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE );
+      rtf.out( writer );   // closes the writer
+      RtfFiles.replace( temp, job.target );
+      moved = true;
+    }
+    finally {
+      if ( !moved )
+        Files.deleteIfExists( temp );
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Virtual threads if the JVM has them (Java 21+), otherwise a fixed pool. Virtual threads
+   * need no pool, the semaphore bounds the parallelism.
+   */
+  private static ExecutorService executor( int parallelism ) {
+    try {
+      Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+      return (ExecutorService) factory.invoke( null );
+    }
+    catch ( ReflectiveOperationException | RuntimeException e ) {
+      return Executors.newFixedThreadPool( parallelism );
+    }
+  }
+
+  /**
+   * A document and the file it is written to, see {@link RtfBatch#job(Supplier, Path)}.
+   */
+  public static final class Job {
+    final Supplier<Rtf> document;
+    final Path target;
+
+    private Job( Supplier<Rtf> document, Path target ) {
+      this.document = document;
+      this.target = target;
+    }
+
+    /**
+     * Returns the file of this job.
+     *
+     * @return Target file.
+     */
+    public Path target() {
+      return target;
+    }
+
+    @Override public String toString() {
+      return "Job " + target;
+    }
+  }
+
+  /**
+   * A job that failed.
+   */
+  public static final class Failure {
+    private final Job job;
+    private final Throwable cause;
+
+    Failure( Job job, Throwable cause ) {
+      this.job = job;
+      this.cause = cause;
+    }
+
+    /**
+     * Returns the failed job.
+     *
+     * @return Job.
+     */
+    public Job job() {
+      return job;
+    }
+
+    /**
+     * Returns why the job failed.
+     *
+     * @return Exception or error.
+     */
+    public Throwable cause() {
+      return cause;
+    }
+
+    @Override public String toString() {
+      return job.target + ": " + cause;
+    }
+  }
+
+  /**
+   * Result of {@link RtfBatch#run(Stream)}: counts, throughput and latency of the documents.
+   * The latency of a document is the time to build and write it.
+   */
+  public static final class Report {
+    private long[] latencies = new long[ 1024 ];
+    private int documents;
+    private long failures;
+    private final List<Failure> listedFailures = new ArrayList<>();
+    private long nanos;
+
+    Report() {}
+
+    synchronized void record( long latency ) {
+      if ( documents == latencies.length )
+        latencies = Arrays.copyOf( latencies, documents * 2 );
+      latencies[ documents++ ] = latency;
+    }
+
+    synchronized void fail( Job job, Throwable cause ) {
+      failures++;
+      if ( listedFailures.size() < MAX_LISTED_FAILURES )
+        listedFailures.add( new Failure( job, cause ) );
+    }
+
+    synchronized void finish( long nanos ) {
+      this.nanos = nanos;
+      Arrays.sort( latencies, 0, documents );
+    }
+
+    /**
+     * Number of written documents.
+     *
+     * @return Documents.
+     */
+    public synchronized long documents() {
+      return documents;
+    }
+
+    /**
+     * Number of failed jobs.
+     *
+     * @return Failures.
+     */
+    public synchronized long failures() {
+      return failures;
+    }
+
+    /**
+     * The failed jobs, at most the first 1000.
+     *
+     * @return Unmodifiable list of failures.
+     */
+    public synchronized List<Failure> failed() {
+      return Collections.unmodifiableList( new ArrayList<>( listedFailures ) );
+    }
+
+    /**
+     * Duration of the whole batch.
+     *
+     * @return Nanoseconds.
+     */
+    public synchronized long nanos() {
+      return nanos;
+    }
+
+    /**
+     * Written documents per second.
+     *
+     * @return Throughput, {@code 0} for an empty batch.
+     */
+    public synchronized double throughput() {
+      return nanos == 0 ? 0 : documents * 1e9 / nanos;
+    }
+
+    /**
+     * Latency that {@code percent} percent of the documents didn't exceed, e.g. {@code 99}
+     * for the p99.
+     *
+     * @param percent Percentile between {@code 0} (exclusive) and {@code 100}.
+     * @return Latency in nanoseconds, {@code 0} if no document was written.
+     * @throws IllegalArgumentException if {@code percent} is out of range.
+     */
+    public synchronized long percentile( double percent ) {
+      if ( !(percent > 0 && percent <= 100) )
+        throw new IllegalArgumentException( "Percentile must be in (0, 100] but was " + percent );
+      if ( documents == 0 )
+        return 0;
+      int rank = (int) Math.ceil( percent / 100 * documents );
+      return latencies[ Math.max( rank, 1 ) - 1 ];
+    }
+
+    /**
+     * Summary, e.g. {@code 1000 documents, 2 failed, 812.4 documents/s, p50 4.2 ms, p99 12.9 ms}.
+     */
+    @Override public synchronized String toString() {
+      return String.format( Locale.ROOT, "%d documents, %d failed, %.1f documents/s, p50 %.1f ms, p99 %.1f ms",
+                            documents, failures, throughput(), percentile( 50 ) / 1e6, percentile( 99 ) / 1e6 );
+    }
+  }
+}
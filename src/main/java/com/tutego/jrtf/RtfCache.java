@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Cache for rendered documents. Keeps the output of documents that are requested again and
+ * again, so neither the {@link Rtf} model has to be built nor the document has to be written.
+ * Documents are found by a key the caller chooses, e.g. {@code "statement-4711-2026-09"}.
+ * <pre>
+ * RtfCache cache = RtfCache.cache( 64 * 1024 * 1024 ).expireAfter( Duration.ofHours( 1 ) );
+ * cache.out( "statement-" + id, () -&gt; statement( id ), writer );
+ * </pre>
+ * The memory holds at most {@code maxBytes} bytes of output; the least recently used documents
+ * are dropped first. With {@link #spillTo(Path)} dropped documents are moved to a directory
+ * and read from there when they are requested again.
+ * <p>
+ * Thread-safe. If two threads miss the same key at the same time both render the document.
+ */
+public final class RtfCache {
+
+  private static final class Entry {
+    final byte[] bytes;
+    final long rendered;
+    final long expiresAt;
+
+    Entry( byte[] bytes, long rendered, long expiresAt ) {
+      this.bytes = bytes;
+      this.rendered = rendered;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * A document to write into the spill directory once the lock is released.
+   */
+  private static final class Spill {
+    final String key;
+    final byte[] bytes;
+    final long rendered;
+
+    Spill( String key, byte[] bytes, long rendered ) {
+      this.key = key;
+      this.bytes = bytes;
+      this.rendered = rendered;
+    }
+  }
+
+  private static final Pattern SPILL_FILE_NAME = Pattern.compile( "[0-9a-f]{64}\\.rtf" );
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+  private long bytes;
+  private @Nullable Path spillDirectory;
+  private long ttlNanos = Long.MAX_VALUE;
+
+  /** Time source in nanoseconds, replaceable for tests. */
+  LongSupplier clock = System::nanoTime;
+
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long evictions;
+
+  private RtfCache( long maxBytes ) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maxBytes Maximum size of all documents in memory, in bytes (Windows-1252 encoded,
+   *                 like in a file).
+   * @return New cache.
+   * @throws IllegalArgumentException if {@code maxBytes} is negative.
+   */
+  public static RtfCache cache( long maxBytes ) {
+    if ( maxBytes < 0 )
+      throw new IllegalArgumentException( "Cache size must not be negative but was " + maxBytes );
+    return new RtfCache( maxBytes );
+  }
+
+  /**
+   * Moves documents that don't fit into memory any more into a directory, instead of dropping
+   * them. Documents are stored in files named after the SHA-256 of the key. The directory is
+   * not limited in size, documents are only removed when they expire or are invalidated.
+   *
+   * @param directory Existing directory.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if {@code directory} is not a directory.
+   */
+  public RtfCache spillTo( Path directory ) {
+    if ( directory == null || !Files.isDirectory( directory ) )
+      throw new IllegalArgumentException( "Spill directory must be an existing directory but was " + directory );
+    spillDirectory = directory;
+    return this;
+  }
+
+  /**
+   * Removes documents after a while, in memory and in the spill directory. By default
+   * documents don't expire.
+   *
+   * @param ttl Time to live after a document was rendered.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if {@code ttl} is {@code null} or negative.
+   */
+  public RtfCache expireAfter( Duration ttl ) {
+    if ( ttl == null || ttl.isNegative() )
+      throw new IllegalArgumentException( "Time to live must not be null or negative but was " + ttl );
+    ttlNanos = ttl.compareTo( Duration.ofNanos( Long.MAX_VALUE ) ) >= 0 ? Long.MAX_VALUE : ttl.toNanos();
+    return this;
+  }
+
+  /**
+   * Writes a cached document to an {@link Appendable}. If the document is not cached, it is
+   * built by {@code document}, written and cached. Like {@link Rtf#out(Appendable)} the
+   * {@link Appendable} is closed if it is {@link Closeable}.
+   *
+   * @param key      Key of the document. Must not be {@code null}.
+   * @param document Builds the document on a cache miss.
+   * @param out      Destination of this RTF output. Must not be {@code null}.
+   * @throws IllegalArgumentException if {@code key} or {@code out} is {@code null}.
+   */
+  public void out( String key, Supplier<Rtf> document, Appendable out ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "Appendable is not allowed to be null" );
+
+    byte[] rtf = bytes( key, document );
+    try ( @Nullable Closeable closeable = out instanceof Closeable ? (Closeable) out : null ) {
+      out.append( new String( rtf, Rtf.charset ) );
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Returns a cached document as bytes, ready to be sent to an {@link java.io.OutputStream}.
+   * If the document is not cached, it is built by {@code document}, written and cached.
+   * The returned array is shared with the cache and must not be changed.
+   *
+   * @param key      Key of the document. Must not be {@code null}.
+   * @param document Builds the document on a cache miss.
+   * @return Document encoded in Windows-1252.
+   * @throws IllegalArgumentException if {@code key} is {@code null}.
+   */
+  public byte[] bytes( String key, Supplier<Rtf> document ) {
+    if ( key == null )
+      throw new IllegalArgumentException( "Cache key must not be null" );
+
+    long now = clock.getAsLong();
+    synchronized ( this ) {
+      Entry entry = entries.get( key );
+      if ( entry != null ) {
+        if ( now - entry.expiresAt < 0 ) {
+          hits++;
+          return entry.bytes;
+        }
+        remove( key );
+      }
+    }
+
+    long[] ageNanos = { 0 };
+    byte[] spilled = readSpilled( key, ageNanos );
+    if ( spilled != null ) {
+      @Nullable List<Spill> spills;
+      synchronized ( this ) {
+        diskHits++;
+        spills = put( key, spilled, now - ageNanos[ 0 ] );
+      }
+      spill( spills );
+      return spilled;
+    }
+
+    Rtf rtf = document.get();
+    if ( rtf == null )
+      throw new RtfException( "Document for cache key " + key + " is null" );
+    byte[] rendered = rtf.out().toString().getBytes( Rtf.charset );
+    @Nullable List<Spill> spills;
+    synchronized ( this ) {
+      misses++;
+      spills = put( key, rendered, now );
+    }
+    spill( spills );
+    return rendered;
+  }
+
+  /**
+   * Removes a document from memory and from the spill directory.
+   *
+   * @param key Key of the document.
+   */
+  public void invalidate( String key ) {
+    synchronized ( this ) {
+      remove( key );
+    }
+    deleteSpilled( key );
+  }
+
+  /**
+   * Removes all documents from memory and from the spill directory. Other files in the
+   * directory stay.
+   */
+  public void clear() {
+    synchronized ( this ) {
+      entries.clear();
+      bytes = 0;
+    }
+    Path directory = spillDirectory;
+    if ( directory == null )
+      return;
+    try ( DirectoryStream<Path> files = Files.newDirectoryStream( directory, "*.rtf" ) ) {
+      for ( Path file : files )
+        if ( SPILL_FILE_NAME.matcher( file.getFileName().toString() ).matches() )
+          Files.deleteIfExists( file );
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Number of bytes of all documents in memory.
+   *
+   * @return Bytes.
+   */
+  public synchronized long memoryBytes() {
+    return bytes;
+  }
+
+  /**
+   * Number of requests answered from memory.
+   *
+   * @return Hits.
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * Number of requests answered from the spill directory.
+   *
+   * @return Hits on disk.
+   */
+  public synchronized long diskHits() {
+    return diskHits;
+  }
+
+  /**
+   * Number of requests that had to render the document.
+   *
+   * @return Misses.
+   */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * Number of documents that were dropped from memory (or spilled) to stay within the size.
+   *
+   * @return Evictions.
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Part of the requests that didn't have to render the document.
+   *
+   * @return Rate between {@code 0} and {@code 1}, {@code 0} if there was no request.
+   */
+  public synchronized double hitRate() {
+    long requests = hits + diskHits + misses;
+    return requests == 0 ? 0 : (double) (hits + diskHits) / requests;
+  }
+
+  /**
+   * Statistics, e.g. {@code 12 documents, 1048576 bytes, hits 90, disk hits 3, misses 7, evictions 4, hit rate 93.0%}.
+   */
+  @Override public synchronized String toString() {
+    return String.format( Locale.ROOT, "%d documents, %d bytes, hits %d, disk hits %d, misses %d, evictions %d, hit rate %.1f%%",
+                          entries.size(), bytes, hits, diskHits, misses, evictions, hitRate() * 100 );
+  }
+
+  // Called with the lock held
+
+  /**
+   * Puts a document into memory and evicts the eldest ones.
+   *
+   * @return Documents to spill, after the lock is released, or {@code null}.
+   */
+  private @Nullable List<Spill> put( String key, byte[] document, long rendered ) {
+    remove( key );
+    if ( document.length > maxBytes )
+      return spillDirectory == null ? null : Collections.singletonList( new Spill( key, document, rendered ) );
+
+    long now = clock.getAsLong();
+    long expiresAt = ttlNanos == Long.MAX_VALUE ? Long.MAX_VALUE : rendered + ttlNanos;
+    entries.put( key, new Entry( document, rendered, expiresAt ) );
+    bytes += document.length;
+
+    @Nullable List<Spill> spills = null;
+    for ( Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); bytes > maxBytes && it.hasNext(); ) {
+      Map.Entry<String, Entry> eldest = it.next();
+      Entry entry = eldest.getValue();
+      it.remove();
+      bytes -= entry.bytes.length;
+      evictions++;
+      if ( spillDirectory != null && now - entry.expiresAt < 0 ) {
+        if ( spills == null )
+          spills = new ArrayList<>();
+        spills.add( new Spill( eldest.getKey(), entry.bytes, entry.rendered ) );
+      }
+    }
+    return spills;
+  }
+
+  private void remove( String key ) {
+    Entry entry = entries.remove( key );
+    if ( entry != null )
+      bytes -= entry.bytes.length;
+  }
+
+  // Spill directory; a document that can't be stored or read is just a cache miss
+
+  private @Nullable Path spillFile( String key ) {
+    Path directory = spillDirectory;
+    if ( directory == null )
+      return null;
+    try {
+      byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( key.getBytes( StandardCharsets.UTF_8 ) );
+      StringBuilder name = new StringBuilder( digest.length * 2 + 4 );
+      for ( byte b : digest )
+        name.append( Character.forDigit( (b >> 4) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+      return directory.resolve( name.append( ".rtf" ).toString() );
+    }
+    catch ( NoSuchAlgorithmException e ) {
+      // Every Java platform has to support SHA-256
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private void spill( @Nullable List<Spill> spills ) {
+    if ( spills == null )
+      return;
+    for ( Spill spill : spills ) {
+      Path file = spillFile( spill.key );
+      if ( file == null )
+        return;
+      @Nullable Path temp = null;
+      try {
+        temp = Files.createTempFile( file.getParent(), "spill", ".tmp" );
+        Files.write( temp, spill.bytes );
+        // The age on disk counts from rendering, not from spilling
+        long ageMillis = TimeUnit.NANOSECONDS.toMillis( clock.getAsLong() - spill.rendered );
+        Files.setLastModifiedTime( temp, FileTime.fromMillis( System.currentTimeMillis() - ageMillis ) );
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      }
+      catch ( IOException e ) {
+        deleteSpilled( spill.key );
+        deleteQuietly( temp );
+      }
+    }
+  }
+
+  private static void deleteQuietly( @Nullable Path file ) {
+    if ( file == null )
+      return;
+    try {
+      Files.deleteIfExists( file );
+    }
+    catch ( IOException e ) {
+      // A leftover temporary file is ignored by readers of the spill directory
+    }
+  }
+
+  private byte @Nullable [] readSpilled( String key, long[] ageNanos ) {
+    Path file = spillFile( key );
+    if ( file == null )
+      return null;
+    try {
+      // The time of the file is the time the document was rendered
+      long ageMillis = Math.max( 0, System.currentTimeMillis() - Files.getLastModifiedTime( file ).toMillis() );
+      ageNanos[ 0 ] = TimeUnit.MILLISECONDS.toNanos( ageMillis );
+      if ( ttlNanos != Long.MAX_VALUE && ageNanos[ 0 ] >= ttlNanos ) {
+        Files.deleteIfExists( file );
+        return null;
+      }
+      byte[] document = Files.readAllBytes( file );
+      Files.deleteIfExists( file );   // back in memory
+      return document;
+    }
+    catch ( NoSuchFileException e ) {
+      return null;
+    }
+    catch ( IOException e ) {
+      deleteSpilled( key );
+      return null;
+    }
+  }
+
+  private void deleteSpilled( String key ) {
+    Path file = spillFile( key );
+    if ( file == null )
+      return;
+    try {
+      Files.deleteIfExists( file );
+    }
+    catch ( IOException e ) {
+      // Nothing else to do; the file is found again until it expires
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Paragraphs whose RTF is rendered once and then reused, see {@link RtfPara#cached(RtfPara...)}.
+ * <p>
+ * The rendering depends a little on the document: compact mode, the default font, the
+ * color table and the list table. So there is one rendering for each combination of compact mode
+ * and ending {@code \par}, and it is only reused if the default font is the same and every color
+ * and list used gets the same number in the current document. Otherwise the paragraphs are
+ * rendered again and that rendering is kept. Metrics counters are replayed on reuse.
+ */
+final class RtfCachedPara extends RtfPara {
+
+  private static final RtfMetrics.Counter[] COUNTERS = RtfMetrics.Counter.values();
+
+  private static final class Rendering {
+    final String rtf;
+    final @Nullable String defaultFontName;
+    final RtfHeaderColor[] colors;
+    final int[] colorIndexes;
+    final RtfList[] lists;
+    final int[] listNumbers;
+    final long[] counters;
+
+    Rendering( String rtf, @Nullable String defaultFontName, RtfHeaderColor[] colors, int[] colorIndexes,
+               RtfList[] lists, int[] listNumbers, long[] counters ) {
+      this.rtf = rtf;
+      this.defaultFontName = defaultFontName;
+      this.colors = colors;
+      this.colorIndexes = colorIndexes;
+      this.lists = lists;
+      this.listNumbers = listNumbers;
+      this.counters = counters;
+    }
+  }
+
+  private final RtfPara[] paragraphs;
+
+  /** Index: {@code (compact ? 2 : 0) + (withEndingPar ? 1 : 0)}. */
+  private final AtomicReferenceArray<@Nullable Rendering> renderings = new AtomicReferenceArray<>( 4 );
+
+  RtfCachedPara( RtfPara[] paragraphs ) {
+    this.paragraphs = paragraphs;
+  }
+
+  /**
+   * Already frozen.
+   */
+  @Override public RtfPara freeze() {
+    return this;
+  }
+
+  @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+    int slot = (out.compact ? 2 : 0) + (withEndingPar ? 1 : 0);
+    Rendering rendering = renderings.get( slot );
+    if ( rendering == null || !reusable( rendering, out ) ) {
+      rendering = render( out, withEndingPar );
+      renderings.set( slot, rendering );
+    }
+
+    out.append( rendering.rtf );
+    long[] counters = rendering.counters;
+    for ( int i = 0; i < counters.length; i++ )
+      if ( counters[ i ] != 0 )
+        out.count( COUNTERS[ i ], counters[ i ] );
+  }
+
+  /**
+   * Checks that the rendering fits the current document. Looks up all colors, so with an
+   * automatic color table they are added like they would be by rendering, and all lists.
+   */
+  private static boolean reusable( Rendering rendering, RtfOutput out ) {
+    if ( !Objects.equals( rendering.defaultFontName, out.defaultFontName ) )
+      return false;
+    boolean sameColors = true;
+    for ( int i = 0; i < rendering.colors.length; i++ )
+      sameColors &= out.colorIndex( rendering.colors[ i ] ) == rendering.colorIndexes[ i ];
+    if ( !sameColors )
+      return false;
+    for ( int i = 0; i < rendering.lists.length; i++ )
+      if ( out.listNumber( rendering.lists[ i ] ) != rendering.listNumbers[ i ] )
+        return false;
+    return true;
+  }
+
+  private Rendering render( RtfOutput out, boolean withEndingPar ) {
+    StringBuilder buffer = new StringBuilder( 1024 );
+    RtfOutput recorder = out.buffered( buffer );
+    List<RtfHeaderColor> colors = new ArrayList<>();
+    long[] counters = new long[ COUNTERS.length ];
+    recorder.colorLog = colors;
+    List<RtfList> lists = new ArrayList<>();
+    recorder.listLog = lists;
+    recorder.counters = counters;
+
+    for ( RtfPara para : paragraphs )
+      para.rtf( recorder, withEndingPar );
+
+    RtfHeaderColor[] colorArray = colors.toArray( new RtfHeaderColor[ 0 ] );
+    int[] colorIndexes = new int[ colorArray.length ];
+    for ( int i = 0; i < colorArray.length; i++ )
+      colorIndexes[ i ] = out.colorIndex( colorArray[ i ] );
+    RtfList[] listArray = lists.toArray( new RtfList[ 0 ] );
+    int[] listNumbers = new int[ listArray.length ];
+    for ( int i = 0; i < listArray.length; i++ )
+      listNumbers[ i ] = out.listNumber( listArray[ i ] );
+    return new Rendering( buffer.toString(), out.defaultFontName, colorArray, colorIndexes, listArray, listNumbers, counters );
+  }
+}
@@ -28,6 +28,8 @@
  */
 package com.tutego.jrtf;
 
+import org.jspecify.annotations.Nullable;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -78,6 +80,12 @@ public final class RtfCell {
    */
   int widthTwips = -1;
 
+  /**
+   * Background color given by value, resolved against the document color table when the row
+   * is written, or {@code null}.
+   */
+  @Nullable RtfHeaderColor backgroundColor;
+
   private RtfCell( List<RtfPara> paras ) {
     this.paras = paras;
   }
@@ -142,6 +150,18 @@ public final class RtfCell {
     return this;
   }
 
+  /**
+   * Sets the background (shading) color of this cell by value. The color has to be registered in
+   * the header unless {@link Rtf#autoColorTable()} is enabled.
+   *
+   * @param color Color, e.g. {@code RtfHeader.color( 0xDDDDDD )}.
+   * @return {@code this}-object.
+   */
+  public RtfCell backgroundColor( RtfHeaderColor color ) {
+    this.backgroundColor = color;
+    return this;
+  }
+
   /**
    * Sets the shading pattern for the cell background.
    *
@@ -371,6 +391,47 @@ public final class RtfCell {
     return this;
   }
 
+  /**
+   * Aligns the content of this cell on the decimal separator: sets a decimal tab stop
+   * and moves the content to it. Numbers with different digit counts then line up in a column,
+   * for example {@code cell( number( 1234.5, "#,##0.00", Locale.GERMANY ) ).alignDecimal( 2, RtfUnit.CM )}.
+   *
+   * @param position Position of the decimal separator, relative to the left edge of the cell.
+   * @param unit     Measurement unit of {@code position}.
+   * @return {@code this}-object.
+   */
+  public RtfCell alignDecimal( double position, RtfUnit unit ) {
+    int twips = unit.toTwips( position );
+    paras.replaceAll( para -> decimalAligned( para, twips ) );
+    return this;
+  }
+
+  /**
+   * Wraps a text paragraph instead of changing it, the paragraph may be used elsewhere, too.
+   * A paragraph aligned before gets the new position, not a second tab stop.
+   */
+  private static RtfPara decimalAligned( RtfPara para, int twips ) {
+    if ( para instanceof DecimalAligned )
+      return new DecimalAligned( ((DecimalAligned) para).para, twips );
+    if ( para instanceof RtfTextPara )
+      return new DecimalAligned( (RtfTextPara) para, twips );
+    return para;
+  }
+
+  private static final class DecimalAligned extends RtfPara {
+    final RtfTextPara para;
+    final int twips;
+
+    DecimalAligned( RtfTextPara para, int twips ) {
+      this.para = para;
+      this.twips = twips;
+    }
+
+    @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+      para.rtf( out, withEndingPar, twips );
+    }
+  }
+
   /**
    * Makes the whole content of this cell bold.
    *
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Color table of one rendering of a document. Resolves {@link RtfHeaderColor} references
+ * used in the text, cells and paragraphs to indexes of the {@code \colortbl}.
+ * <p>
+ * The explicitly registered colors (see {@link Rtf#header(RtfHeader...)}) keep their indexes.
+ * A color placed with {@link RtfHeaderColor#at(int)} uses its index only if this table has the
+ * same color there, otherwise it is looked up like any other. A plain RGB color is looked up by its RGB value in an {@link IntIntMap}; if several registered
+ * colors share the value the lowest index wins. Unknown colors are either rejected or, with
+ * {@link Rtf#autoColorTable()}, appended behind the highest registered index.
+ */
+final class RtfColorTable {
+
+  /**
+   * Color at each index, {@code null} for an unused index.
+   */
+  private final List<@Nullable RtfHeaderColor> colors = new ArrayList<>();
+
+  /**
+   * RGB value to color index, for plain (non theme) colors only.
+   */
+  private final IntIntMap indexByRgb;
+
+  /**
+   * If {@code true} unknown colors are added, otherwise they raise an {@link RtfException}.
+   */
+  private final boolean intern;
+
+  RtfColorTable( SortedMap<Integer, RtfHeaderColor> headerColors, boolean intern ) {
+    this.intern = intern;
+    indexByRgb = new IntIntMap( headerColors.size() + 16 );
+
+    for ( Map.Entry<Integer, RtfHeaderColor> entry : headerColors.entrySet() ) {
+      int index = entry.getKey();
+      while ( colors.size() <= index )
+        colors.add( null );
+      colors.set( index, entry.getValue() );
+      if ( entry.getValue().themeColor() == null )
+        indexByRgb.putIfAbsent( entry.getValue().rgb(), index );   // entries come in ascending order
+    }
+  }
+
+  /**
+   * Returns the index of the given color in this table.
+   *
+   * @param color Color to look up.
+   * @return Index for {@code \cf}, {@code \cb}, {@code \clcbpat} and similar control words.
+   * @throws RtfException if the color is unknown and automatic interning is off.
+   */
+  int indexOf( RtfHeaderColor color ) {
+    // A color placed with at() refers to its slot, if this document has it there
+    int slot = color.colorindex;
+    if ( slot > 0 && slot < colors.size() && sameColor( colors.get( slot ), color ) )
+      return slot;
+
+    RtfHeaderColor.ThemeColor themeColor = color.themeColor();
+    if ( themeColor != null ) {
+      for ( int i = 0; i < colors.size(); i++ ) {
+        RtfHeaderColor c = colors.get( i );
+        if ( c != null && c.themeColor() == themeColor )
+          return i;
+      }
+      return add( color );
+    }
+
+    int index = indexByRgb.get( color.rgb(), -1 );
+    if ( index >= 0 )
+      return index;
+
+    index = add( color );
+    indexByRgb.put( color.rgb(), index );
+    return index;
+  }
+
+  private static boolean sameColor( @Nullable RtfHeaderColor a, RtfHeaderColor b ) {
+    return a != null && a.themeColor() == b.themeColor() && (b.themeColor() != null || a.rgb() == b.rgb());
+  }
+
+  private int add( RtfHeaderColor color ) {
+    if ( !intern )
+      throw new RtfException( "Color " + describe( color ) + " is not registered in the header, "
+                              + "register it or enable Rtf.autoColorTable()" );
+
+    // Index 0 is the automatic color and never reused for interned colors
+    if ( colors.isEmpty() )
+      colors.add( null );
+    colors.add( color );
+    return colors.size() - 1;
+  }
+
+  private static String describe( RtfHeaderColor color ) {
+    RtfHeaderColor.ThemeColor themeColor = color.themeColor();
+    return themeColor != null ? themeColor.name() : String.format( "#%06X", color.rgb() );
+  }
+
+  /**
+   * Writes the {@code \colortbl} group with all registered and interned colors.
+   *
+   * @param out Output buffer.
+   */
+  void write( RtfOutput out ) {
+    /*
+     * <colortbl> := '{' \colortbl <colordef>+ '}'
+     */
+    if ( colors.isEmpty() ) {
+      out.tag( RtfControlWords.COLOR_TABLE, ";" );
+      return;
+    }
+
+    out.open( RtfControlWords.COLOR_TABLE );
+    for ( RtfHeaderColor color : colors ) {
+      if ( color == null )
+        out.semi();
+      else
+        color.writeColordef( out );
+    }
+    out.close();
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link Appendable} filter behind {@link RtfOutput}'s compact mode. It sits between the
+ * renderers and the real target and rewrites the character stream without changing what a
+ * word processor makes of it:
+ * <ul>
+ * <li>Line breaks are dropped. A line break that terminated a control word is replaced by a
+ *     space, but only if the next character would otherwise be read as part of that word.</li>
+ * <li>Empty groups like <code>{}</code> or <code>{\b }</code> are dropped.</li>
+ * <li>Two adjacent groups that open with the same character formatting, e.g. <code>{\b a}{\b b}</code>,
+ *     are merged into one group <code>{\b ab}</code>. This only happens if the header of the groups
+ *     consists of character formatting control words alone and the body of the first group
+ *     contains no control word that changes the formatting of what follows.</li>
+ * </ul>
+ * The filter is a small RTF lexer: it only looks at the characters it has to write anyway and
+ * holds back at most one closing brace plus the characters of a group header. Binary data
+ * ({@code \binN}) is passed through untouched if the control word is delimited by a space.
+ */
+final class RtfCompactAppendable implements Appendable {
+
+  /**
+   * Control words that may open a mergeable group: pure character formatting.
+   */
+  private static final long[] FORMATTING_WORDS = encodeAll(
+      RtfControlWords.BOLD, RtfControlWords.ITALIC, RtfControlWords.UNDERLINE,
+      RtfControlWords.UNDERLINE_DOTTED, RtfControlWords.UNDERLINE_DOUBLE, RtfControlWords.UNDERLINE_WORD,
+      RtfControlWords.SUBSCRIPT, RtfControlWords.SUPERSCRIPT, RtfControlWords.SUPERSCRIPT_RAISE,
+      RtfControlWords.SUBSCRIPT_LOWER, RtfControlWords.STRIKETHROUGH, RtfControlWords.SHADOW,
+      RtfControlWords.SMALL_CAPS, RtfControlWords.CAPS, RtfControlWords.HIDDEN, RtfControlWords.FONT,
+      RtfControlWords.FONT_SIZE, RtfControlWords.CHAR_FOREGROUND_COLOR, RtfControlWords.CHAR_BACKGROUND_COLOR,
+      RtfControlWords.LANGUAGE, RtfControlWords.EMBOSS, RtfControlWords.ENGRAVE, RtfControlWords.OUTLINE,
+      RtfControlWords.KERNING, RtfControlWords.CHAR_EXPAND );
+
+  /**
+   * Control words that only produce content and leave the character formatting untouched,
+   * so they may appear in the body of a group that is merged with its successor.
+   */
+  private static final long[] CONTENT_WORDS = encodeAll(
+      RtfControlWords.PAR, RtfControlWords.TAB, RtfControlWords.UNICODE_CHAR, RtfControlWords.LINE_BREAK,
+      RtfControlWords.PAGE_BREAK, RtfControlWords.COLUMN_BREAK, RtfControlWords.SOFT_LINE_BREAK,
+      RtfControlWords.SOFT_PAGE_BREAK, RtfControlWords.SOFT_COLUMN_BREAK, RtfControlWords.EM_DASH,
+      RtfControlWords.EN_DASH, RtfControlWords.BULLET, RtfControlWords.LEFT_SINGLE_QUOTE,
+      RtfControlWords.RIGHT_SINGLE_QUOTE, RtfControlWords.LEFT_DOUBLE_QUOTE, RtfControlWords.RIGHT_DOUBLE_QUOTE,
+      RtfControlWords.CURRENT_DATE, RtfControlWords.CURRENT_DATE_LONG, RtfControlWords.CURRENT_DATE_ABBREVIATED,
+      RtfControlWords.CURRENT_TIME, RtfControlWords.CURRENT_PAGE_NUMBER, RtfControlWords.CURRENT_SECTION_NUMBER,
+      RtfControlWords.FOOTNOTE_REF_MARK );
+
+  private static final long BIN_WORD = encode( "bin" );
+
+  private static final int DRAIN_THRESHOLD = 8192;
+
+  // Lexer states
+
+  private static final int TEXT = 0, BACKSLASH = 1, WORD = 2, PARAMETER = 3, HEX = 4, BINARY = 5;
+
+  private final Appendable target;
+
+  /**
+   * Characters are collected here and handed to {@link #target} in bulk.
+   */
+  private final StringBuilder buffer = new StringBuilder( DRAIN_THRESHOLD + 256 );
+
+  private int state = TEXT;
+
+  /**
+   * Name of the control word being lexed, see {@link #encode(CharSequence)}, and its parameter.
+   */
+  private long word;
+  private int wordLength;
+  private long parameter;
+
+  /**
+   * Remaining characters of a {@code \'xx} escape or a {@code \binN} block.
+   */
+  private long remaining;
+
+  /**
+   * A dropped character terminated a control word; a space must be written if the next
+   * character would continue the word.
+   */
+  private boolean delimiterPending;
+
+  // Group stack. headers[d] is null if group d can not be merged with its successor,
+  // starts[d] is the buffer position of its '{' (-1 if already drained), empty[d] is true
+  // as long as nothing but the header was written, wordStates[d] is the lexer state the
+  // '{' interrupted.
+
+  private String[] headers = new String[ 32 ];
+  private boolean[] clean = new boolean[ 32 ];
+  private boolean[] empty = new boolean[ 32 ];
+  private int[] starts = new int[ 32 ];
+  private int[] wordStates = new int[ 32 ];
+  private int depth;
+
+  /**
+   * Raw characters of the header of the innermost group while it is still being read.
+   */
+  private final StringBuilder header = new StringBuilder( 32 );
+  private boolean inHeader;
+  private boolean headerCompletes;
+  private @Nullable String lastHeader;
+
+  /**
+   * A held back closing brace and the state of the group it closed.
+   */
+  private @Nullable String heldHeader;
+  private boolean heldClean;
+  private int heldWordState;
+  private int heldMatched;
+
+  RtfCompactAppendable( Appendable target ) {
+    this.target = target;
+  }
+
+  @Override public Appendable append( @Nullable CharSequence csq ) throws IOException {
+    CharSequence s = csq == null ? "null" : csq;
+    return append( s, 0, s.length() );
+  }
+
+  @Override public Appendable append( @Nullable CharSequence csq, int start, int end ) throws IOException {
+    CharSequence s = csq == null ? "null" : csq;
+    for ( int i = start; i < end; i++ )
+      accept( s.charAt( i ) );
+    if ( buffer.length() >= DRAIN_THRESHOLD )
+      drain();
+    return this;
+  }
+
+  @Override public Appendable append( char c ) throws IOException {
+    accept( c );
+    if ( buffer.length() >= DRAIN_THRESHOLD )
+      drain();
+    return this;
+  }
+
+  /**
+   * Writes a held back closing brace and everything buffered to the target.
+   */
+  void flush() throws IOException {
+    releaseHeld();
+    drain();
+  }
+
+  /**
+   * Number of characters accepted but not yet handed to the target: the buffer and a held back
+   * closing brace. A later empty group or merge may still shorten it a little.
+   */
+  long pending() {
+    return buffer.length() + (heldHeader != null ? 1 : 0);
+  }
+
+  /**
+   * Writes everything buffered to the target but keeps a held back closing brace.
+   */
+  void drain() throws IOException {
+    target.append( buffer );
+    buffer.setLength( 0 );
+    for ( int d = 0; d < depth; d++ )
+      starts[ d ] = -1;
+  }
+
+  private void accept( char c ) {
+    if ( heldHeader != null ) {
+      String held = heldHeader;
+      if ( c == '\n' || c == '\r' )
+        return;
+      if ( c == held.charAt( heldMatched ) ) {
+        if ( ++heldMatched == held.length() ) {
+          // The same group opens again: drop '}' and the header, continue the old group
+          heldHeader = null;
+          push( held, heldClean, -1, TEXT );
+          empty[ depth - 1 ] = false;
+          restoreWordState( heldWordState );
+        }
+        return;
+      }
+      releaseHeld();
+    }
+
+    if ( state == BINARY ) {
+      buffer.append( c );
+      if ( --remaining == 0 )
+        state = TEXT;
+      return;
+    }
+
+    if ( c == '\n' || c == '\r' ) {
+      if ( state == WORD || state == PARAMETER )
+        delimiterPending = true;
+      return;
+    }
+
+    if ( delimiterPending ) {
+      delimiterPending = false;
+      if ( continuesWord( c ) )
+        accept( ' ' );
+    }
+
+    int before = state;
+
+    switch ( state ) {
+      case BACKSLASH:
+        if ( isLetter( c ) ) {
+          state = WORD;
+          word = 0;
+          wordLength = 0;
+          appendToWord( c );
+        }
+        else if ( c == '\'' ) {
+          state = HEX;
+          remaining = 2;
+        }
+        else
+          state = TEXT;   // control symbol like \\, \{, \~
+        write( c );
+        return;
+      case WORD:
+        if ( isLetter( c ) ) {
+          appendToWord( c );
+          write( c );
+          return;
+        }
+        if ( c == '-' || isDigit( c ) ) {
+          state = PARAMETER;
+          parameter = c == '-' ? 0 : c - '0';
+          write( c );
+          return;
+        }
+        if ( endWord( c == ' ' ) ) {
+          write( c );
+          return;
+        }
+        break;
+      case PARAMETER:
+        if ( isDigit( c ) ) {
+          parameter = parameter * 10 + (c - '0');
+          write( c );
+          return;
+        }
+        if ( endWord( c == ' ' ) ) {
+          write( c );
+          return;
+        }
+        break;
+      case HEX:
+        write( c );
+        if ( --remaining == 0 )
+          state = TEXT;
+        return;
+      default:
+        break;
+    }
+
+    // TEXT state
+
+    if ( c == '\\' ) {
+      state = BACKSLASH;
+      write( c );
+    }
+    else if ( c == '{' ) {
+      if ( inHeader )
+        endHeader( false );
+      if ( depth > 0 )
+        empty[ depth - 1 ] = false;
+      push( null, true, buffer.length(), before );
+      buffer.append( c );
+      inHeader = true;
+      header.setLength( 0 );
+      header.append( c );
+    }
+    else if ( c == '}' )
+      closeGroup( before );
+    else
+      write( c );
+  }
+
+  private void closeGroup( int before ) {
+    if ( inHeader )
+      endHeader( false );
+
+    if ( depth == 0 ) {
+      buffer.append( '}' );
+      return;
+    }
+
+    int d = depth - 1;
+    boolean formatting = headers[ d ] != null;
+
+    if ( empty[ d ] && starts[ d ] >= 0 && (formatting || buffer.length() == starts[ d ] + 1) ) {
+      // Nothing but a formatting header in this group: drop it completely
+      buffer.setLength( starts[ d ] );
+      depth--;
+      restoreWordState( wordStates[ d ] );
+      return;
+    }
+
+    depth--;
+
+    if ( formatting && clean[ d ] ) {
+      // Hold the brace back, the next group might continue this one
+      heldHeader = headers[ d ];
+      heldClean = true;
+      heldWordState = before;
+      heldMatched = 0;
+      return;
+    }
+
+    buffer.append( '}' );
+  }
+
+  /**
+   * Appends a character that belongs to the current group and keeps track of its header.
+   */
+  private void write( char c ) {
+    buffer.append( c );
+    if ( depth > 0 && !inHeader )
+      empty[ depth - 1 ] = false;
+    if ( inHeader ) {
+      header.append( c );
+      if ( headerCompletes )
+        endHeader( true );
+      else if ( state == TEXT && c != '\\' )   // group does not start with control words only
+        endHeader( false );
+    }
+  }
+
+  /**
+   * Called when the control word being lexed is terminated by a character that is not part of it.
+   *
+   * @param spaceDelimiter The terminating character is the space that is consumed as delimiter.
+   * @return {@code true} if the terminating character is the delimiter and has to be written as part of the word.
+   */
+  private boolean endWord( boolean spaceDelimiter ) {
+    state = TEXT;
+
+    if ( wordLength > 0 && word == BIN_WORD && parameter > 0 && spaceDelimiter ) {
+      remaining = parameter;
+      state = BINARY;
+    }
+
+    if ( inHeader ) {
+      if ( Arrays.binarySearch( FORMATTING_WORDS, word ) < 0 )
+        endHeader( false );
+      else if ( spaceDelimiter )
+        headerCompletes = true;
+    }
+    else if ( depth > 0 && Arrays.binarySearch( CONTENT_WORDS, word ) < 0 )
+      clean[ depth - 1 ] = false;
+
+    wordLength = 0;
+    parameter = 0;
+    return spaceDelimiter;
+  }
+
+  private void endHeader( boolean mergeable ) {
+    inHeader = false;
+    headerCompletes = false;
+    if ( !mergeable )
+      headers[ depth - 1 ] = null;
+    else {
+      // Runs in a row mostly share their formatting, so the last header string can be reused
+      if ( lastHeader == null || !lastHeader.contentEquals( header ) )
+        lastHeader = header.toString();
+      headers[ depth - 1 ] = lastHeader;
+    }
+  }
+
+  /**
+   * After characters that terminated a control word were dropped the lexer continues as if the
+   * word had not ended yet, so the next character gets a delimiter if it needs one.
+   */
+  private void restoreWordState( int wordState ) {
+    if ( wordState == WORD || wordState == PARAMETER ) {
+      state = wordState;
+      delimiterPending = true;
+    }
+  }
+
+  private void push( @Nullable String groupHeader, boolean groupClean, int start, int wordState ) {
+    if ( depth == headers.length ) {
+      int n = depth * 2;
+      headers = Arrays.copyOf( headers, n );
+      clean = Arrays.copyOf( clean, n );
+      empty = Arrays.copyOf( empty, n );
+      starts = Arrays.copyOf( starts, n );
+      wordStates = Arrays.copyOf( wordStates, n );
+    }
+    headers[ depth ] = groupHeader;
+    clean[ depth ] = groupClean;
+    empty[ depth ] = true;
+    starts[ depth ] = start;
+    wordStates[ depth ] = wordState;
+    depth++;
+  }
+
+  /**
+   * Writes the held back closing brace and lexes the header characters matched so far.
+   */
+  private void releaseHeld() {
+    String held = heldHeader;
+    if ( held == null )
+      return;
+    heldHeader = null;
+    buffer.append( '}' );
+    for ( int i = 0; i < heldMatched; i++ )
+      accept( held.charAt( i ) );
+  }
+
+  private void appendToWord( char c ) {
+    if ( ++wordLength <= 12 )
+      word = word << 5 | (c - 'a' + 1);
+    else
+      word = -1;
+  }
+
+  private boolean continuesWord( char c ) {
+    return c == ' '
+           || isDigit( c )
+           || (state == WORD && (isLetter( c ) || c == '-'));
+  }
+
+  private static boolean isLetter( char c ) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isDigit( char c ) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Packs a lowercase control word of up to 12 letters into a {@code long}, 5 bits per letter.
+   */
+  private static long encode( CharSequence name ) {
+    long result = 0;
+    for ( int i = 0; i < name.length(); i++ )
+      result = result << 5 | (name.charAt( i ) - 'a' + 1);
+    return result;
+  }
+
+  private static long[] encodeAll( String... names ) {
+    long[] result = new long[ names.length ];
+    for ( int i = 0; i < names.length; i++ )
+      result[ i ] = encode( names[ i ] );
+    Arrays.sort( result );
+    return result;
+  }
+}
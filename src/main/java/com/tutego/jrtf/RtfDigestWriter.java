@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Computes the SHA-256 digest of the characters passed on to an {@link Appendable}, or of the
+ * characters alone if there is no target. Characters are digested as Windows-1252 bytes, the
+ * charset of RTF files, so for a written file the digest is the SHA-256 of the file.
+ */
+final class RtfDigestWriter extends RtfForwardingWriter {
+
+  private final MessageDigest digest;
+  private final byte[] buffer = new byte[ 4096 ];
+  private int buffered;
+
+  RtfDigestWriter( @Nullable Appendable out ) {
+    super( out );
+    try {
+      digest = MessageDigest.getInstance( "SHA-256" );
+    }
+    catch ( NoSuchAlgorithmException e ) {
+      // Every Java platform has to support SHA-256
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Finishes the digest of all characters written so far.
+   */
+  byte[] digest() {
+    digest.update( buffer, 0, buffered );
+    buffered = 0;
+    return digest.digest();
+  }
+
+  private void update( char c ) {
+    if ( c < 0x80 )
+      update( (byte) c );
+    else
+      // Rare, RTF escapes everything but ASCII; only raw RTF can contain other characters
+      for ( byte b : String.valueOf( c ).getBytes( Rtf.charset ) )
+        update( b );
+  }
+
+  private void update( byte b ) {
+    if ( buffered == buffer.length ) {
+      digest.update( buffer, 0, buffered );
+      buffered = 0;
+    }
+    buffer[ buffered++ ] = b;
+  }
+
+  private void update( CharSequence chars, int start, int end ) {
+    for ( int i = start; i < end; i++ )
+      update( chars.charAt( i ) );
+  }
+
+  @Override void written( char c ) {
+    update( c );
+  }
+
+  @Override void written( CharSequence chars, int start, int end ) {
+    update( chars, start, end );
+  }
+
+  @Override void written( char[] chars, int off, int len ) {
+    for ( int i = off; i < off + len; i++ )
+      update( chars[ i ] );
+  }
+}
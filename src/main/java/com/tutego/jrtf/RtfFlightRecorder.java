@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for writing documents, sections and templates, loading pictures
+ * and embedding fonts, so jRTF shows up with its own events in a recording instead of anonymous
+ * lambda frames. jRTF is compiled for Java 8, where the JFR API is missing, so the event types
+ * are defined at runtime with {@code jdk.jfr.EventFactory} through reflection. Without that API
+ * all event types are inactive and {@link EventType#begin()} returns {@code null}.
+ * <p>
+ * An event is only created while a recording has its type enabled; otherwise {@code begin()}
+ * costs one check, and writing a document checks the section events once for all sections.
+ */
+final class RtfFlightRecorder {
+
+  static final EventType DOCUMENT = new EventType( "Document", "RTF Document",
+                                                   "Writing an RTF document",
+                                                   field( long.class, "bytes", "Size", true ),
+                                                   field( int.class, "sections", "Sections", false ) );
+
+  static final EventType SECTION = new EventType( "Section", "RTF Section",
+                                                  "Writing a section of an RTF document",
+                                                  field( int.class, "index", "Section Index", false ) );
+
+  static final EventType TEMPLATE = new EventType( "Template", "RTF Template",
+                                                   "Substituting the variables of an RTF template",
+                                                   field( long.class, "bytes", "Size", true ),
+                                                   field( long.class, "variables", "Variables", false ) );
+
+  static final EventType PICTURE_LOAD = new EventType( "PictureLoad", "RTF Picture Load",
+                                                       "Reading and hex encoding the image of a picture",
+                                                       field( long.class, "bytes", "Image Size", true ) );
+
+  static final EventType FONT_EMBED = new EventType( "FontEmbed", "RTF Font Embedding",
+                                                     "Encoding an embedded font file",
+                                                     field( String.class, "font", "Font", false ),
+                                                     field( long.class, "bytes", "Font File Size", true ) );
+
+  private RtfFlightRecorder() {}
+
+  /**
+   * Returns {@code true} if the JFR API is available and the events are registered.
+   */
+  static boolean available() {
+    return DOCUMENT.factory != null;
+  }
+
+  /**
+   * Description of an event field, turned into a {@code jdk.jfr.ValueDescriptor} if JFR is available.
+   */
+  private static final class Field {
+    final Class<?> type;
+    final String name;
+    final String label;
+    final boolean bytes;
+
+    Field( Class<?> type, String name, String label, boolean bytes ) {
+      this.type = type;
+      this.name = name;
+      this.label = label;
+      this.bytes = bytes;
+    }
+  }
+
+  private static Field field( Class<?> type, String name, String label, boolean bytes ) {
+    return new Field( type, name, label, bytes );
+  }
+
+  /**
+   * One JFR event type.
+   */
+  static final class EventType {
+    private final @Nullable Object factory;
+    private final @Nullable Object probe;
+
+    private static @Nullable Method newEvent, isEnabled, begin, end, shouldCommit, commit, set;
+
+    EventType( String name, String label, String description, Field... fields ) {
+      Object factory = null, probe = null;
+      try {
+        factory = create( name, label, description, fields );
+        probe = newEvent.invoke( factory );
+      }
+      catch ( ReflectiveOperationException | RuntimeException | LinkageError e ) {
+        // No JFR API (Java 8 without JFR, some embedded runtimes): no events
+        factory = probe = null;
+      }
+      this.factory = factory;
+      this.probe = probe;
+    }
+
+    /**
+     * Returns {@code true} if a recording has this type enabled. Callers that start many events
+     * check once and pass the result to {@link #begin(boolean)}.
+     */
+    boolean enabled() {
+      if ( factory == null )
+        return false;
+      try {
+        return (Boolean) isEnabled.invoke( probe );
+      }
+      catch ( ReflectiveOperationException e ) {
+        return false;
+      }
+    }
+
+    /**
+     * Starts an event.
+     *
+     * @return The running event or {@code null} if no recording has this type enabled.
+     */
+    @Nullable Object begin() {
+      return begin( enabled() );
+    }
+
+    /**
+     * Starts an event if {@code enabled}, the result of an earlier {@link #enabled()}.
+     *
+     * @return The running event or {@code null}.
+     */
+    @Nullable Object begin( boolean enabled ) {
+      Object factory = this.factory;
+      if ( !enabled || factory == null )
+        return null;
+      try {
+        Object event = newEvent.invoke( factory );
+        begin.invoke( event );
+        return event;
+      }
+      catch ( ReflectiveOperationException e ) {
+        return null;
+      }
+    }
+
+    /**
+     * Ends and commits an event started with {@link #begin()}.
+     *
+     * @param event  Event or {@code null}, then nothing happens.
+     * @param values Field values in the order of the fields of this type.
+     */
+    void end( @Nullable Object event, Object... values ) {
+      if ( event == null )
+        return;
+      try {
+        end.invoke( event );
+        if ( (Boolean) shouldCommit.invoke( event ) ) {
+          for ( int i = 0; i < values.length; i++ )
+            set.invoke( event, i, values[ i ] );
+          commit.invoke( event );
+        }
+      }
+      catch ( ReflectiveOperationException e ) {
+        // the recording is only missing an event
+      }
+    }
+
+    private static Object create( String name, String label, String description, Field[] fields )
+        throws ReflectiveOperationException {
+      ClassLoader loader = ClassLoader.getSystemClassLoader();
+      Class<?> annotationElement = Class.forName( "jdk.jfr.AnnotationElement", true, loader );
+      Class<?> valueDescriptor = Class.forName( "jdk.jfr.ValueDescriptor", true, loader );
+      Class<?> eventFactory = Class.forName( "jdk.jfr.EventFactory", true, loader );
+      Class<?> event = Class.forName( "jdk.jfr.Event", true, loader );
+      Constructor<?> newAnnotation = annotationElement.getConstructor( Class.class, Object.class );
+      Constructor<?> newValue = valueDescriptor.getConstructor( Class.class, String.class, List.class );
+
+      List<Object> annotations = new ArrayList<>();
+      annotations.add( newAnnotation.newInstance( jfrAnnotation( "Name", loader ), "com.tutego.jrtf." + name ) );
+      annotations.add( newAnnotation.newInstance( jfrAnnotation( "Label", loader ), label ) );
+      annotations.add( newAnnotation.newInstance( jfrAnnotation( "Description", loader ), description ) );
+      annotations.add( newAnnotation.newInstance( jfrAnnotation( "Category", loader ), new String[]{ "jRTF" } ) );
+
+      List<Object> values = new ArrayList<>();
+      for ( Field field : fields ) {
+        List<Object> fieldAnnotations = new ArrayList<>();
+        fieldAnnotations.add( newAnnotation.newInstance( jfrAnnotation( "Label", loader ), field.label ) );
+        if ( field.bytes )
+          fieldAnnotations.add( newAnnotation.newInstance( jfrAnnotation( "DataAmount", loader ), "BYTES" ) );
+        values.add( newValue.newInstance( field.type, field.name, fieldAnnotations ) );
+      }
+
+      Object factory = eventFactory.getMethod( "create", List.class, List.class ).invoke( null, annotations, values );
+      eventFactory.getMethod( "register" ).invoke( factory );
+
+      synchronized ( EventType.class ) {
+        if ( newEvent == null ) {
+          isEnabled = event.getMethod( "isEnabled" );
+          begin = event.getMethod( "begin" );
+          end = event.getMethod( "end" );
+          shouldCommit = event.getMethod( "shouldCommit" );
+          commit = event.getMethod( "commit" );
+          set = event.getMethod( "set", int.class, Object.class );
+          newEvent = eventFactory.getMethod( "newEvent" );
+        }
+      }
+      return factory;
+    }
+
+    private static Class<? extends Annotation> jfrAnnotation( String name, ClassLoader loader )
+        throws ClassNotFoundException {
+      return Class.forName( "jdk.jfr." + name, true, loader ).asSubclass( Annotation.class );
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+/**
+ * Tells {@link Rtf#stream(Appendable, RtfFlushPolicy)} when to flush the target, so a client
+ * receives the beginning of a document while the rest is still being written:
+ * <pre>
+ * doc.stream( response.getWriter(), RtfFlushPolicy.everyKilobytes( 16 ).andAfterEachSection() );
+ * </pre>
+ * Instances are immutable.
+ */
+public final class RtfFlushPolicy {
+
+  private static final RtfFlushPolicy AFTER_EACH_SECTION = new RtfFlushPolicy( 0, true );
+
+  /** Characters after which the target is flushed, {@code 0} for no limit. */
+  final long chars;
+  final boolean sections;
+
+  private RtfFlushPolicy( long chars, boolean sections ) {
+    this.chars = chars;
+    this.sections = sections;
+  }
+
+  /**
+   * Flushes the target whenever a section is written.
+   *
+   * @return Flush policy.
+   */
+  public static RtfFlushPolicy afterEachSection() {
+    return AFTER_EACH_SECTION;
+  }
+
+  /**
+   * Flushes the target whenever the given amount was written since the last flush.
+   *
+   * @param kilobytes Amount in KB (1024 characters), at least {@code 1}.
+   * @return Flush policy.
+   * @throws IllegalArgumentException if {@code kilobytes} is smaller than {@code 1}.
+   */
+  public static RtfFlushPolicy everyKilobytes( int kilobytes ) {
+    if ( kilobytes < 1 )
+      throw new IllegalArgumentException( "Flush interval must be at least 1 KB but was " + kilobytes );
+    return new RtfFlushPolicy( kilobytes * 1024L, false );
+  }
+
+  /**
+   * Returns a policy that also flushes the target whenever a section is written.
+   *
+   * @return Flush policy.
+   */
+  public RtfFlushPolicy andAfterEachSection() {
+    return sections ? this : new RtfFlushPolicy( chars, true );
+  }
+
+  @Override public String toString() {
+    if ( chars == 0 )
+      return "after each section";
+    return "every " + chars / 1024 + " KB" + (sections ? " and after each section" : "");
+  }
+}
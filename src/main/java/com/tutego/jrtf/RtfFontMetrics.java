@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the printed width of RTF text with the AWT metrics of the fonts of a document.
+ * Font changes {@code \fN} are resolved with the font table, sizes {@code \fsN} and bold runs
+ * are taken into account; text without them is measured in the default font at 12 pt. Sizes
+ * from style sheets are not. Hidden content like field instructions, destinations
+ * <code>{\* ...}</code> and picture data is skipped. If the font system is not usable (e.g. no fonts installed on a
+ * server) the width is estimated from the number of characters.
+ */
+final class RtfFontMetrics {
+
+  /**
+   * Font size a word processor uses if none is given, 12 pt.
+   */
+  static final float DEFAULT_FONT_SIZE_POINTS = 12f;
+
+  /**
+   * Average character width in em for the fallback estimate.
+   */
+  private static final float AVERAGE_CHAR_WIDTH_EM = 0.55f;
+
+  /**
+   * Destinations whose content is not printed where they stand, skipped like by a reader.
+   * Destinations starting with <code>{\*</code> are always skipped.
+   */
+  private static final Set<String> HIDDEN_DESTINATIONS = new HashSet<>( Arrays.asList(
+      RtfControlWords.PICTURE_DESTINATION, "fldinst", RtfControlWords.FOOTNOTE_DESTINATION, RtfControlWords.FONT_TABLE,
+      RtfControlWords.COLOR_TABLE, RtfControlWords.STYLE_SHEET, RtfControlWords.INFO_DESTINATION ) );
+
+  private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext( null, true, true );
+
+  private final Map<Integer, String> fontNames;
+  private final String defaultFontName;
+  private final float defaultSizePoints;
+
+  /**
+   * AWT fonts by name, style and size; {@code null} if the font system is not usable.
+   */
+  private @Nullable Map<String, Font> fonts = new HashMap<>();
+
+  RtfFontMetrics( String fontName, float sizePoints ) {
+    this( Collections.emptyMap(), fontName, sizePoints );
+  }
+
+  /**
+   * @param fontNames       Font names by number, the font table of the document.
+   * @param defaultFontName Name of the font used without {@code \fN}.
+   * @param sizePoints      Size used without {@code \fsN}.
+   */
+  RtfFontMetrics( Map<Integer, String> fontNames, String defaultFontName, float sizePoints ) {
+    this.fontNames = fontNames;
+    this.defaultFontName = defaultFontName;
+    this.defaultSizePoints = sizePoints;
+  }
+
+  /**
+   * Returns the width of plain text in the default font in twips.
+   */
+  int widthTwips( String text, boolean isBold ) {
+    return widthTwips( text, defaultFontName, defaultSizePoints, isBold );
+  }
+
+  private int widthTwips( CharSequence text, String fontName, float sizePoints, boolean isBold ) {
+    if ( text.length() == 0 )
+      return 0;
+    Map<String, Font> cache = fonts;
+    if ( cache != null ) {
+      try {
+        String key = fontName + '\0' + isBold + '\0' + sizePoints;
+        Font font = cache.get( key );
+        if ( font == null ) {
+          font = new Font( fontName, isBold ? Font.BOLD : Font.PLAIN, 1 ).deriveFont( sizePoints );
+          cache.put( key, font );
+        }
+        return (int) Math.ceil( font.getStringBounds( text.toString(), RENDER_CONTEXT ).getWidth() * 20 );
+      }
+      catch ( RuntimeException | LinkageError | InternalError e ) {
+        // e.g. a headless system without font configuration: estimate from now on
+        fonts = null;
+      }
+    }
+    return (int) Math.ceil( text.length() * sizePoints * AVERAGE_CHAR_WIDTH_EM * (isBold ? 1.1f : 1f) * 20 );
+  }
+
+  /**
+   * Character formatting while RTF is measured, saved at every <code>{</code>.
+   */
+  private static final class Format {
+    String fontName;
+    float sizePoints;
+    boolean bold;
+
+    Format( String fontName, float sizePoints, boolean bold ) {
+      this.fontName = fontName;
+      this.sizePoints = sizePoints;
+      this.bold = bold;
+    }
+  }
+
+  /**
+   * Returns the width of RTF encoded text in twips. Control words are dropped, escaped
+   * characters decoded; every run is measured in its font, size and weight.
+   * The widest line counts if the text has line or paragraph breaks.
+   */
+  int rtfWidthTwips( CharSequence rtf ) {
+    StringBuilder run = new StringBuilder( rtf.length() );
+    Format format = new Format( defaultFontName, defaultSizePoints, false );
+    Deque<Format> groups = new ArrayDeque<>();
+    int width = 0, lineWidth = 0;
+
+    for ( int i = 0, length = rtf.length(); i < length; i++ ) {
+      char c = rtf.charAt( i );
+      if ( c == '\n' || c == '\r' )
+        continue;
+      if ( c == '{' || c == '}' ) {
+        lineWidth += widthTwips( run, format.fontName, format.sizePoints, format.bold );
+        run.setLength( 0 );
+        if ( c == '{' ) {
+          groups.push( new Format( format.fontName, format.sizePoints, format.bold ) );
+          // {\* ...} is a destination a reader may ignore, like a field instruction: nothing visible
+          if ( i + 2 < length && rtf.charAt( i + 1 ) == '\\' && rtf.charAt( i + 2 ) == '*' )
+            i = groupEnd( rtf, i + 1 ) - 1;
+        }
+        else if ( !groups.isEmpty() )
+          format = groups.pop();
+        continue;
+      }
+      if ( c != '\\' || i + 1 >= length ) {
+        run.append( c );
+        continue;
+      }
+
+      char next = rtf.charAt( ++i );
+      if ( next == '\\' || next == '{' || next == '}' )
+        run.append( next );
+      else if ( next == '~' )
+        run.append( ' ' );
+      else if ( next == '\'' ) {
+        if ( i + 2 < length ) {
+          run.append( (char) Integer.parseInt( rtf.subSequence( i + 1, i + 3 ).toString(), 16 ) );
+          i += 2;
+        }
+      }
+      else if ( Character.isLetter( next ) ) {
+        int start = i;
+        while ( i + 1 < length && Character.isLetter( rtf.charAt( i + 1 ) ) )
+          i++;
+        String word = rtf.subSequence( start, i + 1 ).toString();
+        int paramStart = i + 1;
+        if ( i + 1 < length && rtf.charAt( i + 1 ) == '-' )
+          i++;
+        while ( i + 1 < length && Character.isDigit( rtf.charAt( i + 1 ) ) )
+          i++;
+        String param = rtf.subSequence( paramStart, i + 1 ).toString();
+        if ( i + 1 < length && rtf.charAt( i + 1 ) == ' ' )
+          i++;
+
+        switch ( word ) {
+          case "u":
+            if ( !param.isEmpty() ) {
+              int code = Integer.parseInt( param );
+              run.append( (char) (code < 0 ? code + 65536 : code) );
+              // skip the fallback character
+              if ( i + 2 < length && rtf.charAt( i + 1 ) == '\\' && rtf.charAt( i + 2 ) == '\'' )
+                i += 4;
+              else if ( i + 1 < length )
+                i++;
+            }
+            break;
+          case "b":
+          case "f":
+          case "fs":
+          case "plain":
+            lineWidth += widthTwips( run, format.fontName, format.sizePoints, format.bold );
+            run.setLength( 0 );
+            if ( word.equals( "b" ) )
+              format.bold = !"0".equals( param );
+            else if ( word.equals( "f" ) )
+              format.fontName = param.isEmpty() ? defaultFontName : fontNames.getOrDefault( Integer.valueOf( param ), defaultFontName );
+            else if ( word.equals( "fs" ) )
+              format.sizePoints = param.isEmpty() ? DEFAULT_FONT_SIZE_POINTS : Integer.parseInt( param ) / 2f;
+            else {
+              format.fontName = defaultFontName;
+              format.sizePoints = defaultSizePoints;
+              format.bold = false;
+            }
+            break;
+          case "tab":
+            run.append( "    " );
+            break;
+          case "bin":
+            i += param.isEmpty() ? 0 : Integer.parseInt( param );
+            break;
+          case "line":
+          case "par":
+            lineWidth += widthTwips( run, format.fontName, format.sizePoints, format.bold );
+            run.setLength( 0 );
+            width = Math.max( width, lineWidth );
+            lineWidth = 0;
+            break;
+          default:
+            if ( HIDDEN_DESTINATIONS.contains( word ) )
+              i = groupEnd( rtf, i + 1 ) - 1;   // the rest of the group is data, e.g. hex of a picture
+        }
+      }
+    }
+    lineWidth += widthTwips( run, format.fontName, format.sizePoints, format.bold );
+    return Math.max( width, lineWidth );
+  }
+
+  /**
+   * Returns the index of the <code>}</code> that closes the group the RTF at {@code from} is in, or
+   * the length if the group is not closed. Escaped braces and binary data {@code \binN} are skipped.
+   */
+  private static int groupEnd( CharSequence rtf, int from ) {
+    int depth = 0;
+    for ( int i = from, length = rtf.length(); i < length; i++ ) {
+      char c = rtf.charAt( i );
+      if ( c == '{' )
+        depth++;
+      else if ( c == '}' ) {
+        if ( depth-- == 0 )
+          return i;
+      }
+      else if ( c == '\\' && i + 1 < length ) {
+        if ( !Character.isLetter( rtf.charAt( i + 1 ) ) ) {
+          i++;
+          continue;
+        }
+        int start = ++i;
+        while ( i + 1 < length && Character.isLetter( rtf.charAt( i + 1 ) ) )
+          i++;
+        boolean bin = i + 1 - start == 3 && rtf.subSequence( start, i + 1 ).toString().equals( "bin" );
+        int paramStart = i + 1;
+        while ( i + 1 < length && Character.isDigit( rtf.charAt( i + 1 ) ) )
+          i++;
+        if ( bin && i + 1 > paramStart && i + 1 < length && rtf.charAt( i + 1 ) == ' ' )
+          i += 1 + Integer.parseInt( rtf.subSequence( paramStart, i + 1 ).toString() );
+      }
+    }
+    return rtf.length();
+  }
+}
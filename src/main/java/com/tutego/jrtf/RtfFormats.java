@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Cached number and date formats for {@link RtfText#number(double, String, Locale)} and
+ * {@link RtfText#date(TemporalAccessor, String, Locale)}. A pattern is compiled once per locale
+ * and shared by all threads, so also a document written by a new (virtual) thread finds it
+ * compiled. The caches grow with the number of distinct pattern/locale combinations,
+ * which is small in practice.
+ */
+final class RtfFormats {
+
+  /**
+   * Compiled number patterns, by locale and then pattern, so a lookup needs no key object.
+   */
+  private static final ConcurrentMap<Locale, ConcurrentMap<String, NumberPattern>> NUMBER_FORMATS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * {@link DateTimeFormatter} is immutable and thread-safe, so all threads share them.
+   */
+  private static final ConcurrentMap<Locale, ConcurrentMap<String, DateTimeFormatter>> DATE_FORMATS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Idle formatters kept per number pattern; more are created when needed, but not kept.
+   */
+  static final int MAX_IDLE_FORMATTERS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private RtfFormats() {}
+
+  /**
+   * A compiled number pattern. {@link DecimalFormat} is not thread-safe, so a formatter is
+   * borrowed from a small pool shared by all threads and cloned from the prototype if the pool
+   * is empty. Nothing is kept per thread.
+   */
+  static final class NumberPattern {
+    private final DecimalFormat prototype;
+    private final ConcurrentLinkedQueue<Formatter> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    NumberPattern( String pattern, Locale locale ) {
+      prototype = new DecimalFormat( pattern, DecimalFormatSymbols.getInstance( locale ) );
+    }
+
+    void write( RtfOutput out, double value ) {
+      Formatter formatter = borrow();
+      formatter.format.format( value, formatter.buffer, formatter.fieldPosition );
+      write( out, formatter );
+    }
+
+    void write( RtfOutput out, long value ) {
+      Formatter formatter = borrow();
+      formatter.format.format( value, formatter.buffer, formatter.fieldPosition );
+      write( out, formatter );
+    }
+
+    private Formatter borrow() {
+      @Nullable Formatter formatter = idle.poll();
+      if ( formatter == null )
+        return new Formatter( (DecimalFormat) prototype.clone() );
+      idleCount.decrementAndGet();
+      return formatter;
+    }
+
+    private void write( RtfOutput out, Formatter formatter ) {
+      StringBuffer buffer = formatter.buffer;
+      try {
+        // grouping separators may be non-ASCII, e.g. a no-break space
+        Rtf.asRtf( out, buffer, 0, buffer.length() );
+      }
+      finally {
+        buffer.setLength( 0 );
+        if ( idleCount.incrementAndGet() <= MAX_IDLE_FORMATTERS )
+          idle.offer( formatter );
+        else
+          idleCount.decrementAndGet();
+      }
+    }
+
+    int idleFormatters() {
+      return idleCount.get();
+    }
+  }
+
+  private static final class Formatter {
+    final DecimalFormat format;
+    final StringBuffer buffer = new StringBuffer( 32 );
+    final FieldPosition fieldPosition = new FieldPosition( 0 );
+
+    Formatter( DecimalFormat format ) {
+      this.format = format;
+    }
+  }
+
+  /**
+   * A number or date with its compiled pattern, the operand of {@link RtfText#FORMAT}.
+   * Immutable.
+   */
+  static final class Value {
+    private final Object value;
+    private final Object format;
+
+    private Value( Object value, Object format ) {
+      this.value = value;
+      this.format = format;
+    }
+
+    void write( RtfOutput out ) {
+      if ( format instanceof DateTimeFormatter ) {
+        StringBuilder buffer = new StringBuilder( 32 );
+        ((DateTimeFormatter) format).formatTo( (TemporalAccessor) value, buffer );
+        Rtf.asRtf( out, buffer, 0, buffer.length() );
+      }
+      else if ( value instanceof Long )
+        ((NumberPattern) format).write( out, (long) (Long) value );
+      else
+        ((NumberPattern) format).write( out, (double) (Double) value );
+    }
+
+    @Override public String toString() {
+      return String.valueOf( value );
+    }
+  }
+
+  static Value number( double value, String pattern, Locale locale ) {
+    return new Value( value, numberFormat( pattern, locale ) );
+  }
+
+  static Value number( long value, String pattern, Locale locale ) {
+    return new Value( value, numberFormat( pattern, locale ) );
+  }
+
+  static Value date( TemporalAccessor value, String pattern, Locale locale ) {
+    return new Value( value, dateFormat( pattern, locale ) );
+  }
+
+  /**
+   * Returns the compiled number format.
+   *
+   * @throws IllegalArgumentException if the pattern is invalid.
+   */
+  static NumberPattern numberFormat( String pattern, Locale locale ) {
+    return NUMBER_FORMATS.computeIfAbsent( locale, l -> new ConcurrentHashMap<>() )
+                         .computeIfAbsent( pattern, p -> new NumberPattern( p, locale ) );
+  }
+
+  /**
+   * Returns the compiled date format.
+   *
+   * @throws IllegalArgumentException if the pattern is invalid.
+   */
+  static DateTimeFormatter dateFormat( String pattern, Locale locale ) {
+    return DATE_FORMATS.computeIfAbsent( locale, l -> new ConcurrentHashMap<>() )
+                       .computeIfAbsent( pattern, p -> DateTimeFormatter.ofPattern( p, locale ) );
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A {@link Writer} that passes all characters on to an {@link Appendable} and tells subclasses
+ * what was written. Whole char arrays go to a {@link Writer} or {@link StringBuilder} target in
+ * one call. The target is flushed with this writer but never closed.
+ */
+abstract class RtfForwardingWriter extends Writer {
+
+  /**
+   * Target, or {@code null} if the characters are only looked at.
+   */
+  final @Nullable Appendable out;
+
+  RtfForwardingWriter( @Nullable Appendable out ) {
+    this.out = out;
+  }
+
+  /**
+   * Called after {@code length} characters were passed on, unless a subclass overrides the
+   * method for the characters themselves.
+   */
+  void written( int length ) throws IOException {}
+
+  void written( char c ) throws IOException {
+    written( 1 );
+  }
+
+  void written( CharSequence chars, int start, int end ) throws IOException {
+    written( end - start );
+  }
+
+  void written( char[] chars, int off, int len ) throws IOException {
+    written( len );
+  }
+
+  @Override public void write( char[] chars, int off, int len ) throws IOException {
+    Appendable target = out;
+    if ( target instanceof Writer )
+      ((Writer) target).write( chars, off, len );
+    else if ( target instanceof StringBuilder )
+      ((StringBuilder) target).append( chars, off, len );
+    else if ( target != null )
+      for ( int i = off; i < off + len; i++ )
+        target.append( chars[ i ] );
+    written( chars, off, len );
+  }
+
+  @Override public void write( int c ) throws IOException {
+    append( (char) c );
+  }
+
+  @Override public void write( String str, int off, int len ) throws IOException {
+    append( str, off, off + len );
+  }
+
+  @Override public Writer append( char c ) throws IOException {
+    if ( out != null )
+      out.append( c );
+    written( c );
+    return this;
+  }
+
+  @Override public Writer append( @Nullable CharSequence csq ) throws IOException {
+    CharSequence chars = csq == null ? "null" : csq;
+    return append( chars, 0, chars.length() );
+  }
+
+  @Override public Writer append( @Nullable CharSequence csq, int start, int end ) throws IOException {
+    CharSequence chars = csq == null ? "null" : csq;
+    if ( out != null )
+      out.append( chars, start, end );
+    written( chars, start, end );
+    return this;
+  }
+
+  @Override public void flush() throws IOException {
+    if ( out instanceof Flushable )
+      ((Flushable) out).flush();
+  }
+
+  /**
+   * Does nothing, the target is closed by whoever opened it.
+   */
+  @Override public void close() {}
+}
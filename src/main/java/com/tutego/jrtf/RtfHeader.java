@@ -68,4 +68,15 @@ public abstract class RtfHeader {
   public static RtfHeaderColor color( int r, int g, int b ) {
     return new RtfHeaderColor( r & 0xFF, g & 0xFF, b & 0xFF );
   }
+
+  /**
+   * Creates a new color definition from a packed {@code 0xRRGGBB} value, for example
+   * {@code color( 0xFF8000 )}. Bits above the lower 24 are ignored.
+   *
+   * @param rgb Red, green and blue packed into one int.
+   * @return {@link RtfHeaderColor} to set the position of the font.
+   */
+  public static RtfHeaderColor color( int rgb ) {
+    return color( rgb >> 16, rgb >> 8, rgb );
+  }
 }
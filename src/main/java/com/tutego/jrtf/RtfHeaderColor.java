@@ -31,6 +31,8 @@
  */
 package com.tutego.jrtf;
 
+import org.jspecify.annotations.Nullable;
+
 /**
  * Represents a color definition for the RTF header.
  */
@@ -91,6 +93,20 @@ public class RtfHeaderColor extends RtfHeader implements Comparable<RtfHeaderCol
     return new RtfHeaderColor( r, g, b, colorindex );
   }
 
+  /**
+   * Returns the color as 24-bit {@code 0xRRGGBB} value.
+   */
+  int rgb() {
+    return (r << 16) | (g << 8) | b;
+  }
+
+  /**
+   * Returns the referenced theme color, or {@code null} for a plain RGB color.
+   */
+  @Nullable ThemeColor themeColor() {
+    return null;
+  }
+
   @Override public int compareTo( RtfHeaderColor other ) {
     return Integer.compare( this.colorindex, other.colorindex );
   }
@@ -176,6 +192,10 @@ public class RtfHeaderColor extends RtfHeader implements Comparable<RtfHeaderCol
       this.themeColor = themeColor;
     }
 
+    @Override ThemeColor themeColor() {
+      return themeColor;
+    }
+
     @Override void writeColordef( RtfOutput out ) {
       out.cw( themeColor.controlWord ).semi();
     }
@@ -33,6 +33,8 @@ package com.tutego.jrtf;
 
 import java.io.InputStream;
 
+import org.jspecify.annotations.Nullable;
+
 /**
  * Header definitions for font declarations.
  */
@@ -332,6 +334,20 @@ public class RtfHeaderFont extends RtfHeader {
     this.fontname = fontname;
   }
 
+  /**
+   * Returns the name of the font, e.g. {@code "Arial"}.
+   */
+  String name() {
+    return fontname;
+  }
+
+  /**
+   * Returns the number of the font in the header font table.
+   */
+  int number() {
+    return fontnum;
+  }
+
   /**
    * Sets the font family.
    *
@@ -392,12 +408,15 @@ public class RtfHeaderFont extends RtfHeader {
   }
 
   /**
-   * Writes out the RTF definition for a font.
-   *
-   * @param out Output buffer.
+   * Font file to embed, read on first output, then {@code null}.
    */
-  private InputStream fontData;
+  private @Nullable InputStream fontData;
 
+  /**
+   * Hex encoded font file, {@code null} until {@link #fontData} is read. Volatile, so threads
+   * writing documents with this font at the same time read the font once.
+   */
+  private volatile @Nullable String fontHex;
 
   /**
    * Embeds the full font file (TTF, OTF) into the document so the font is
@@ -408,10 +427,62 @@ public class RtfHeaderFont extends RtfHeader {
    * @return {@code this}-object.
    */
   public RtfHeaderFont embed( InputStream fontData ) {
-    this.fontData = fontData;
+    synchronized ( this ) {
+      this.fontData = fontData;
+      this.fontHex = null;
+    }
     return this;
   }
 
+  /**
+   * Reads and hex-encodes the embedded font file once, even if several threads ask at the same time.
+   *
+   * @return Hex encoded font, or {@code null} if no font is embedded.
+   */
+  private @Nullable String ensureEmbedded( RtfOutput out ) {
+    String loaded = fontHex;
+    if ( loaded != null )
+      return loaded;
+
+    synchronized ( this ) {
+      InputStream data = fontData;
+      if ( fontHex != null || data == null )
+        return fontHex;
+
+      long start = out.startNanos();
+      @Nullable Object event = RtfFlightRecorder.FONT_EMBED.begin();
+      StringBuilder hex = new StringBuilder( 8192 );
+      long bytes = 0;
+      try ( InputStream in = new java.io.BufferedInputStream( data ) ) {
+        byte[] buf = new byte[ 4096 ];
+        int pos = 0;
+        int n;
+        while ( (n = in.read( buf )) != -1 ) {
+          bytes += n;
+          for ( int i = 0; i < n; i++ ) {
+            hex.append( Hex.RAW[ buf[ i ] & 0xFF ] );
+            if ( ++pos == 40 ) { pos = 0; hex.append( '\n' ); }
+          }
+        }
+      } catch ( java.io.IOException e ) {
+        throw new RtfException( e );
+      }
+      out.count( RtfMetrics.Counter.FONT_BYTES, bytes );
+      out.phase( RtfMetrics.Phase.FONT_EMBED, -1, start );
+      RtfFlightRecorder.FONT_EMBED.end( event, fontname, bytes );
+
+      fontData = null;
+      loaded = hex.toString();
+      fontHex = loaded;
+      return loaded;
+    }
+  }
+
+  /**
+   * Writes out the RTF definition for a font.
+   *
+   * @param out Output buffer.
+   */
   void writeFontInfo( RtfOutput out ) {
     /*
      * <fontinfo> := <fontnum>
@@ -426,31 +497,22 @@ public class RtfHeaderFont extends RtfHeader {
      *               <fontaltname>? ';'
      */
 
+    out.enterSize( RtfSizeReport.Category.FONT, fontname );
     out.open( RtfControlWords.FONT ).append( fontnum )
        .cw( RtfControlWords.FONT ).append( fontfamily.toString().toLowerCase() )
        .append( (charSet != null ? "\\" + RtfControlWords.FONT_CHARSET + charSet : "") )
        .append( (pitch != null ? "\\" + RtfControlWords.FONT_PITCH + pitch : "") );
 
-    if ( fontData != null ) {
+    String embedded = ensureEmbedded( out );
+    if ( embedded != null ) {
       out.open( RtfControlWords.FONT_FILE_DESTINATION )
          .cw( RtfControlWords.FONT_EMBED ).cw( RtfControlWords.FONT_FILE_CP ).append( "1252" )
-         .cw( RtfControlWords.FONT_FILE_NUMBER ).append( fontnum ).sp();
-      try ( InputStream in = new java.io.BufferedInputStream( fontData ) ) {
-        byte[] buf = new byte[ 4096 ];
-        int pos = 0;
-        int n;
-        while ( (n = in.read( buf )) != -1 ) {
-          for ( int i = 0; i < n; i++ ) {
-            out.append( Hex.RAW[ buf[ i ] & 0xFF ] );
-            if ( ++pos == 40 ) { pos = 0; out.nl(); }
-          }
-        }
-      } catch ( java.io.IOException e ) {
-        throw new RtfException( e );
-      }
-      out.close();
+         .cw( RtfControlWords.FONT_FILE_NUMBER ).append( fontnum ).sp()
+         .append( embedded )
+         .close();
     }
 
     out.sp().append( fontname ).closeSemi();
+    out.exitSize();
   }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Limits for writing a document or template, so that a broken input can't keep a thread busy
+ * or fill the disk: a timeout, a maximum size and number of paragraphs, and cancellation.
+ * <pre>
+ * rtf().limits( RtfLimits.none().timeout( Duration.ofSeconds( 10 ) ).maxBytes( 50_000_000 ) )
+ *      .section( rows ).out( writer );
+ * </pre>
+ * The limits are checked after every paragraph and table row, and for templates after every
+ * variable. An exceeded limit, an interrupted thread or a cancellation aborts the output with
+ * a {@link RtfAbortedException}; what is written so far stays in the target. Without limits,
+ * the default {@link #NONE}, nothing is checked.
+ * <p>
+ * Instances are immutable, every method returns a new object.
+ */
+public final class RtfLimits {
+
+  /**
+   * No limits, the default.
+   */
+  public static final RtfLimits NONE = new RtfLimits( 0, 0, 0, null );
+
+  final long timeoutNanos;
+  final long maxBytes;
+  final long maxParagraphs;
+  final @Nullable BooleanSupplier cancelled;
+
+  private RtfLimits( long timeoutNanos, long maxBytes, long maxParagraphs, @Nullable BooleanSupplier cancelled ) {
+    this.timeoutNanos = timeoutNanos;
+    this.maxBytes = maxBytes;
+    this.maxParagraphs = maxParagraphs;
+    this.cancelled = cancelled;
+  }
+
+  /**
+   * Returns {@link #NONE}, to start a chain of limits.
+   *
+   * @return No limits.
+   */
+  public static RtfLimits none() {
+    return NONE;
+  }
+
+  /**
+   * Limits the time a single output may take, measured from its start.
+   *
+   * @param timeout Time, positive.
+   * @return New limits.
+   * @throws IllegalArgumentException if {@code timeout} is {@code null}, zero or negative.
+   */
+  public RtfLimits timeout( Duration timeout ) {
+    if ( timeout == null || timeout.isZero() || timeout.isNegative() )
+      throw new IllegalArgumentException( "Timeout must be positive but was " + timeout );
+    return new RtfLimits( timeout.toNanos(), maxBytes, maxParagraphs, cancelled );
+  }
+
+  /**
+   * Limits the size of the output in characters, which is the number of bytes of a file.
+   *
+   * @param maxBytes Size, at least {@code 1}.
+   * @return New limits.
+   * @throws IllegalArgumentException if {@code maxBytes} is smaller than {@code 1}.
+   */
+  public RtfLimits maxBytes( long maxBytes ) {
+    if ( maxBytes < 1 )
+      throw new IllegalArgumentException( "Maximum size must be at least 1 but was " + maxBytes );
+    return new RtfLimits( timeoutNanos, maxBytes, maxParagraphs, cancelled );
+  }
+
+  /**
+   * Limits the number of paragraphs of a document; every table row counts as a paragraph.
+   *
+   * @param maxParagraphs Number, at least {@code 1}.
+   * @return New limits.
+   * @throws IllegalArgumentException if {@code maxParagraphs} is smaller than {@code 1}.
+   */
+  public RtfLimits maxParagraphs( long maxParagraphs ) {
+    if ( maxParagraphs < 1 )
+      throw new IllegalArgumentException( "Maximum number of paragraphs must be at least 1 but was " + maxParagraphs );
+    return new RtfLimits( timeoutNanos, maxBytes, maxParagraphs, cancelled );
+  }
+
+  /**
+   * Aborts the output as soon as {@code cancelled} returns {@code true}, e.g.
+   * {@code future::isCancelled} or {@code request::isAborted}. An interrupted thread
+   * always aborts an output with limits.
+   *
+   * @param cancelled Called at every check, from the writing thread. Must not be {@code null}.
+   * @return New limits.
+   * @throws IllegalArgumentException if {@code cancelled} is {@code null}.
+   */
+  public RtfLimits cancelWhen( BooleanSupplier cancelled ) {
+    if ( cancelled == null )
+      throw new IllegalArgumentException( "Cancellation can't be null" );
+    return new RtfLimits( timeoutNanos, maxBytes, maxParagraphs, cancelled );
+  }
+
+  @Override public String toString() {
+    if ( this == NONE )
+      return "no limits";
+    StringBuilder result = new StringBuilder();
+    if ( timeoutNanos != 0 )
+      result.append( "timeout " ).append( Duration.ofNanos( timeoutNanos ) ).append( ", " );
+    if ( maxBytes != 0 )
+      result.append( "max " ).append( maxBytes ).append( " bytes, " );
+    if ( maxParagraphs != 0 )
+      result.append( "max " ).append( maxParagraphs ).append( " paragraphs, " );
+    if ( cancelled != null )
+      result.append( "cancellable, " );
+    result.append( "interruptible" );
+    return result.toString();
+  }
+
+  /**
+   * Checks the limits of one output.
+   */
+  static final class Governor {
+    private final RtfLimits limits;
+    private final long deadline;
+    private long paragraphs;
+
+    Governor( RtfLimits limits ) {
+      this.limits = limits;
+      this.deadline = limits.timeoutNanos == 0 ? 0 : System.nanoTime() + limits.timeoutNanos;
+    }
+
+    /**
+     * Counts a paragraph and checks all limits.
+     */
+    void paragraph( long bytes ) {
+      paragraphs++;
+      if ( limits.maxParagraphs != 0 && paragraphs > limits.maxParagraphs )
+        throw new RtfAbortedException( RtfAbortedException.Reason.MAX_PARAGRAPHS,
+                                       "Document has more than " + limits.maxParagraphs + " paragraphs" );
+      check( bytes );
+    }
+
+    /**
+     * Checks all limits but the number of paragraphs.
+     *
+     * @param bytes Characters written so far.
+     */
+    void check( long bytes ) {
+      if ( limits.maxBytes != 0 && bytes > limits.maxBytes )
+        throw new RtfAbortedException( RtfAbortedException.Reason.MAX_BYTES,
+                                       "Output is larger than " + limits.maxBytes + " bytes" );
+      if ( deadline != 0 && System.nanoTime() - deadline > 0 )
+        throw new RtfAbortedException( RtfAbortedException.Reason.TIMEOUT,
+                                       "Output took longer than " + Duration.ofNanos( limits.timeoutNanos ) );
+      if ( Thread.currentThread().isInterrupted() )
+        throw new RtfAbortedException( RtfAbortedException.Reason.INTERRUPTED, "Output was interrupted" );
+      @Nullable BooleanSupplier cancelled = limits.cancelled;
+      if ( cancelled != null && cancelled.getAsBoolean() )
+        throw new RtfAbortedException( RtfAbortedException.Reason.CANCELLED, "Output was cancelled" );
+    }
+  }
+}
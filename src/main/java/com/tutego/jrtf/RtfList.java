@@ -30,7 +30,6 @@ package com.tutego.jrtf;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A modern RTF list definition ({@code \listtable} / {@code \listoverridetable}), used to
@@ -44,9 +43,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * hierarchical, ancestor-concatenating numbering (e.g. {@code "1.1.1."}) the RTF format also
  * allows.
  * <p>
- * A list must be registered on the document with {@link Rtf#lists(RtfList...)} before any
- * paragraph can reference it via {@link RtfTextPara#list(RtfList, int)}. Like everything else
- * in this library, no RTF is produced until the document is written.
+ * A list must be registered on the document with {@link Rtf#lists(RtfList...)} if a paragraph
+ * of the document references it via {@link RtfTextPara#list(RtfList, int)}. Like everything else
+ * in this library, no RTF is produced until the document is written; the list gets its number
+ * then, from its position in the lists of that document, so one list can serve many documents.
  * <pre>
  * import static com.tutego.jrtf.RtfList.NumberFormat.DECIMAL;
  *
@@ -107,19 +107,6 @@ public final class RtfList {
    */
   private static final int BULLET_CHAR = 0x95;
 
-  private static final AtomicInteger NEXT_LIST_ID = new AtomicInteger( 1 );
-
-  /**
-   * Unique, process-wide id of this list ({@code \listid}).
-   */
-  final int listId = NEXT_LIST_ID.getAndIncrement();
-
-  /**
-   * 1-based index into the document's list override table ({@code \ls}), assigned by
-   * {@link Rtf#lists(RtfList...)}. {@code -1} until registered.
-   */
-  int overrideIndex = -1;
-
   private final List<Level> levels = new ArrayList<>();
 
   private static final class Level {
@@ -143,7 +130,7 @@ public final class RtfList {
   /**
    * Creates a list whose first level (0) is bulleted.
    *
-   * @return New list. Not yet usable until registered with {@link Rtf#lists(RtfList...)}.
+   * @return New list. Usable in documents it is registered with, see {@link Rtf#lists(RtfList...)}.
    */
   public static RtfList bulleted() {
     RtfList list = new RtfList();
@@ -155,7 +142,7 @@ public final class RtfList {
    * Creates a list whose first level (0) is numbered with the given format.
    *
    * @param format Number format of level 0.
-   * @return New list. Not yet usable until registered with {@link Rtf#lists(RtfList...)}.
+   * @return New list. Usable in documents it is registered with, see {@link Rtf#lists(RtfList...)}.
    */
   public static RtfList numbered( NumberFormat format ) {
     if ( format == null )
@@ -324,11 +311,12 @@ public final class RtfList {
   }
 
   /**
-   * Writes this list's {@code \list} definition into the document's {@code \listtable}.
+   * Writes this list's {@code \list} definition into the document's {@code \listtable}. The
+   * {@code listId} is the number of the list in the document.
    * Per spec, a list with more than one level must define all 9 levels, so levels beyond
    * the ones configured are padded with a clone of the last configured level.
    */
-  void writeListDefinition( RtfOutput out ) {
+  void writeListDefinition( RtfOutput out, int listId ) {
     boolean simple = levels.size() <= 1;
 
     out.open( RtfControlWords.LIST )
@@ -346,12 +334,13 @@ public final class RtfList {
 
   /**
    * Writes this list's {@code \listoverride} entry into the document's {@code \listoverridetable}.
+   * Each list has one override, so the {@code \ls} index is the list number as well.
    */
-  void writeListOverride( RtfOutput out ) {
+  void writeListOverride( RtfOutput out, int listId ) {
     out.open( RtfControlWords.LIST_OVERRIDE )
        .cw( RtfControlWords.LIST_ID, listId )
        .cw( RtfControlWords.LIST_OVERRIDE_COUNT ).append( "0" )
-       .cw( RtfControlWords.LIST_OVERRIDE_INDEX, overrideIndex )
+       .cw( RtfControlWords.LIST_OVERRIDE_INDEX, listId )
        .close().nl();
   }
 }
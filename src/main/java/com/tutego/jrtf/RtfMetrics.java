@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+/**
+ * Listener for measurements taken while documents and templates are written: how long the
+ * phases take and how much was written. Set it with {@link Rtf#metrics(RtfMetrics)} or
+ * {@link RtfTemplate#metrics(RtfMetrics)}; {@link RtfMetricsAggregator} sums everything up.
+ * <p>
+ * Counters are collected per document and reported once when the document is finished, not
+ * per paragraph. Without a listener, the default {@link #NONE}, no time is taken and nothing
+ * is reported. All methods have an empty default implementation, so an implementation only
+ * overrides what it is interested in. Implementations have to be thread-safe if documents
+ * are written concurrently.
+ */
+public interface RtfMetrics {
+
+  /**
+   * Listener that ignores everything, the default.
+   */
+  RtfMetrics NONE = new RtfMetrics() {};
+
+  /**
+   * Timed phases.
+   */
+  enum Phase {
+    /** Writing a whole document, from the first to the last character. */
+    DOCUMENT,
+    /** Font table, color table, style sheet and list tables. */
+    HEADER,
+    /** Document information like title and author. */
+    INFO,
+    /** Document formatting. */
+    DOCFMT,
+    /** One section, including its formatting and paragraphs. */
+    SECTION,
+    /** Reading the image of a picture, which happens only once per picture. */
+    PICTURE_LOAD,
+    /** Encoding an embedded font file. */
+    FONT_EMBED,
+    /** Substituting the variables of a template in {@link RtfTemplate#out()}. */
+    TEMPLATE
+  }
+
+  /**
+   * Counted quantities.
+   */
+  enum Counter {
+    /** Characters written for a document; RTF is 7 bit, so these are bytes as well. */
+    BYTES,
+    /** Text paragraphs. */
+    PARAGRAPHS,
+    /** Table rows, header rows included. */
+    ROWS,
+    /** Pieces of text, each written in one formatting. */
+    RUNS,
+    /** Bytes of image data read for pictures. */
+    PICTURE_BYTES,
+    /** Bytes of embedded font files. */
+    FONT_BYTES,
+    /** Template variables with a value. */
+    PLACEHOLDER_HITS,
+    /** Template variables without a value, left as they are. */
+    PLACEHOLDER_MISSES
+  }
+
+  /**
+   * Called when a phase is finished.
+   *
+   * @param phase   The finished phase.
+   * @param section Index of the section, counted from 0, for {@link Phase#SECTION}, otherwise {@code -1}.
+   * @param nanos   Duration in nanoseconds.
+   */
+  default void phase( Phase phase, int section, long nanos ) {}
+
+  /**
+   * Called with the amount a counter increased by. Counters of a document are reported
+   * after the {@link Phase#DOCUMENT} phase; only counters that are not {@code 0}.
+   *
+   * @param counter Counter.
+   * @param amount  Positive increase.
+   */
+  default void count( Counter counter, long amount ) {}
+}
@@ -31,7 +31,14 @@
  */
 package com.tutego.jrtf;
 
+import org.jspecify.annotations.Nullable;
+
 import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -46,13 +53,302 @@ final class RtfOutput {
 
   private final Appendable out;
 
+  /**
+   * {@code true} if the output is written in compact mode, see {@link Rtf#compact()}.
+   * Renderers may then omit control words that only repeat a default value.
+   */
+  final boolean compact;
+
+  /**
+   * Color table of the document being written, or {@code null} if the output
+   * is not part of a document (e.g. a template substitution).
+   */
+  @Nullable RtfColorTable colorTable;
+
+  /**
+   * Name of the default font {@code \f0} of the document being written, or {@code null}
+   * if the output is not part of a document. Used to estimate text widths.
+   */
+  @Nullable String defaultFontName;
+
+  /**
+   * Names of the fonts of the document being written by number, or {@code null} if the output
+   * is not part of a document. Used to estimate text widths.
+   */
+  @Nullable Map<Integer, String> fontNames;
+
+  /**
+   * Number of each list registered with the document being written, used for {@code \listid} and
+   * {@code \ls}, or {@code null} if the output is not part of a document.
+   */
+  @Nullable Map<RtfList, Integer> listNumbers;
+
+  /**
+   * Listener of the document being written, {@link RtfMetrics#NONE} if nobody listens.
+   */
+  RtfMetrics metrics = RtfMetrics.NONE;
+
+  /**
+   * Counters of the document, indexed by {@link RtfMetrics.Counter#ordinal()}, or {@code null}
+   * if nobody listens. Shared with {@link #buffered(StringBuilder) buffered} outputs.
+   */
+  long @Nullable [] counters;
+
+  /**
+   * Counts the characters written to the target if the document is measured, otherwise {@code null}.
+   */
+  @Nullable RtfCountingWriter counter;
+
+  /**
+   * Collects the size report, or {@code null} if none is wanted, see {@link Rtf#outWithSizeReport(Appendable)}.
+   * Not inherited by {@link #buffered(StringBuilder) buffered} outputs, whose content is usually
+   * measured or thrown away and written again.
+   */
+  RtfSizeReport.@Nullable Recorder sizes;
+
+  /**
+   * Records every color looked up with {@link #colorIndex(RtfHeaderColor)} while paragraphs are
+   * rendered for a {@link RtfCachedPara}, or {@code null}. Shared with buffered outputs.
+   */
+  @Nullable List<RtfHeaderColor> colorLog;
+
+  /**
+   * Records every list looked up with {@link #listNumber(RtfList)} while paragraphs are
+   * rendered for a {@link RtfCachedPara}, or {@code null}. Shared with buffered outputs.
+   */
+  @Nullable List<RtfList> listLog;
+
+  /**
+   * Flushes the target of a streamed document, see {@link Rtf#stream(Appendable, RtfFlushPolicy)},
+   * or {@code null}. Not inherited by {@link #buffered(StringBuilder) buffered} outputs.
+   */
+  @Nullable RtfFlushingWriter flushing;
+
+  /**
+   * Checks the {@link RtfLimits} of the document being written, or {@code null} if there are none.
+   * Shared with buffered outputs.
+   */
+  RtfLimits.@Nullable Governor governor;
+
   /**
    * Wraps the given {@link Appendable} so callers can write RTF without
    * checked {@link IOException} — every public method catches and rethrows
    * as {@link RtfException}.
    */
   RtfOutput( Appendable out ) {
-    this.out = out;
+    this( out, false );
+  }
+
+  /**
+   * Wraps the given {@link Appendable}; in compact mode all output passes
+   * a {@link RtfCompactAppendable} first.
+   */
+  RtfOutput( Appendable out, boolean compact ) {
+    this.out = compact ? new RtfCompactAppendable( out ) : out;
+    this.compact = compact;
+  }
+
+  private RtfOutput( StringBuilder buffer, RtfOutput parent ) {
+    this.out = buffer;
+    this.compact = parent.compact;
+    this.colorTable = parent.colorTable;
+    this.defaultFontName = parent.defaultFontName;
+    this.fontNames = parent.fontNames;
+    this.listNumbers = parent.listNumbers;
+    this.metrics = parent.metrics;
+    this.counters = parent.counters;
+    this.colorLog = parent.colorLog;
+    this.listLog = parent.listLog;
+    this.governor = parent.governor;
+  }
+
+  /**
+   * Returns an output that writes into {@code buffer} but otherwise behaves like this one:
+   * same mode, color table, default font and metrics. Compact filtering is left to this output, so
+   * the buffer should later be appended here.
+   */
+  RtfOutput buffered( StringBuilder buffer ) {
+    return new RtfOutput( buffer, this );
+  }
+
+  /**
+   * Resolves a color to its index in the document color table.
+   *
+   * @throws RtfException if there is no document color table or the color is not in it.
+   */
+  int colorIndex( RtfHeaderColor color ) {
+    RtfColorTable table = colorTable;
+    if ( table == null )
+      throw new RtfException( "Colors can only be referenced by value inside a Rtf document, use a color index instead" );
+    List<RtfHeaderColor> log = colorLog;
+    if ( log != null )
+      log.add( color );
+    return table.indexOf( color );
+  }
+
+  /**
+   * Resolves a list to its number in the list table of the document, see {@link Rtf#lists(RtfList...)}.
+   *
+   * @throws RtfException if the list is not registered with the document being written.
+   */
+  int listNumber( RtfList list ) {
+    Map<RtfList, Integer> numbers = listNumbers;
+    Integer number = numbers == null ? null : numbers.get( list );
+    if ( number == null )
+      throw new RtfException( "List must be registered with Rtf.lists(...) of the document it is used in" );
+    List<RtfList> log = listLog;
+    if ( log != null )
+      log.add( list );
+    return number;
+  }
+
+  /**
+   * Reports to {@code metrics} while this document is written.
+   */
+  void measure( RtfMetrics metrics ) {
+    this.metrics = metrics;
+    this.counters = new long[ RtfMetrics.Counter.values().length ];
+  }
+
+  /**
+   * Returns {@code true} if there is a listener that wants {@link #phase} reports.
+   */
+  boolean measuring() {
+    return counters != null;
+  }
+
+  /**
+   * Increases a counter of the document. Cheap, the counters are reported when the document is finished.
+   */
+  void count( RtfMetrics.Counter counter, long amount ) {
+    long[] values = counters;
+    if ( values != null )
+      values[ counter.ordinal() ] += amount;
+  }
+
+  /**
+   * Reports a finished phase that started at {@code startNanos}, see {@link #measuring()}.
+   */
+  void phase( RtfMetrics.Phase phase, int section, long startNanos ) {
+    if ( measuring() )
+      metrics.phase( phase, section, System.nanoTime() - startNanos );
+  }
+
+  /**
+   * Returns {@link System#nanoTime()} if this output is measured, otherwise {@code 0}.
+   */
+  long startNanos() {
+    return measuring() ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Reports all counters that are not {@code 0} and sets them back.
+   */
+  void reportCounters() {
+    long[] values = counters;
+    if ( values == null )
+      return;
+    RtfMetrics.Counter[] all = RtfMetrics.Counter.values();
+    for ( int i = 0; i < values.length; i++ ) {
+      if ( values[ i ] != 0 )
+        metrics.count( all[ i ], values[ i ] );
+      values[ i ] = 0;
+    }
+  }
+
+  /**
+   * Returns the number of characters written so far if known, see {@link #counter}. In compact mode
+   * the characters the compaction still holds are included, they are behind the counter.
+   */
+  long position() {
+    if ( out instanceof StringBuilder )
+      return ((StringBuilder) out).length();
+    RtfCountingWriter writer = counter;
+    if ( writer == null )
+      return 0;
+    long position = writer.count();
+    if ( out instanceof RtfCompactAppendable )
+      position += ((RtfCompactAppendable) out).pending();
+    return position;
+  }
+
+  /**
+   * Starts a part of the size report, if one is collected.
+   *
+   * @param category Category, {@code null} for bytes that are not counted.
+   * @param key      Name of the part, or an object to number, or {@code null}.
+   */
+  void enterSize( RtfSizeReport.@Nullable Category category, @Nullable Object key ) {
+    RtfSizeReport.Recorder recorder = sizes;
+    if ( recorder != null )
+      recorder.enter( category, key, position() );
+  }
+
+  /**
+   * Ends the part of the size report started last.
+   */
+  void exitSize() {
+    RtfSizeReport.Recorder recorder = sizes;
+    if ( recorder != null )
+      recorder.exit( position() );
+  }
+
+  /**
+   * Hands everything the compact mode still holds back to the wrapped {@link Appendable}.
+   * Does nothing in normal mode.
+   */
+  void flush() {
+    if ( out instanceof RtfCompactAppendable )
+      try { ((RtfCompactAppendable) out).flush(); } catch ( IOException e ) { throw new RtfException( e ); }
+  }
+
+  /**
+   * Called after a paragraph of a section is written; counts it for the {@link RtfLimits} unless it is
+   * a table, whose rows are counted, or a sequence of paragraphs, which are counted one by one.
+   */
+  void paragraphWritten( RtfPara para ) {
+    RtfLimits.@Nullable Governor governor = this.governor;
+    if ( governor == null )
+      return;
+    if ( para instanceof RtfTable || para instanceof RtfPara.Sequence )
+      governor.check( position() );
+    else
+      governor.paragraph( position() );
+  }
+
+  /**
+   * Called after a table row is written; counts it as paragraph for the {@link RtfLimits}.
+   */
+  void rowWritten() {
+    RtfLimits.@Nullable Governor governor = this.governor;
+    if ( governor != null )
+      governor.paragraph( position() );
+  }
+
+  /**
+   * Checks the {@link RtfLimits} but doesn't count a paragraph.
+   */
+  void checkLimits() {
+    RtfLimits.@Nullable Governor governor = this.governor;
+    if ( governor != null )
+      governor.check( position() );
+  }
+
+  /**
+   * Called after a section is written; passes the section on to a streamed target.
+   */
+  void sectionWritten() {
+    @Nullable RtfFlushingWriter flushing = this.flushing;
+    if ( flushing == null )
+      return;
+    try {
+      if ( out instanceof RtfCompactAppendable )
+        ((RtfCompactAppendable) out).drain();
+      flushing.sectionWritten();
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
   }
 
   // ---- Basic appends (no checked exceptions) ----
@@ -66,6 +362,89 @@ final class RtfOutput {
   public RtfOutput append( boolean b )        { try { out.append( Boolean.toString( b ) ); } catch ( IOException e ) { throw new RtfException( e ); } return this; }
   public RtfOutput append( Object o )         { try { out.append( o.toString() );          } catch ( IOException e ) { throw new RtfException( e ); } return this; }
 
+  // ---- Numbers without intermediate Strings ----
+
+  /**
+   * Scratch buffer for digits, large enough for a long plus sign and decimal point.
+   */
+  private final char[] digits = new char[ 24 ];
+
+  private static final long[] POWERS_OF_TEN = {
+      1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L };
+
+  /**
+   * Appends the decimal digits of {@code value} without creating a String.
+   */
+  RtfOutput appendDigits( long value ) {
+    if ( value == Long.MIN_VALUE )
+      return append( Long.toString( value ) );
+
+    int start = fillDigits( Math.abs( value ), digits.length, 1 );
+    if ( value < 0 )
+      digits[ --start ] = '-';
+    return appendScratch( start );
+  }
+
+  /**
+   * Appends {@code value} rounded half up to {@code fractionDigits} (0 to 9) fraction digits,
+   * like {@code 1234.50} for {@code fractionDigits = 2}, without creating a String. Values that
+   * don't fit into a long after scaling, NaN and infinity fall back to a String conversion.
+   */
+  RtfOutput appendFixed( double value, int fractionDigits ) {
+    double scaled = Math.abs( value ) * POWERS_OF_TEN[ fractionDigits ];
+    if ( !(scaled < 9e18) ) {   // also true for NaN
+      if ( Double.isNaN( value ) || Double.isInfinite( value ) )
+        return append( Double.toString( value ) );
+      return append( new BigDecimal( value )
+                         .setScale( fractionDigits, RoundingMode.HALF_UP ).toPlainString() );
+    }
+
+    long units = Math.round( scaled );
+    int end = digits.length;
+    int start = fillDigits( units, end, fractionDigits + 1 );
+    if ( fractionDigits > 0 ) {
+      // shift the integer digits one to the left and put the point in between
+      int point = end - fractionDigits;
+      System.arraycopy( digits, start, digits, start - 1, point - start );
+      digits[ point - 1 ] = '.';
+      start--;
+    }
+    if ( value < 0 && units != 0 )
+      digits[ --start ] = '-';
+    return appendScratch( start );
+  }
+
+  /**
+   * Writes the digits of a non-negative value right aligned into the scratch buffer, ending
+   * before {@code end}, with at least {@code minDigits} digits (leading zeros).
+   *
+   * @return Index of the first digit.
+   */
+  private int fillDigits( long value, int end, int minDigits ) {
+    int pos = end;
+    do {
+      digits[ --pos ] = (char) ('0' + value % 10);
+      value /= 10;
+    } while ( value != 0 || end - pos < minDigits );
+    return pos;
+  }
+
+  private RtfOutput appendScratch( int start ) {
+    try {
+      if ( out instanceof StringBuilder )
+        ((StringBuilder) out).append( digits, start, digits.length - start );
+      else if ( out instanceof Writer )
+        ((Writer) out).write( digits, start, digits.length - start );
+      else
+        for ( int i = start; i < digits.length; i++ )
+          out.append( digits[ i ] );
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+    return this;
+  }
+
   // ---- Low-level control-word helpers (auto-prepend backslash) ----
 
   /**
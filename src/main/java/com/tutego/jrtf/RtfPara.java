@@ -32,8 +32,11 @@
 package com.tutego.jrtf;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.jspecify.annotations.Nullable;
 
@@ -68,6 +71,18 @@ public abstract class RtfPara {
    */
   abstract void rtf( RtfOutput out, boolean withEndingPar );
 
+  /**
+   * Returns a paragraph that is rendered once, the first time it is written, and then only
+   * copied, for paragraphs used in many documents, like legal footers. Same as
+   * {@link #cached(RtfPara...) cached( this )}; this paragraph must not change afterwards.
+   * The result can be shared between documents and threads.
+   *
+   * @return Frozen paragraph.
+   */
+  public RtfPara freeze() {
+    return new RtfCachedPara( new RtfPara[]{ this } );
+  }
+
   /**
    * Wraps a {@link Consumer} lambda into a {@code RtfPara}. The consumer writes
    * the paragraph content; the framework handles the grouping and optional
@@ -84,6 +99,68 @@ public abstract class RtfPara {
     };
   }
 
+  /**
+   * Wraps a source of paragraphs into one {@code RtfPara}. The source is asked for its
+   * paragraphs each time the paragraph is written, and each of them is written and then
+   * dropped before the next one is requested.
+   *
+   * @param paragraphs Opens the paragraph source. The stream is closed after writing.
+   * @return New {@code RtfPara} object writing all paragraphs of the source.
+   */
+  static RtfPara sequence( Supplier<? extends Stream<? extends RtfPara>> paragraphs ) {
+    return new Sequence( paragraphs );
+  }
+
+  /**
+   * Paragraphs generated while the document is written, see {@link #sequence(Supplier)}.
+   */
+  static final class Sequence extends RtfPara {
+    private final Supplier<? extends Stream<? extends RtfPara>> paragraphs;
+
+    Sequence( Supplier<? extends Stream<? extends RtfPara>> paragraphs ) {
+      this.paragraphs = paragraphs;
+    }
+
+    @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+      try ( Stream<? extends RtfPara> stream = paragraphs.get() ) {
+        if ( stream == null )
+          throw new RtfException( "Paragraph supplier returned null instead of a stream" );
+        for ( Iterator<? extends RtfPara> iterator = stream.iterator(); iterator.hasNext(); ) {
+          RtfPara para = iterator.next();
+          if ( para == null )
+            throw new RtfException( "Paragraph source contains null" );
+          para.rtf( out, withEndingPar );
+          out.paragraphWritten( para );
+        }
+      }
+    }
+  }
+
+  /**
+   * Groups paragraphs whose RTF is written only once and then copied, for content that many
+   * documents share, like the boilerplate sections of contracts. The group can be used in
+   * any number of {@link Rtf} documents, also at the same time:
+   * <pre>
+   * static final RtfPara TERMS = RtfPara.cached( p( "1. Scope" ), p( ... ), ... );
+   * rtf().section( p( "Contract for ", customer ), TERMS ).out( writer );
+   * </pre>
+   * The paragraphs must not change afterwards. Colors, the default font and compact mode are
+   * taken into account, but list paragraphs refer to the position of the list in
+   * {@link Rtf#lists(RtfList...)}, which therefore has to be the same in all documents.
+   *
+   * @param paragraphs Paragraphs. Must not be {@code null}.
+   * @return New paragraph that writes all {@code paragraphs}.
+   * @throws IllegalArgumentException if {@code paragraphs} or one of them is {@code null}.
+   */
+  public static RtfPara cached( RtfPara... paragraphs ) {
+    if ( paragraphs == null )
+      throw new IllegalArgumentException( "Paragraphs must not be null" );
+    for ( RtfPara para : paragraphs )
+      if ( para == null )
+        throw new IllegalArgumentException( "Paragraphs must not contain null" );
+    return new RtfCachedPara( paragraphs.clone() );
+  }
+
   /**
    * Builds a paragraph of objects (that will be converted to Strings and {@code RtfText}).
    * Convenience method for {@code p(RtfText.text(texts))}.
@@ -109,6 +186,18 @@ public abstract class RtfPara {
     return p( style, RtfText.text( texts ) );
   }
 
+  /**
+   * Creates a reusable builder for paragraphs with many formatted runs, e.g.
+   * {@code RtfPara.builder().bold().append( "Error" ).plain().append( ": disk full" ).build()}.
+   * Cheaper than {@link #p(Object...)} with one {@link RtfText} per run when millions of
+   * runs are written.
+   *
+   * @return New {@link RtfParaBuilder}.
+   */
+  public static RtfParaBuilder builder() {
+    return new RtfParaBuilder();
+  }
+
   /**
    * A paragraph with a collection of text. This paragraph will inherit all
    * the settings from the other paragraph. See {@link #pard(RtfText...)} if you
@@ -141,10 +230,7 @@ public abstract class RtfPara {
       para.emptyParagraph = true;
     }
     else {
-      para.renderer = out -> {
-        for ( RtfText rtfText : texts )
-          rtfText.rtf( out );
-      };
+      para.text = RtfText.concat( texts );
     }
     return para;
   }
@@ -182,10 +268,7 @@ public abstract class RtfPara {
       para.emptyParagraph = true;
     }
     else {
-      para.renderer = out -> {
-        for ( RtfText rtfText : texts )
-          rtfText.rtf( out );
-      };
+      para.text = RtfText.concat( texts );
     }
     return para;
   }
@@ -235,7 +318,7 @@ public abstract class RtfPara {
   public static RtfPara hangingUl( RtfText text, double beforeBulletWidth,
                                    RtfUnit beforeBulletUnit, double indentWidth, RtfUnit indentUnit,
                                    double afterItemSpace, RtfUnit afterItemUnit ) {
-    return hangingUl( new RtfText( out -> out.cw( RtfControlWords.BULLET ) ), text, beforeBulletWidth, beforeBulletUnit,
+    return hangingUl( new RtfText.Builder( 1 ).op( RtfText.WORD, RtfControlWords.BULLET ).build(), text, beforeBulletWidth, beforeBulletUnit,
                       indentWidth, indentUnit, afterItemSpace, afterItemUnit );
   }
 
@@ -464,6 +547,7 @@ public abstract class RtfPara {
 
     RtfRow row = new RtfRow();
     row.renderer = out -> {
+      out.enterSize( RtfSizeReport.Category.TABLE_DEFINITION, null );
       out.open().cw( RtfControlWords.ROW_DEFAULTS ).cw( RtfControlWords.ROW_AUTOFIT )
          .append( 1 ).ctrl( RtfControlWords.IN_TABLE );
 
@@ -477,10 +561,13 @@ public abstract class RtfPara {
         out.append( row.tbldef )
            .append( (cellPara instanceof RtfTextPara) ?
                     ((RtfTextPara) cellPara).cellfmt :
-                    "" )
-           .cw( RtfControlWords.CELL_BACKGROUND_COLOR ).append( colorIndex )
-           .pair( RtfControlWords.CELL_BOUNDARY, boundary );
+                    "" );
+        // \clcbpat0 is the automatic color, i.e. no shading at all
+        if ( colorIndex != 0 || !out.compact )
+          out.cw( RtfControlWords.CELL_BACKGROUND_COLOR ).append( colorIndex );
+        out.pair( RtfControlWords.CELL_BOUNDARY, boundary );
       }
+      out.exitSize();
 
       for ( RtfPara cell : cells ) {
         cell.rtf( out, false );
@@ -507,15 +594,20 @@ public abstract class RtfPara {
 
     RtfRow row = new RtfRow();
     row.renderer = out -> {
+      out.enterSize( RtfSizeReport.Category.TABLE_DEFINITION, null );
       out.open().cw( RtfControlWords.ROW_DEFAULTS ).ctrl( RtfControlWords.IN_TABLE );
 
       int boundary = 0;
       for ( RtfCell cell : cells ) {
         boundary += cell.effectiveWidthTwips();
         out.append( row.tbldef )
-           .append( cell.celldef )
-           .pair( RtfControlWords.CELL_BOUNDARY, boundary );
+           .append( cell.celldef );
+        RtfHeaderColor backgroundColor = cell.backgroundColor;
+        if ( backgroundColor != null )
+          out.cw( RtfControlWords.CELL_BACKGROUND_COLOR, out.colorIndex( backgroundColor ) );
+        out.pair( RtfControlWords.CELL_BOUNDARY, boundary );
       }
+      out.exitSize();
 
       for ( RtfCell cell : cells ) {
         List<RtfPara> paras = cell.paras;
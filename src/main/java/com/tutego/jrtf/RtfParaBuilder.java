@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mutable builder for paragraphs with many differently formatted runs. Instead of one
+ * {@link RtfText} per run the characters are collected in one buffer and each run is recorded as a
+ * few ints (end offset and formatting), so appending neither creates objects nor varargs arrays:
+ * <pre>
+ * RtfParaBuilder line = RtfPara.builder();
+ * rtf.section( () -&gt; entries.stream().map( entry -&gt;
+ *     line.reset()
+ *         .bold().append( entry.level() ).plain().append( ' ' )
+ *         .color( 2 ).append( entry.timestamp() ).plain().append( ' ' )
+ *         .append( entry.message() )
+ *         .build() ) );
+ * </pre>
+ * All log lines are paragraphs of one section, built only while the document is written.
+ * {@link #build()} takes a snapshot, so the builder can be {@link #reset()} and reused right away.
+ * Adjacent runs with the same formatting are merged. A builder is not thread-safe.
+ */
+public final class RtfParaBuilder {
+
+  private static final int BOLD       = 1;
+  private static final int ITALIC     = 1 << 1;
+  private static final int UNDERLINE  = 1 << 2;
+  private static final int STRIKETHRU = 1 << 3;
+
+  /**
+   * Marks an unset font, font size or color.
+   */
+  private static final int UNSET = -1;
+
+  /**
+   * Ints per run in {@link #runs}: end offset, flags, font, font size, color index, and the index
+   * of a color given by value in {@link #colorValues}.
+   */
+  private static final int RUN_SIZE = 6;
+
+  /**
+   * Characters of all runs.
+   */
+  private final StringBuilder chars = new StringBuilder( 256 );
+
+  /**
+   * {@link #RUN_SIZE} ints for each run.
+   */
+  private int[] runs = new int[ RUN_SIZE * 16 ];
+  private int runCount;
+
+  /**
+   * Colors given by value, see {@link #color(RtfHeaderColor)}; runs refer to them by index.
+   */
+  private final List<RtfHeaderColor> colorValues = new ArrayList<>();
+
+  // Formatting of the next appended characters
+  private int flags;
+  private int font = UNSET;
+  private int fontSize = UNSET;
+  private int color = UNSET;
+  private int colorValue = UNSET;
+
+  /** Package-private: called from {@link RtfPara#builder()}. */
+  RtfParaBuilder() {}
+
+  // Formatting
+
+  /**
+   * Appends the following text in bold.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder bold() {
+    flags |= BOLD;
+    return this;
+  }
+
+  /**
+   * Appends the following text in italic.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder italic() {
+    flags |= ITALIC;
+    return this;
+  }
+
+  /**
+   * Underlines the following text.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder underline() {
+    flags |= UNDERLINE;
+    return this;
+  }
+
+  /**
+   * Strikes through the following text.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder strikethru() {
+    flags |= STRIKETHRU;
+    return this;
+  }
+
+  /**
+   * Sets the font of the following text.
+   *
+   * @param fontnum Font number according to the header.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder font( int fontnum ) {
+    if ( fontnum < 0 )
+      throw new IllegalArgumentException( "Font number can't be negative" );
+    font = fontnum;
+    return this;
+  }
+
+  /**
+   * Sets the font size of the following text in half-points.
+   *
+   * @param fontSize Font size.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder fontSize( int fontSize ) {
+    if ( fontSize < 0 )
+      throw new IllegalArgumentException( "Font size can't be negative" );
+    this.fontSize = fontSize;
+    return this;
+  }
+
+  /**
+   * Colors the following text.
+   *
+   * @param colorindex Index of the color set defined in the header.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder color( int colorindex ) {
+    if ( colorindex < 0 )
+      throw new IllegalArgumentException( "Color index can't be negative" );
+    color = colorindex;
+    colorValue = UNSET;
+    return this;
+  }
+
+  /**
+   * Colors the following text. The color is looked up in the color table of the document
+   * when the paragraph is written, see {@link Rtf#autoColorTable()}.
+   *
+   * @param color Color.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder color( RtfHeaderColor color ) {
+    if ( color == null )
+      throw new IllegalArgumentException( "Color can't be null" );
+    int last = colorValues.size() - 1;
+    if ( last < 0 || !colorValues.get( last ).equals( color ) ) {
+      colorValues.add( color );
+      last++;
+    }
+    this.color = UNSET;
+    colorValue = last;
+    return this;
+  }
+
+  /**
+   * Turns all formatting off, the following text is plain.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder plain() {
+    flags = 0;
+    font = UNSET;
+    fontSize = UNSET;
+    color = UNSET;
+    colorValue = UNSET;
+    return this;
+  }
+
+  // Text
+
+  /**
+   * Appends text with the current formatting. Like in {@link RtfText#text(String)}
+   * {@code '\n'} becomes a paragraph break and {@code '\t'} a tab.
+   *
+   * @param text Text to append. {@code null} is ignored.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( @Nullable CharSequence text ) {
+    if ( text != null && text.length() > 0 ) {
+      chars.append( text );
+      endRun();
+    }
+    return this;
+  }
+
+  /**
+   * Appends a part of a text with the current formatting.
+   *
+   * @param text  Text to append.
+   * @param start Index of the first char.
+   * @param end   Index after the last char.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( CharSequence text, int start, int end ) {
+    if ( start < end ) {
+      chars.append( text, start, end );
+      endRun();
+    }
+    return this;
+  }
+
+  /**
+   * Appends a part of a char array with the current formatting.
+   *
+   * @param text   Chars to append.
+   * @param offset Index of the first char.
+   * @param len    Number of chars.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( char[] text, int offset, int len ) {
+    if ( len > 0 ) {
+      chars.append( text, offset, len );
+      endRun();
+    }
+    return this;
+  }
+
+  /**
+   * Appends a character with the current formatting.
+   *
+   * @param c Character to append.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( char c ) {
+    chars.append( c );
+    endRun();
+    return this;
+  }
+
+  /**
+   * Appends the decimal digits of a number with the current formatting.
+   *
+   * @param i Number to append.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( int i ) {
+    chars.append( i );
+    endRun();
+    return this;
+  }
+
+  /**
+   * Appends the decimal digits of a number with the current formatting.
+   *
+   * @param l Number to append.
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder append( long l ) {
+    chars.append( l );
+    endRun();
+    return this;
+  }
+
+  /**
+   * Records that the chars up to the current length belong to a run with the current formatting,
+   * either by extending the last run or by starting a new one.
+   */
+  private void endRun() {
+    int last = (runCount - 1) * RUN_SIZE;
+    if ( runCount > 0 && runs[ last + 1 ] == flags && runs[ last + 2 ] == font
+         && runs[ last + 3 ] == fontSize && runs[ last + 4 ] == color && runs[ last + 5 ] == colorValue ) {
+      runs[ last ] = chars.length();
+      return;
+    }
+
+    int next = runCount * RUN_SIZE;
+    if ( next + RUN_SIZE > runs.length )
+      runs = Arrays.copyOf( runs, runs.length * 2 );
+    runs[ next ] = chars.length();
+    runs[ next + 1 ] = flags;
+    runs[ next + 2 ] = font;
+    runs[ next + 3 ] = fontSize;
+    runs[ next + 4 ] = color;
+    runs[ next + 5 ] = colorValue;
+    runCount++;
+  }
+
+  /**
+   * Number of runs recorded so far.
+   *
+   * @return Number of runs.
+   */
+  public int runCount() {
+    return runCount;
+  }
+
+  /**
+   * Discards all text and turns the formatting off. The buffers are kept, so
+   * a builder can be reused for the next paragraph without new allocations.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfParaBuilder reset() {
+    chars.setLength( 0 );
+    runCount = 0;
+    colorValues.clear();
+    return plain();
+  }
+
+  /**
+   * Builds a paragraph from a snapshot of the recorded runs. Later changes to this builder
+   * don't affect the returned paragraph, which can be formatted further like every
+   * {@link RtfTextPara}. The runs become the nodes of an ordinary {@link RtfText}, so the
+   * text can be {@link RtfText#freeze() frozen} like any other.
+   *
+   * @return New paragraph.
+   */
+  public RtfTextPara build() {
+    RtfTextPara para = new RtfTextPara();
+    para.styleId = RtfHeaderStyle.NORMAL.getId();
+    if ( runCount == 0 )
+      para.emptyParagraph = true;
+    else
+      para.text = text();
+    return para;
+  }
+
+  /**
+   * Converts the runs into nodes: a plain run is a text node, a formatted run a group
+   * <code>{\b\f1 text}</code>; a color given by value opens the group, <code>{\cf2 \b text}</code>.
+   */
+  private RtfText text() {
+    RtfText.Builder text = new RtfText.Builder( runCount * 3 );
+    String all = chars.toString();
+    int start = 0;
+    for ( int r = 0; r < runCount * RUN_SIZE; r += RUN_SIZE ) {
+      int end = runs[ r ];
+      int flags = runs[ r + 1 ];
+      int font = runs[ r + 2 ];
+      int fontSize = runs[ r + 3 ];
+      int color = runs[ r + 4 ];
+      int colorValue = runs[ r + 5 ];
+      String run = all.substring( start, end );
+      start = end;
+
+      if ( flags == 0 && font == UNSET && fontSize == UNSET && color == UNSET && colorValue == UNSET ) {
+        text.op( RtfText.TEXT, run );
+        continue;
+      }
+
+      boolean words = flags != 0 || font != UNSET || fontSize != UNSET || color != UNSET;
+      if ( colorValue != UNSET )
+        text.op( RtfText.OPEN_COLOR, colorValues.get( colorValue ), 0 );
+      else
+        text.op( RtfText.OPEN );
+      if ( (flags & BOLD) != 0 )
+        text.op( RtfText.WORD, RtfControlWords.BOLD );
+      if ( (flags & ITALIC) != 0 )
+        text.op( RtfText.WORD, RtfControlWords.ITALIC );
+      if ( (flags & UNDERLINE) != 0 )
+        text.op( RtfText.WORD, RtfControlWords.UNDERLINE );
+      if ( (flags & STRIKETHRU) != 0 )
+        text.op( RtfText.WORD, RtfControlWords.STRIKETHROUGH );
+      if ( font != UNSET )
+        text.op( RtfText.WORD_N, RtfControlWords.FONT, font );
+      if ( fontSize != UNSET )
+        text.op( RtfText.WORD_N, RtfControlWords.FONT_SIZE, fontSize );
+      if ( color != UNSET )
+        text.op( RtfText.WORD_N, RtfControlWords.CHAR_FOREGROUND_COLOR, color );
+      if ( words )
+        text.op( RtfText.SPACE );
+      text.op( RtfText.TEXT, run ).op( RtfText.CLOSE );
+    }
+    return text.build();
+  }
+}
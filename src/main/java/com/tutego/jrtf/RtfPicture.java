@@ -34,6 +34,8 @@ package com.tutego.jrtf;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jspecify.annotations.Nullable;
+
 /**
  * Represents an image which can be added to an RTF document.
  */
@@ -79,8 +81,11 @@ public class RtfPicture {
   }
 
   private final StreamSource source;
-  private final StringBuilder hexPicData = new StringBuilder( 4096 );
-  private boolean loaded = false;
+  /**
+   * Hex encoded image, {@code null} until the image is read. Volatile, so threads writing
+   * documents with this picture at the same time read the image once.
+   */
+  private volatile @Nullable String hexPicData;
 
   private int widthInTwips = -1, heightInTwips = -1;
   private int scaleX = -1, scaleY = -1;
@@ -125,19 +130,36 @@ public class RtfPicture {
   }
 
   /**
-   * Reads the image from its source and hex-encodes it, but only once (on first call).
-   * Called from {@link #type(PictureType)}'s render body, i.e. only when the document
-   * is written.
+   * Reads the image from its source and hex-encodes it, but only once (on first call), even
+   * if several threads ask at the same time. Called from {@link #type(PictureType)}'s render
+   * body, i.e. only when the document is written.
    */
-  private void ensureLoaded() throws IOException {
-    if ( loaded )
-      return;
+  private String ensureLoaded( RtfOutput out ) throws IOException {
+    String loaded = hexPicData;
+    if ( loaded != null )
+      return loaded;
+
+    synchronized ( this ) {
+      loaded = hexPicData;
+      if ( loaded == null ) {
+        loaded = load( out );
+        hexPicData = loaded;
+      }
+      return loaded;
+    }
+  }
 
+  private String load( RtfOutput out ) throws IOException {
+    StringBuilder hexPicData = new StringBuilder( 4096 );
+    long start = out.startNanos();
+    @Nullable Object event = RtfFlightRecorder.PICTURE_LOAD.begin();
+    long bytes = 0;
     try ( InputStream in = new java.io.BufferedInputStream( source.open() ) ) {
       byte[] buf = new byte[ 4096 ];
       int pos = 0;  // hex chars written on current line (0..39)
       int n;
       while ( (n = in.read( buf )) != -1 ) {
+        bytes += n;
         for ( int i = 0; i < n; i++ ) {
           int b = buf[ i ] & 0xFF;
           if ( b < 16 ) hexPicData.append( '0' );
@@ -150,7 +172,10 @@ public class RtfPicture {
       }
     }
 
-    loaded = true;
+    out.count( RtfMetrics.Counter.PICTURE_BYTES, bytes );
+    out.phase( RtfMetrics.Phase.PICTURE_LOAD, -1, start );
+    RtfFlightRecorder.PICTURE_LOAD.end( event, bytes );
+    return hexPicData.toString();
   }
 
   /**
@@ -236,9 +261,11 @@ public class RtfPicture {
     if ( pictureType == null )
       throw new IllegalArgumentException( "PictureType must not be null" );
     return new RtfText( out -> {
-      try { ensureLoaded(); }
+      String hexPicData;
+      try { hexPicData = ensureLoaded( out ); }
       catch ( IOException e ) { throw new RtfException( e ); }
 
+      out.enterSize( RtfSizeReport.Category.PICTURE, this );
       out.open( RtfControlWords.PICTURE_DESTINATION );
 
       if ( pictureType == PictureType.AUTOMATIC ) {
@@ -287,6 +314,7 @@ public class RtfPicture {
       out.nl();
       out.append( hexPicData );
       out.close();
+      out.exitSize();
     } );
   }
 }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Exports a JDBC {@link ResultSet} as {@link RtfTable}. The column titles, widths and
+ * alignments are taken from the {@link ResultSetMetaData}; the rows are read from the result
+ * set while the document is written, one at a time, so the memory needed doesn't depend on
+ * the number of rows:
+ * <pre>
+ * try ( ResultSet rs = statement.executeQuery( "SELECT name, price FROM article" ) ) {
+ *   rtf().section( RtfResultSets.table( rs ) ).out( writer );
+ * }
+ * </pre>
+ * The result set has to stay open until the document is written and can be written only once.
+ * It is not closed by the table.
+ */
+public final class RtfResultSets {
+
+  /**
+   * Fetch size hint given to a result set still using the driver default.
+   */
+  static final int DEFAULT_FETCH_SIZE = 500;
+
+  /**
+   * Width of the text area of a Letter/A4 page with default margins, 6.5 inch.
+   */
+  private static final int DEFAULT_TABLE_WIDTH_TWIPS = 9360;
+
+  /**
+   * Columns get between this minimum and maximum of characters, following the display size.
+   */
+  private static final int MIN_COLUMN_CHARS = 4;
+  private static final int MAX_COLUMN_CHARS = 40;
+
+  /**
+   * Timestamps always get seconds and never fractions, so all rows look alike.
+   */
+  private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern( "yyyy-MM-dd HH:mm:ss", Locale.ROOT );
+
+  // How a column is read and written
+  private static final byte TEXT     = 0;
+  private static final byte INTEGRAL = 1;
+  private static final byte DECIMAL  = 2;
+  private static final byte FLOATING = 3;
+  private static final byte BOOLEAN  = 4;
+  private static final byte DATE     = 5;
+  private static final byte TIME     = 6;
+  private static final byte DATETIME = 7;
+  private static final byte BINARY   = 8;
+
+  private RtfResultSets() {}
+
+  /**
+   * Creates a table for the result set that is 6.5 inch wide.
+   *
+   * @param resultSet Open result set, positioned before the first row.
+   * @return New table with a repeated header row of the column labels.
+   * @throws RtfException if the meta data can't be read.
+   */
+  public static RtfTable table( ResultSet resultSet ) {
+    return table( resultSet, DEFAULT_TABLE_WIDTH_TWIPS, RtfUnit.TWIPS );
+  }
+
+  /**
+   * Creates a table for the result set. The total width is split between the columns
+   * according to their display sizes.
+   *
+   * @param resultSet Open result set, positioned before the first row.
+   * @param width     Total width of the table.
+   * @param unit      Unit of {@code width}.
+   * @return New table with a repeated header row of the column labels.
+   * @throws RtfException if the meta data can't be read.
+   */
+  public static RtfTable table( ResultSet resultSet, double width, RtfUnit unit ) {
+    if ( resultSet == null )
+      throw new IllegalArgumentException( "ResultSet must not be null" );
+
+    try {
+      ResultSetMetaData meta = resultSet.getMetaData();
+      int columnCount = meta.getColumnCount();
+      if ( columnCount == 0 )
+        throw new RtfException( "ResultSet has no columns" );
+
+      byte[] kinds = new byte[ columnCount ];
+      String[] labels = new String[ columnCount ];
+      int[] chars = new int[ columnCount ];
+      int totalChars = 0;
+      for ( int i = 0; i < columnCount; i++ ) {
+        kinds[ i ] = kindOf( meta.getColumnType( i + 1 ) );
+        labels[ i ] = meta.getColumnLabel( i + 1 );
+        int displaySize = Math.max( meta.getColumnDisplaySize( i + 1 ), labels[ i ].length() );
+        chars[ i ] = Math.max( MIN_COLUMN_CHARS, Math.min( MAX_COLUMN_CHARS, displaySize ) );
+        totalChars += chars[ i ];
+      }
+
+      int tableTwips = unit.toTwips( width );
+      RtfTable table = RtfTable.table();
+      for ( int i = 0; i < columnCount; i++ ) {
+        boolean numeric = kinds[ i ] == INTEGRAL || kinds[ i ] == DECIMAL || kinds[ i ] == FLOATING;
+        table.column( Math.max( 1, (long) tableTwips * chars[ i ] / totalChars ), RtfUnit.TWIPS,
+                      numeric ? RtfTable.Alignment.RIGHT : RtfTable.Alignment.LEFT );
+      }
+
+      return table.header( (Object[]) labels )
+                  .rows( RtfTable.once( () -> new ResultSetCursor( resultSet, kinds ) ) );
+    }
+    catch ( SQLException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  private static byte kindOf( int sqlType ) {
+    switch ( sqlType ) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return INTEGRAL;
+      case Types.DECIMAL:
+      case Types.NUMERIC:
+        return DECIMAL;
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return FLOATING;
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return BOOLEAN;
+      case Types.DATE:
+        return DATE;
+      case Types.TIME:
+        return TIME;
+      case Types.TIMESTAMP:
+        return DATETIME;
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return BINARY;
+      default:
+        return TEXT;
+    }
+  }
+
+  /**
+   * Writes a floating point number without exponent and without trailing zeros, e.g.
+   * {@code 12345678.9} instead of {@code 1.23456789E7}. Infinity and NaN are written as by
+   * {@link Double#toString(double)}.
+   */
+  static String plain( double value ) {
+    if ( Double.isNaN( value ) || Double.isInfinite( value ) )
+      return Double.toString( value );
+    return BigDecimal.valueOf( value ).stripTrailingZeros().toPlainString();
+  }
+
+  /**
+   * Reads the rows of a result set. Numbers are read as primitives where possible and
+   * written without escaping, since their digits never need any.
+   */
+  private static final class ResultSetCursor implements RtfTable.RowCursor {
+    private final ResultSet resultSet;
+    private final byte[] kinds;
+
+    ResultSetCursor( ResultSet resultSet, byte[] kinds ) {
+      this.resultSet = resultSet;
+      this.kinds = kinds;
+      try {
+        if ( resultSet.getFetchSize() == 0 )
+          resultSet.setFetchSize( DEFAULT_FETCH_SIZE );
+      }
+      catch ( SQLException e ) {
+        // Only a hint, some drivers don't support it
+      }
+    }
+
+    @Override public boolean next() {
+      try {
+        return resultSet.next();
+      }
+      catch ( SQLException e ) {
+        throw new RtfException( e );
+      }
+    }
+
+    @Override public void writeCell( RtfOutput out, int column ) {
+      int index = column + 1;
+      try {
+        switch ( kinds[ column ] ) {
+          case INTEGRAL: {
+            long value = resultSet.getLong( index );
+            if ( !resultSet.wasNull() )
+              out.appendDigits( value );
+            break;
+          }
+          case DECIMAL: {
+            BigDecimal value = resultSet.getBigDecimal( index );
+            if ( value != null )
+              out.append( value.toPlainString() );
+            break;
+          }
+          case FLOATING: {
+            double value = resultSet.getDouble( index );
+            if ( !resultSet.wasNull() )
+              out.append( plain( value ) );
+            break;
+          }
+          case BOOLEAN: {
+            boolean value = resultSet.getBoolean( index );
+            if ( !resultSet.wasNull() )
+              out.append( value );
+            break;
+          }
+          case DATE: {
+            Date value = resultSet.getDate( index );
+            if ( value != null )
+              out.append( value.toString() );   // yyyy-mm-dd
+            break;
+          }
+          case TIME: {
+            Time value = resultSet.getTime( index );
+            if ( value != null )
+              out.append( value.toString() );   // hh:mm:ss
+            break;
+          }
+          case DATETIME: {
+            Timestamp value = resultSet.getTimestamp( index );
+            if ( value != null )
+              out.append( TIMESTAMP_FORMAT.format( value.toLocalDateTime() ) );
+            break;
+          }
+          case BINARY:
+            break;   // no sensible text representation
+          default: {
+            String value = resultSet.getString( index );
+            if ( value != null )
+              Rtf.asRtf( out, value );
+          }
+        }
+      }
+      catch ( SQLException e ) {
+        throw new RtfException( e );
+      }
+    }
+  }
+}
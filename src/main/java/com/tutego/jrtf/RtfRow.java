@@ -51,6 +51,7 @@ public class RtfRow extends RtfPara {
   Consumer<RtfOutput> renderer;
 
   @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+    out.count( RtfMetrics.Counter.ROWS, 1 );
     if ( renderer != null )
       renderer.accept( out );
   }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tells which parts of a document its bytes come from, see {@link Rtf#outWithSizeReport(Appendable)}.
+ * Every byte is attributed to the innermost part it was written in: the characters of a text run
+ * inside a field inside a table cell count as {@link Category#TEXT}, the field's own control words
+ * as {@link Category#FIELD}. So the bytes of all entries add up to {@link #totalBytes()}.
+ * <p>
+ * In compact mode the bytes are attributed before compaction finishes a group: an empty group that
+ * is dropped or two groups that are merged later may shift a few bytes to the neighboring part.
+ */
+public final class RtfSizeReport {
+
+  /**
+   * Parts of a document.
+   */
+  public enum Category {
+    /** Header tables: font, color, style, list and table style tables. */
+    HEADER,
+    /** One font definition with its embedded font file, named by the font. */
+    FONT,
+    /** Document information, formatting and variables. */
+    INFO,
+    /** Section and paragraph formatting of a section, named {@code "section 1"}, {@code "section 2"}, ... */
+    SECTION,
+    /** Row and cell definitions of tables, {@code \trowd ... \cellx}. */
+    TABLE_DEFINITION,
+    /** Text with its character formatting. */
+    TEXT,
+    /** Fields, hyperlinks and form fields, without the text of their results. */
+    FIELD,
+    /** One picture with its image data, named {@code "picture 1"}, {@code "picture 2"}, ... in document order. */
+    PICTURE,
+    /** Everything else, like the document braces. */
+    OTHER
+  }
+
+  /**
+   * Bytes of one part.
+   */
+  public static final class Entry {
+    private final Category category;
+    private final @Nullable String name;
+    private final long bytes;
+
+    Entry( Category category, @Nullable String name, long bytes ) {
+      this.category = category;
+      this.name = name;
+      this.bytes = bytes;
+    }
+
+    public Category category() {
+      return category;
+    }
+
+    /**
+     * @return Name of a font, picture or section, otherwise {@code null}.
+     */
+    public @Nullable String name() {
+      return name;
+    }
+
+    public long bytes() {
+      return bytes;
+    }
+
+    @Override public String toString() {
+      return category + (name == null ? "" : " " + name) + ": " + bytes;
+    }
+  }
+
+  private final long totalBytes;
+  private final List<Entry> entries;
+  private final long[] sectionBytes;
+
+  private RtfSizeReport( long totalBytes, List<Entry> entries, long[] sectionBytes ) {
+    this.totalBytes = totalBytes;
+    this.entries = entries;
+    this.sectionBytes = sectionBytes;
+  }
+
+  /**
+   * @return Size of the whole document.
+   */
+  public long totalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * @param category Category.
+   * @return Bytes of all parts of this category.
+   */
+  public long bytes( Category category ) {
+    long sum = 0;
+    for ( Entry entry : entries )
+      if ( entry.category == category )
+        sum += entry.bytes;
+    return sum;
+  }
+
+  /**
+   * @return All parts, the largest first. Parts without a name are summed up per category.
+   */
+  public List<Entry> entries() {
+    return entries;
+  }
+
+  /**
+   * @return Size of each section including everything in it, like text, tables and pictures.
+   */
+  public long[] sectionBytes() {
+    return sectionBytes.clone();
+  }
+
+  /**
+   * Lists the parts, the largest first, with their share of the document.
+   */
+  @Override public String toString() {
+    StringBuilder result = new StringBuilder( 64 + entries.size() * 48 );
+    result.append( "total " ).append( totalBytes ).append( " bytes\n" );
+    for ( Entry entry : entries ) {
+      String label = entry.name == null ? entry.category.toString() : entry.category + " " + entry.name;
+      result.append( String.format( Locale.ROOT, "%-32s %12d %5.1f%%%n", label, entry.bytes,
+                                    totalBytes == 0 ? 0 : entry.bytes * 100.0 / totalBytes ) );
+    }
+    return result.toString();
+  }
+
+  /**
+   * Collects the bytes while the document is written. Parts are entered and exited like a stack,
+   * with the write position of the output at that time; a part gets the bytes written between
+   * its entry and exit minus the bytes of the parts nested in it.
+   */
+  static final class Recorder {
+
+    private static final class Frame {
+      final @Nullable Category category;
+      final @Nullable String name;
+      final long start;
+      long nested;
+
+      Frame( @Nullable Category category, @Nullable String name, long start ) {
+        this.category = category;
+        this.name = name;
+        this.start = start;
+      }
+    }
+
+    private final List<Frame> stack = new ArrayList<>();
+    private final Map<String, Entry> bytes = new LinkedHashMap<>();
+    private final Map<Object, String> names = new IdentityHashMap<>();
+    private final int[] nameCounts = new int[ Category.values().length ];
+    private final List<Long> sectionBytes = new ArrayList<>();
+    private long topLevelNested;
+
+    /**
+     * Enters a part.
+     *
+     * @param category Category, or {@code null} for bytes that must not be counted, e.g. a buffer
+     *                 whose content was counted when it was written.
+     * @param key      Names the part: a String is the name, other objects are numbered in order.
+     * @param position Current write position of the output.
+     */
+    void enter( @Nullable Category category, @Nullable Object key, long position ) {
+      String name = null;
+      if ( key instanceof String )
+        name = (String) key;
+      else if ( key != null && category != null )
+        name = names.computeIfAbsent( key, k -> category.toString().toLowerCase( Locale.ROOT ) + " "
+                                                + ++nameCounts[ category.ordinal() ] );
+      stack.add( new Frame( category, name, position ) );
+    }
+
+    /**
+     * Exits the innermost part.
+     *
+     * @param position Current write position of the same output the part was entered with.
+     */
+    void exit( long position ) {
+      Frame frame = stack.remove( stack.size() - 1 );
+      Category category = frame.category;
+      if ( category == null )
+        return;
+
+      long inclusive = position - frame.start;
+      if ( stack.isEmpty() )
+        topLevelNested += inclusive;
+      else
+        stack.get( stack.size() - 1 ).nested += inclusive;
+      if ( category == Category.SECTION )
+        sectionBytes.add( inclusive );
+      add( category, frame.name, inclusive - frame.nested );
+    }
+
+    private void add( Category category, @Nullable String name, long amount ) {
+      String key = category + (name == null ? "" : "\u0000" + name);
+      Entry entry = bytes.get( key );
+      bytes.put( key, new Entry( category, name, (entry == null ? 0 : entry.bytes) + amount ) );
+    }
+
+    /**
+     * Finishes the report; bytes outside of all parts become {@link Category#OTHER}.
+     */
+    RtfSizeReport report( long totalBytes ) {
+      if ( !stack.isEmpty() )
+        throw new IllegalStateException( "Unbalanced size report parts" );
+      add( Category.OTHER, null, totalBytes - topLevelNested );
+
+      List<Entry> entries = new ArrayList<>();
+      for ( Entry entry : bytes.values() )
+        if ( entry.bytes != 0 )
+          entries.add( entry );
+      entries.sort( ( a, b ) -> Long.compare( b.bytes, a.bytes ) );
+
+      long[] sections = new long[ sectionBytes.size() ];
+      for ( int i = 0; i < sections.length; i++ )
+        sections[ i ] = sectionBytes.get( i );
+      return new RtfSizeReport( totalBytes, Collections.unmodifiableList( entries ), sections );
+    }
+  }
+}
@@ -0,0 +1,655 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A table with a fixed column schema whose rows are read while the document is written.
+ * The schema (widths, alignment, borders, a header row) is given once; the row definition
+ * <code>{\trowd ... \cellx}</code> is rendered once per written table and then repeated for
+ * every row. The rows themselves come from an {@link Iterable}, {@link Iterator} or
+ * {@link Stream} of {@code Object[]} and are pulled one at a time, so neither {@link RtfCell}
+ * objects per row nor the whole data set have to be in memory:
+ * <pre>
+ * rtf().section(
+ *   RtfTable.table()
+ *           .column( 6, RtfUnit.CM ).column( 3, RtfUnit.CM, RtfTable.Alignment.RIGHT )
+ *           .allBorders()
+ *           .header( bold( "Article" ), bold( "Price" ) )
+ *           .rows( articles.stream().map( a -&gt; new Object[]{ a.name(), a.price() } ) )
+ * ).out( out );
+ * </pre>
+ * Each value of a row is resolved like {@link RtfText#text(Object...)}; a row may have fewer
+ * values than there are columns, the remaining cells stay empty. Numeric data held in
+ * primitive arrays can be passed column by column with {@link #columnar(Object...)}.
+ * <p>
+ * A column added with {@link #column()} gets its width from its content: the header and the
+ * first {@link #sampleRows(int)} rows are measured with the metrics of the fonts of the document
+ * and the widest value decides. Font changes, font sizes and bold text in the cells are taken
+ * into account; text without a size is measured at 12 pt. The width is then written as a fixed {@code \cellx},
+ * so word processors don't have to fit a huge table themselves when the document is opened.
+ */
+public class RtfTable extends RtfPara {
+
+  /**
+   * Horizontal alignment of the text in a column.
+   */
+  public enum Alignment {
+    LEFT( RtfControlWords.ALIGN_LEFT ),
+    CENTER( RtfControlWords.ALIGN_CENTERED ),
+    RIGHT( RtfControlWords.ALIGN_RIGHT ),
+    JUSTIFIED( RtfControlWords.ALIGN_JUSTIFIED );
+
+    final String controlWord;
+
+    Alignment( String controlWord ) {
+      this.controlWord = controlWord;
+    }
+  }
+
+  /**
+   * Iterates the body rows of a table while it is written.
+   */
+  interface RowCursor {
+    /**
+     * Moves to the next row.
+     *
+     * @return {@code false} if there are no more rows.
+     */
+    boolean next();
+
+    /**
+     * Writes the content of one cell of the current row, without the surrounding cell paragraph.
+     */
+    void writeCell( RtfOutput out, int column );
+
+    /**
+     * Releases the row source after the last row or a failure.
+     */
+    default void close() {}
+  }
+
+  /**
+   * Number of rows measured for auto-sized columns if not set otherwise.
+   */
+  static final int DEFAULT_SAMPLE_ROWS = 100;
+
+  /**
+   * Cell padding {@code \trgaph}, on each side of a cell.
+   */
+  private static final int CELL_GAP_TWIPS = 108;
+
+  /**
+   * Smallest width of an auto-sized column, a quarter inch.
+   */
+  private static final int MIN_AUTO_WIDTH_TWIPS = 360;
+
+  /**
+   * Width of a column that is measured while the table is written.
+   */
+  private static final int AUTO_WIDTH = -1;
+
+  private static final class Column {
+    final int widthTwips;
+    final Alignment alignment;
+
+    Column( int widthTwips, Alignment alignment ) {
+      this.widthTwips = widthTwips;
+      this.alignment = alignment;
+    }
+  }
+
+  private final List<Column> columns = new ArrayList<>();
+  private boolean borders;
+  private boolean repeatHeader = true;
+  private @Nullable Object @Nullable [] header;
+  private @Nullable Supplier<RowCursor> rows;
+  private int fractionDigits = 2;
+  private int sampleRows = DEFAULT_SAMPLE_ROWS;
+  private int maxWidthTwips = -1;
+
+  /** Package-private: use {@link #table()}. */
+  RtfTable() {}
+
+  /**
+   * Creates an empty table. Add columns with {@link #column(double, RtfUnit)}.
+   *
+   * @return New table.
+   */
+  public static RtfTable table() {
+    return new RtfTable();
+  }
+
+  // Schema
+
+  /**
+   * Adds a left aligned column whose width is computed from its content.
+   *
+   * @return {@code this}-object.
+   * @see #sampleRows(int)
+   */
+  public RtfTable column() {
+    return column( Alignment.LEFT );
+  }
+
+  /**
+   * Adds a column whose width is computed from its content.
+   *
+   * @param alignment Horizontal alignment of the text in the column.
+   * @return {@code this}-object.
+   * @see #sampleRows(int)
+   */
+  public RtfTable column( Alignment alignment ) {
+    if ( alignment == null )
+      throw new IllegalArgumentException( "Alignment must not be null" );
+    columns.add( new Column( AUTO_WIDTH, alignment ) );
+    return this;
+  }
+
+  /**
+   * Adds a left aligned column.
+   *
+   * @param width Width of the column.
+   * @param unit  Unit of {@code width}.
+   * @return {@code this}-object.
+   */
+  public RtfTable column( double width, RtfUnit unit ) {
+    return column( width, unit, Alignment.LEFT );
+  }
+
+  /**
+   * Adds a column.
+   *
+   * @param width     Width of the column.
+   * @param unit      Unit of {@code width}.
+   * @param alignment Horizontal alignment of the text in the column.
+   * @return {@code this}-object.
+   */
+  public RtfTable column( double width, RtfUnit unit, Alignment alignment ) {
+    if ( width <= 0 )
+      throw new IllegalArgumentException( "Column width must be positive" );
+    if ( alignment == null )
+      throw new IllegalArgumentException( "Alignment must not be null" );
+    columns.add( new Column( unit.toTwips( width ), alignment ) );
+    return this;
+  }
+
+  /**
+   * Sets how many rows are measured to size the columns added with {@link #column()}.
+   * Default is {@value #DEFAULT_SAMPLE_ROWS}. Rows of an {@link Iterator} or {@link Stream}
+   * are buffered while they are measured.
+   *
+   * @param sampleRows Number of rows, not negative. {@code 0} measures only the header.
+   * @return {@code this}-object.
+   */
+  public RtfTable sampleRows( int sampleRows ) {
+    if ( sampleRows < 0 )
+      throw new IllegalArgumentException( "Number of sample rows must not be negative" );
+    this.sampleRows = sampleRows;
+    return this;
+  }
+
+  /**
+   * Limits the width of the whole table, typically to the width of the page text area.
+   * If the measured columns would make the table wider they are narrowed proportionally;
+   * columns with a given width keep it.
+   *
+   * @param width Maximal width of the table.
+   * @param unit  Unit of {@code width}.
+   * @return {@code this}-object.
+   */
+  public RtfTable maxWidth( double width, RtfUnit unit ) {
+    if ( width <= 0 )
+      throw new IllegalArgumentException( "Maximal width must be positive" );
+    this.maxWidthTwips = unit.toTwips( width );
+    return this;
+  }
+
+  /**
+   * Draws single borders around all cells.
+   *
+   * @return {@code this}-object.
+   */
+  public RtfTable allBorders() {
+    borders = true;
+    return this;
+  }
+
+  /**
+   * Sets the header row. By default word processors repeat it at the top of every page
+   * the table continues on, see {@link #repeatHeader(boolean)}.
+   *
+   * @param titles Column titles, resolved like {@link RtfText#text(Object...)}.
+   * @return {@code this}-object.
+   */
+  public RtfTable header( @Nullable Object... titles ) {
+    this.header = titles;
+    return this;
+  }
+
+  /**
+   * Sets whether the header row is repeated on every page. Default is {@code true}.
+   *
+   * @param repeat {@code true} to repeat the header row.
+   * @return {@code this}-object.
+   */
+  public RtfTable repeatHeader( boolean repeat ) {
+    this.repeatHeader = repeat;
+    return this;
+  }
+
+  // Rows
+
+  /**
+   * Sets the rows of the table. The {@link Iterable} is iterated each time the document
+   * is written.
+   *
+   * @param rows One array of cell values per row.
+   * @return {@code this}-object.
+   */
+  public RtfTable rows( Iterable<? extends @Nullable Object[]> rows ) {
+    if ( rows == null )
+      throw new IllegalArgumentException( "Rows must not be null" );
+    return rows( () -> new ArrayRowCursor( rows.iterator(), null ) );
+  }
+
+  /**
+   * Sets the rows of the table. The iterator is consumed when the document is written,
+   * so the document can only be written once.
+   *
+   * @param rows One array of cell values per row.
+   * @return {@code this}-object.
+   */
+  public RtfTable rows( Iterator<? extends @Nullable Object[]> rows ) {
+    if ( rows == null )
+      throw new IllegalArgumentException( "Rows must not be null" );
+    return rows( once( () -> new ArrayRowCursor( rows, null ) ) );
+  }
+
+  /**
+   * Sets the rows of the table. The stream is consumed and closed when the document is written,
+   * so the document can only be written once.
+   *
+   * @param rows One array of cell values per row.
+   * @return {@code this}-object.
+   */
+  public RtfTable rows( Stream<? extends @Nullable Object[]> rows ) {
+    if ( rows == null )
+      throw new IllegalArgumentException( "Rows must not be null" );
+    return rows( once( () -> new ArrayRowCursor( rows.iterator(), rows ) ) );
+  }
+
+  /**
+   * Sets the rows of the table from column arrays: the i-th element of every array forms
+   * the i-th row. Supported are {@code double[]}, {@code long[]}, {@code int[]} and
+   * {@code String[]}. Numbers are written straight into the output, without boxing, without
+   * intermediate Strings and without escaping; {@code double} values with
+   * {@link #fractionDigits(int)} digits after the point. The arrays are read each time the
+   * document is written.
+   *
+   * @param columns One array per column, all of the same length.
+   * @return {@code this}-object.
+   */
+  public RtfTable columnar( Object... columns ) {
+    if ( columns == null || columns.length == 0 )
+      throw new IllegalArgumentException( "There has to be at least one column array" );
+
+    int rowCount = -1;
+    for ( Object column : columns ) {
+      int length;
+      if ( column instanceof double[] )
+        length = ((double[]) column).length;
+      else if ( column instanceof long[] )
+        length = ((long[]) column).length;
+      else if ( column instanceof int[] )
+        length = ((int[]) column).length;
+      else if ( column instanceof String[] )
+        length = ((String[]) column).length;
+      else
+        throw new IllegalArgumentException( "Column arrays have to be double[], long[], int[] or String[] but not "
+                                            + (column == null ? "null" : column.getClass().getSimpleName()) );
+      if ( rowCount >= 0 && length != rowCount )
+        throw new IllegalArgumentException( "All column arrays must have the same length" );
+      rowCount = length;
+    }
+
+    Object[] data = columns.clone();
+    int rows = rowCount;
+    return rows( () -> new ColumnarRowCursor( data, rows ) );
+  }
+
+  /**
+   * Sets the number of digits after the decimal point for {@code double[]} columns of
+   * {@link #columnar(Object...)}, default is 2. Values are rounded half up.
+   *
+   * @param fractionDigits Number of fraction digits between 0 and 9.
+   * @return {@code this}-object.
+   */
+  public RtfTable fractionDigits( int fractionDigits ) {
+    if ( fractionDigits < 0 || fractionDigits > 9 )
+      throw new IllegalArgumentException( "Fraction digits must be between 0 and 9" );
+    this.fractionDigits = fractionDigits;
+    return this;
+  }
+
+  RtfTable rows( Supplier<RowCursor> rows ) {
+    this.rows = rows;
+    return this;
+  }
+
+  /**
+   * Wraps a supplier of a single-use row source so a second write fails with a clear message.
+   */
+  static Supplier<RowCursor> once( Supplier<RowCursor> cursor ) {
+    boolean[] used = { false };
+    return () -> {
+      if ( used[ 0 ] )
+        throw new RtfException( "The rows of this table were already written, "
+                                + "use rows(Iterable) to write a table more than once" );
+      used[ 0 ] = true;
+      return cursor.get();
+    };
+  }
+
+  private final class ArrayRowCursor implements RowCursor {
+    private final Iterator<? extends @Nullable Object[]> iterator;
+    private final @Nullable Stream<?> stream;
+    private @Nullable Object @Nullable [] row;
+
+    ArrayRowCursor( Iterator<? extends @Nullable Object[]> iterator, @Nullable Stream<?> stream ) {
+      this.iterator = iterator;
+      this.stream = stream;
+    }
+
+    @Override public boolean next() {
+      if ( !iterator.hasNext() )
+        return false;
+      @Nullable Object[] next = iterator.next();
+      if ( next != null && next.length > columns.size() )
+        throw new RtfException( "Row has " + next.length + " values but the table only "
+                                + columns.size() + " columns" );
+      row = next;
+      return true;
+    }
+
+    @Override public void writeCell( RtfOutput out, int column ) {
+      @Nullable Object[] values = row;
+      if ( values != null && column < values.length )
+        RtfText.write( out, values[ column ] );
+    }
+
+    @Override public void close() {
+      if ( stream != null )
+        stream.close();
+    }
+  }
+
+  private final class ColumnarRowCursor implements RowCursor {
+    private final Object[] columns;
+    private final int rowCount;
+    private int row = -1;
+
+    ColumnarRowCursor( Object[] columns, int rowCount ) {
+      if ( columns.length > RtfTable.this.columns.size() )
+        throw new RtfException( "There are " + columns.length + " column arrays but the table only "
+                                + RtfTable.this.columns.size() + " columns" );
+      this.columns = columns;
+      this.rowCount = rowCount;
+    }
+
+    @Override public boolean next() {
+      return ++row < rowCount;
+    }
+
+    @Override public void writeCell( RtfOutput out, int column ) {
+      if ( column >= columns.length )
+        return;
+      Object data = columns[ column ];
+      if ( data instanceof double[] )
+        out.appendFixed( ((double[]) data)[ row ], fractionDigits );
+      else if ( data instanceof long[] )
+        out.appendDigits( ((long[]) data)[ row ] );
+      else if ( data instanceof int[] )
+        out.appendDigits( ((int[]) data)[ row ] );
+      else {
+        String value = ((String[]) data)[ row ];
+        if ( value != null )
+          Rtf.asRtf( out, value );
+      }
+    }
+  }
+
+  /**
+   * Replays the measured rows and then continues with the rows of the underlying cursor.
+   */
+  private static final class SampledRowCursor implements RowCursor {
+    private final RowCursor cursor;
+    final List<String[]> sample = new ArrayList<>();
+    private final boolean exhausted;
+    private int row = -1;
+
+    SampledRowCursor( RowCursor cursor, int columnCount, int sampleRows, RtfOutput out ) {
+      this.cursor = cursor;
+      StringBuilder buffer = new StringBuilder( 64 );
+      RtfOutput cellOut = out.buffered( buffer );
+      boolean more = true;
+      while ( sample.size() < sampleRows && (more = cursor.next()) ) {
+        String[] cells = new String[ columnCount ];
+        for ( int i = 0; i < columnCount; i++ ) {
+          buffer.setLength( 0 );
+          cursor.writeCell( cellOut, i );
+          cells[ i ] = buffer.toString();
+        }
+        sample.add( cells );
+      }
+      exhausted = !more;
+    }
+
+    @Override public boolean next() {
+      if ( row + 1 < sample.size() ) {
+        row++;
+        return true;
+      }
+      row = sample.size();
+      return !exhausted && cursor.next();
+    }
+
+    @Override public void writeCell( RtfOutput out, int column ) {
+      if ( row < sample.size() )
+        out.append( sample.get( row )[ column ] );
+      else
+        cursor.writeCell( out, column );
+    }
+
+    @Override public void close() {
+      cursor.close();
+    }
+  }
+
+  // Rendering
+
+  /**
+   * Computes the widths of all columns; auto-sized columns are measured from the header and the sampled rows.
+   */
+  private int[] columnWidths( RtfOutput out, @Nullable Object @Nullable [] titles, List<String[]> sample ) {
+    int columnCount = columns.size();
+    int[] widths = new int[ columnCount ];
+    boolean auto = false;
+    for ( int i = 0; i < columnCount; i++ ) {
+      widths[ i ] = columns.get( i ).widthTwips;
+      auto |= widths[ i ] == AUTO_WIDTH;
+    }
+    if ( !auto )
+      return widths;
+
+    String fontName = out.defaultFontName;
+    Map<Integer, String> fontNames = out.fontNames;
+    RtfFontMetrics metrics = new RtfFontMetrics( fontNames != null ? fontNames : Collections.emptyMap(),
+                                                 fontName != null ? fontName : Rtf.DEFAULT_FONT_NAME,
+                                                 RtfFontMetrics.DEFAULT_FONT_SIZE_POINTS );
+    StringBuilder buffer = new StringBuilder( 64 );
+    RtfOutput titleOut = out.buffered( buffer );
+    int fixedWidth = 0, autoWidth = 0;
+    for ( int i = 0; i < columnCount; i++ ) {
+      if ( widths[ i ] != AUTO_WIDTH ) {
+        fixedWidth += widths[ i ];
+        continue;
+      }
+      int width = 0;
+      if ( titles != null && i < titles.length ) {
+        buffer.setLength( 0 );
+        RtfText.write( titleOut, titles[ i ] );
+        width = metrics.rtfWidthTwips( buffer );
+      }
+      for ( String[] cells : sample )
+        width = Math.max( width, metrics.rtfWidthTwips( cells[ i ] ) );
+      widths[ i ] = Math.max( MIN_AUTO_WIDTH_TWIPS, width + 2 * CELL_GAP_TWIPS );
+      autoWidth += widths[ i ];
+    }
+
+    if ( maxWidthTwips > 0 && fixedWidth + autoWidth > maxWidthTwips ) {
+      double scale = Math.max( 0, maxWidthTwips - fixedWidth ) / (double) autoWidth;
+      for ( int i = 0; i < columnCount; i++ )
+        if ( columns.get( i ).widthTwips == AUTO_WIDTH )
+          widths[ i ] = Math.max( MIN_AUTO_WIDTH_TWIPS, (int) (widths[ i ] * scale) );
+    }
+    return widths;
+  }
+
+  /**
+   * Renders the row definition shared by all rows: <code>{\trowd ... \cellxN</code> for every column.
+   */
+  String rowDefinition( int[] widths, boolean headerRow ) {
+    StringBuilder result = new StringBuilder( 64 + widths.length * 48 );
+    RtfOutput out = new RtfOutput( result );
+    out.open().cw( RtfControlWords.ROW_DEFAULTS ).cw( RtfControlWords.ROW_GAP, CELL_GAP_TWIPS );
+    if ( headerRow && repeatHeader )
+      out.cw( RtfControlWords.ROW_HEADER_REPEAT );
+    out.ctrl( RtfControlWords.IN_TABLE );
+
+    int boundary = 0;
+    for ( int width : widths ) {
+      if ( borders )
+        out.cw( RtfControlWords.CELL_BORDER_TOP ).cw( RtfControlWords.BORDER_SINGLE )
+           .cw( RtfControlWords.CELL_BORDER_LEFT ).cw( RtfControlWords.BORDER_SINGLE )
+           .cw( RtfControlWords.CELL_BORDER_BOTTOM ).cw( RtfControlWords.BORDER_SINGLE )
+           .cw( RtfControlWords.CELL_BORDER_RIGHT ).cw( RtfControlWords.BORDER_SINGLE );
+      boundary += width;
+      out.pair( RtfControlWords.CELL_BOUNDARY, boundary );
+    }
+    return result.toString();
+  }
+
+  @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+    if ( columns.isEmpty() )
+      throw new RtfException( "A table needs at least one column" );
+
+    int columnCount = columns.size();
+    String[] cellStarts = new String[ columnCount ];
+    for ( int i = 0; i < columnCount; i++ )
+      cellStarts[ i ] = "{\\" + columns.get( i ).alignment.controlWord + " ";
+
+    @Nullable Object[] titles = header;
+    if ( titles != null && titles.length > columnCount )
+      throw new RtfException( "Header has " + titles.length + " titles but the table only "
+                              + columnCount + " columns" );
+
+    Supplier<RowCursor> source = rows;
+    @Nullable RowCursor cursor = source == null ? null : source.get();
+    try {
+      List<String[]> sample = Collections.emptyList();
+      if ( cursor != null && hasAutoWidthColumn() && sampleRows > 0 ) {
+        SampledRowCursor sampled = new SampledRowCursor( cursor, columnCount, sampleRows, out );
+        cursor = sampled;
+        sample = sampled.sample;
+      }
+      int[] widths = columnWidths( out, titles, sample );
+
+      if ( titles != null ) {
+        out.enterSize( RtfSizeReport.Category.TABLE_DEFINITION, null );
+        out.append( rowDefinition( widths, true ) );
+        out.exitSize();
+        for ( int i = 0; i < columnCount; i++ ) {
+          out.append( cellStarts[ i ] );
+          if ( i < titles.length )
+            RtfText.write( out, titles[ i ] );
+          out.close().ctrl( RtfControlWords.CELL );
+        }
+        out.cw( RtfControlWords.ROW ).close().nl();
+        out.count( RtfMetrics.Counter.ROWS, 1 );
+        out.rowWritten();
+      }
+
+      if ( cursor == null )
+        return;
+
+      String rowDefinition = rowDefinition( widths, false );
+      long rowCount = 0;
+      while ( cursor.next() ) {
+        rowCount++;
+        out.enterSize( RtfSizeReport.Category.TABLE_DEFINITION, null );
+        out.append( rowDefinition );
+        out.exitSize();
+        for ( int i = 0; i < columnCount; i++ ) {
+          out.append( cellStarts[ i ] );
+          out.enterSize( RtfSizeReport.Category.TEXT, null );
+          cursor.writeCell( out, i );
+          out.exitSize();
+          out.close().ctrl( RtfControlWords.CELL );
+        }
+        out.cw( RtfControlWords.ROW ).close().nl();
+        out.rowWritten();
+      }
+      out.count( RtfMetrics.Counter.ROWS, rowCount );
+    }
+    finally {
+      if ( cursor != null )
+        cursor.close();
+    }
+  }
+
+  private boolean hasAutoWidthColumn() {
+    for ( Column column : columns )
+      if ( column.widthTwips == AUTO_WIDTH )
+        return true;
+    return false;
+  }
+}
@@ -68,19 +68,25 @@ public class RtfTemplate {
   private @Nullable InputStream inputStream;
 
   /**
-   * Holds the template file, populated lazily on first {@link #out()}.
+   * Holds the template file, populated lazily on first {@link #out()}; {@code null} until then.
+   * Volatile, so threads calling {@link #out()} at the same time read the template once.
    */
-  private final StringBuilder template = new StringBuilder( 8192 );
+  private volatile @Nullable String template;
 
   /**
-   * {@code true} once {@link #inputStream} has been read into {@link #template}.
+   * Map with all variables and substitutions.
    */
-  private boolean loaded = false;
+  private final Map<String, Object> map = new HashMap<>();
 
   /**
-   * Map with all variables and substitutions.
+   * Listener for timings and placeholder counts, see {@link #metrics(RtfMetrics)}.
    */
-  private final Map<String, Object> map = new HashMap<>();
+  private RtfMetrics metrics = RtfMetrics.NONE;
+
+  /**
+   * Limits of every {@link #out()}, see {@link #limits(RtfLimits)}.
+   */
+  private RtfLimits limits = RtfLimits.NONE;
 
   /**
    * Regex pattern for %%VARIABLE%%.
@@ -103,29 +109,39 @@ public class RtfTemplate {
   }
 
   /**
-   * Reads {@link #inputStream} into {@link #template}, but only once.
+   * Reads {@link #inputStream} into {@link #template}, but only once, even if several
+   * threads ask at the same time.
    */
-  private void ensureLoaded() {
-    if ( loaded )
-      return;
+  private String ensureLoaded() {
+    String loaded = template;
+    if ( loaded != null )
+      return loaded;
 
-    InputStream stream = inputStream;
-    if ( stream == null )
-      return;
+    synchronized ( this ) {
+      loaded = template;
+      if ( loaded != null )
+        return loaded;
 
-    InputStream in = stream instanceof BufferedInputStream
-                    ? stream : new BufferedInputStream( stream );
+      InputStream stream = inputStream;
+      StringBuilder chars = new StringBuilder( 8192 );
+      if ( stream != null ) {
+        InputStream in = stream instanceof BufferedInputStream
+                        ? stream : new BufferedInputStream( stream );
 
-    try ( Reader reader = new InputStreamReader( in, Rtf.CHARSET1252 ) ) {
-      for ( int c; (c = reader.read()) != -1; )
-        template.append( (char) c );
-    }
-    catch ( IOException e ) {
-      throw new RtfException( e );
-    }
+        try ( Reader reader = new InputStreamReader( in, Rtf.CHARSET1252 ) ) {
+          for ( int c; (c = reader.read()) != -1; )
+            chars.append( (char) c );
+        }
+        catch ( IOException e ) {
+          throw new RtfException( e );
+        }
+      }
 
-    inputStream = null;
-    loaded = true;
+      inputStream = null;
+      loaded = chars.toString();
+      template = loaded;
+      return loaded;
+    }
   }
 
   /**
@@ -157,6 +173,35 @@ public class RtfTemplate {
     return this;
   }
 
+  /**
+   * Reports the duration of every {@link #out()} and the number of variables with and
+   * without a value to a listener.
+   *
+   * @param metrics Listener. {@link RtfMetrics#NONE} switches reporting off.
+   * @return {@code this} object.
+   */
+  public RtfTemplate metrics( RtfMetrics metrics ) {
+    if ( metrics == null )
+      throw new IllegalArgumentException( "Metrics can't be null, use RtfMetrics.NONE" );
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Limits every {@link #out()} in time and size, and allows to cancel it. The limits are
+   * checked after every substituted variable; an output that exceeds a limit or whose thread is
+   * interrupted is aborted with a {@link RtfAbortedException}.
+   *
+   * @param limits Limits. {@link RtfLimits#NONE} switches the checks off.
+   * @return {@code this} object.
+   */
+  public RtfTemplate limits( RtfLimits limits ) {
+    if ( limits == null )
+      throw new IllegalArgumentException( "Limits can't be null, use RtfLimits.NONE" );
+    this.limits = limits;
+    return this;
+  }
+
   /**
    * Performs the variable transformation and returns the
    * transformed RTF document.
@@ -164,28 +209,56 @@ public class RtfTemplate {
    * @return RTF document after variable substitution.
    */
   public String out() {
-    ensureLoaded();
+    RtfMetrics metrics = this.metrics;
+    long start = metrics == RtfMetrics.NONE ? 0 : System.nanoTime();
+    @Nullable Object event = RtfFlightRecorder.TEMPLATE.begin();
+    String result = substitute( metrics );
+    if ( metrics != RtfMetrics.NONE )
+      metrics.phase( RtfMetrics.Phase.TEMPLATE, -1, System.nanoTime() - start );
+    RtfFlightRecorder.TEMPLATE.end( event, (long) result.length(), (long) map.size() );
+    return result;
+  }
+
+  private String substitute( RtfMetrics metrics ) {
+    String template = ensureLoaded();
+    RtfLimits limits = this.limits;
+    RtfLimits.@Nullable Governor governor = limits == RtfLimits.NONE ? null : new RtfLimits.Governor( limits );
 
-    if ( map.isEmpty() )
-      return template.toString();
+    if ( map.isEmpty() && metrics == RtfMetrics.NONE ) {
+      if ( governor != null )
+        governor.check( template.length() );
+      return template;
+    }
 
     StringBuffer result = new StringBuffer( template.length() );
     Matcher matcher = VARIABLE_PATTERN.matcher( template );
+    long hits = 0, misses = 0;
 
     while ( matcher.find() ) {
       Object value = map.get( matcher.group( 1 ) );
 
-      if ( value == null )
+      if ( value == null ) {
+        misses++;
         continue;
+      }
+      hits++;
 
       StringBuilder sb = new StringBuilder( 128 );
       RtfOutput out = new RtfOutput( sb );
       RtfText.text( value ).rtf( out );
       matcher.appendReplacement( result, Matcher.quoteReplacement( sb.toString() ) );
+      if ( governor != null )
+        governor.check( result.length() );
     }
 
     matcher.appendTail( result );
+    if ( governor != null )
+      governor.check( result.length() );
 
+    if ( hits != 0 )
+      metrics.count( RtfMetrics.Counter.PLACEHOLDER_HITS, hits );
+    if ( misses != 0 )
+      metrics.count( RtfMetrics.Counter.PLACEHOLDER_MISSES, misses );
     return result.toString();
   }
 
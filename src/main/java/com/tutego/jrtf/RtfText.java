@@ -33,6 +33,8 @@ package com.tutego.jrtf;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -64,16 +66,79 @@ public class RtfText {
    *              <idx> | <toc> | <book>
    */
 
+  // Opcodes of the flattened representation. Each node is one opcode with an optional
+  // operand in refs (a control word, text, color, ...) and nums (a control word value).
+
+  /** Escaped text, {@code refs[i].toString()} is converted when the node is written. */
+  static final byte TEXT        = 0;
+  /** Already encoded RTF in {@code refs[i]}, written as is; {@code nums[i]} text runs, see {@link #freeze()}. */
+  static final byte RAW         = 1;
+  /** Output of the {@link RtfTemplate} in {@code refs[i]}. */
+  static final byte TEMPLATE    = 2;
+  /** <code>{</code> */
+  static final byte OPEN        = 3;
+  /** <code>{\word </code> with the control word in {@code refs[i]}. */
+  static final byte OPEN_WORD   = 4;
+  /** <code>{\wordN </code> with the control word in {@code refs[i]} and N in {@code nums[i]}. */
+  static final byte OPEN_WORD_N = 5;
+  /** <code>{\cfN </code> or <code>{\cbN </code> for the {@link RtfHeaderColor} in {@code refs[i]}, see {@link #COLOR_WORDS}. */
+  static final byte OPEN_COLOR  = 6;
+  /** <code>\word</code> */
+  static final byte WORD        = 7;
+  /** <code>\wordN</code> */
+  static final byte WORD_N      = 8;
+  /** A space. */
+  static final byte SPACE       = 9;
+  /** <code>\word</code> followed by a line break. */
+  static final byte CTRL        = 10;
+  /** <code>}</code> */
+  static final byte CLOSE       = 11;
+  /** Delegates to the {@code Consumer<RtfOutput>} in {@code refs[i]}, e.g. for content with paragraphs. */
+  static final byte RENDER      = 12;
+  /** A number or date formatted when the node is written, the {@link RtfFormats.Value} in {@code refs[i]}. */
+  static final byte FORMAT      = 13;
+  /** The nodes of the {@code RtfText} in {@code refs[i]}, for larger texts that are combined, see {@link Builder#add(RtfText)}. */
+  static final byte NESTED      = 14;
+
+  private static final String[] OPCODE_NAMES = {
+      "TEXT", "RAW", "TEMPLATE", "OPEN", "OPEN_WORD", "OPEN_WORD_N", "OPEN_COLOR",
+      "WORD", "WORD_N", "SPACE", "CTRL", "CLOSE", "RENDER", "FORMAT", "NESTED" };
+
+  /**
+   * Texts with up to this many nodes are copied when they are combined, larger ones are
+   * referenced with a {@link #NESTED} node. So building a text step by step or wrapping it
+   * again and again costs the same for each step, not more and more.
+   */
+  private static final int MAX_COPIED_NODES = 8;
+
   /**
-   * Renders RTF content lazily — only evaluated when the enclosing document is written.
+   * Control words of {@link #OPEN_COLOR}, selected by {@code nums[i]}.
    */
-  private final Consumer<RtfOutput> renderer;
+  private static final String[] COLOR_WORDS = {
+      RtfControlWords.CHAR_FOREGROUND_COLOR, RtfControlWords.CHAR_BACKGROUND_COLOR };
 
   /**
-   * Wraps a lazy RTF renderer.
+   * Flattened content: opcodes and their operands in parallel arrays, all of the same length.
+   * Small {@code RtfText} objects are copied in when they are combined, larger ones are
+   * {@link #NESTED} nodes. Rendering is one loop over these arrays that follows nested texts with
+   * an explicit stack, without recursion. The arrays are never modified after construction.
+   */
+  private final byte[] ops;
+  private final int[] nums;
+  private final @Nullable Object[] refs;
+
+  private RtfText( byte[] ops, int[] nums, @Nullable Object[] refs ) {
+    this.ops = ops;
+    this.nums = nums;
+    this.refs = refs;
+  }
+
+  /**
+   * Wraps a lazy RTF renderer. Used for content that can't be flattened,
+   * like fields, footnotes or pictures that contain paragraphs or load data.
    */
   RtfText( Consumer<RtfOutput> renderer ) {
-    this.renderer = renderer;
+    this( new byte[]{ RENDER }, new int[ 1 ], new Object[]{ renderer } );
   }
 
   /**
@@ -81,8 +146,324 @@ public class RtfText {
    *
    * @param out Output buffer.
    */
+  @SuppressWarnings( "unchecked" )
   void rtf( RtfOutput out ) {
-    renderer.accept( out );
+    RtfText current = this;
+    byte[] ops = this.ops;
+    int[] nums = this.nums;
+    @Nullable Object[] refs = this.refs;
+    int runs = 0;
+    // Texts whose NESTED node is being written and the index to continue with
+    RtfText @Nullable [] outer = null;
+    int @Nullable [] continueAt = null;
+    int depth = 0;
+    out.enterSize( RtfSizeReport.Category.TEXT, null );
+
+    for ( int i = 0; ; i++ ) {
+      if ( i == ops.length ) {
+        if ( depth == 0 )
+          break;
+        current = outer[ --depth ];
+        ops = current.ops;
+        nums = current.nums;
+        refs = current.refs;
+        i = continueAt[ depth ] - 1;
+        continue;
+      }
+      switch ( ops[ i ] ) {
+        case TEXT:        Rtf.asRtf( out, String.valueOf( refs[ i ] ) ); runs++; break;
+        case RAW:         out.append( (CharSequence) refs[ i ] ); runs += nums[ i ]; break;
+        case TEMPLATE:    out.append( ((RtfTemplate) refs[ i ]).out() ); break;
+        case OPEN:        out.open(); break;
+        case OPEN_WORD:   out.open( (String) refs[ i ] ).sp(); break;
+        case OPEN_WORD_N: out.open().cw( (String) refs[ i ], nums[ i ] ).sp(); break;
+        case OPEN_COLOR:  out.open().cw( COLOR_WORDS[ nums[ i ] ], out.colorIndex( (RtfHeaderColor) refs[ i ] ) ).sp(); break;
+        case WORD:        out.cw( (String) refs[ i ] ); break;
+        case WORD_N:      out.cw( (String) refs[ i ], nums[ i ] ); break;
+        case SPACE:       out.sp(); break;
+        case CTRL:        out.ctrl( (String) refs[ i ] ); break;
+        case CLOSE:       out.close(); break;
+        case RENDER:      ((Consumer<RtfOutput>) refs[ i ]).accept( out ); break;
+        case FORMAT:      ((RtfFormats.Value) refs[ i ]).write( out ); runs++; break;
+        case NESTED: {
+          if ( outer == null || depth == outer.length ) {
+            outer = outer == null ? new RtfText[ 8 ] : Arrays.copyOf( outer, depth * 2 );
+            continueAt = continueAt == null ? new int[ 8 ] : Arrays.copyOf( continueAt, depth * 2 );
+          }
+          outer[ depth ] = current;
+          continueAt[ depth++ ] = i + 1;
+          current = (RtfText) refs[ i ];
+          ops = current.ops;
+          nums = current.nums;
+          refs = current.refs;
+          i = -1;
+          break;
+        }
+        default:          throw new IllegalStateException( "Unknown opcode " + ops[ i ] );
+      }
+    }
+    out.exitSize();
+    out.count( RtfMetrics.Counter.RUNS, runs );
+  }
+
+  /**
+   * Wraps a lazy renderer for a field; its bytes are reported as {@link RtfSizeReport.Category#FIELD}.
+   */
+  private static RtfText fieldText( Consumer<RtfOutput> renderer ) {
+    return new RtfText( out -> {
+      out.enterSize( RtfSizeReport.Category.FIELD, null );
+      renderer.accept( out );
+      out.exitSize();
+    } );
+  }
+
+  /**
+   * Renders this text once and returns a text that only copies the result, for texts used
+   * again and again, like disclaimers or letterheads. Escaping and formatting are done here and
+   * never again. Parts that depend on the document are kept as they are: colors given as
+   * {@link RtfHeaderColor}, templates and lazily rendered content like fields and pictures.
+   * Like every {@code RtfText} the result is immutable and can be shared between threads.
+   *
+   * @return Frozen text, or {@code this} if there is nothing to render in advance.
+   */
+  public RtfText freeze() {
+    RtfText flat = flattened();
+    byte[] ops = flat.ops;
+    int[] nums = flat.nums;
+    @Nullable Object[] refs = flat.refs;
+    Builder builder = new Builder( 4 );
+    boolean changed = false;
+    int start = 0;
+    // Every node that depends on the document ends a part that is rendered now
+    for ( int i = 0; i <= ops.length; i++ ) {
+      if ( i < ops.length && ops[ i ] != OPEN_COLOR && ops[ i ] != TEMPLATE && ops[ i ] != RENDER )
+        continue;
+      if ( i - start == 1 && ops[ start ] == RAW )
+        builder.op( RAW, refs[ start ], nums[ start ] );
+      else if ( i > start ) {
+        StringBuilder rendered = new StringBuilder( 16 * (i - start) );
+        int runs = 0;
+        for ( int j = start; j < i; j++ )
+          runs += ops[ j ] == TEXT || ops[ j ] == FORMAT ? 1 : ops[ j ] == RAW ? nums[ j ] : 0;
+        new RtfText( Arrays.copyOfRange( ops, start, i ), Arrays.copyOfRange( nums, start, i ),
+                     Arrays.copyOfRange( refs, start, i ) ).rtf( new RtfOutput( rendered ) );
+        builder.op( RAW, rendered.toString(), runs );
+        changed = true;
+      }
+      if ( i < ops.length )
+        builder.op( ops[ i ], refs[ i ], nums[ i ] );
+      start = i + 1;
+    }
+    return changed ? builder.build() : flat;
+  }
+
+  /**
+   * Returns this text with all {@link #NESTED} nodes replaced by the nodes of the referenced
+   * texts, or this text itself if it has none.
+   */
+  private RtfText flattened() {
+    for ( byte op : ops )
+      if ( op == NESTED )
+        return new Builder( 2 * ops.length ).addFlattened( this ).build();
+    return this;
+  }
+
+  /**
+   * Number of nodes of the flattened representation.
+   */
+  int size() {
+    return flattened().ops.length;
+  }
+
+  /**
+   * Returns the opcode of node {@code i}.
+   */
+  byte op( int i ) {
+    return flattened().ops[ i ];
+  }
+
+  /**
+   * Lists the nodes for debugging, e.g. {@code [OPEN_WORD b, TEXT x, CLOSE]}.
+   */
+  String describe() {
+    RtfText flat = flattened();
+    byte[] ops = flat.ops;
+    int[] nums = flat.nums;
+    @Nullable Object[] refs = flat.refs;
+    StringBuilder result = new StringBuilder( "[" );
+    for ( int i = 0; i < ops.length; i++ ) {
+      if ( i > 0 )
+        result.append( ", " );
+      result.append( OPCODE_NAMES[ ops[ i ] ] );
+      if ( refs[ i ] instanceof CharSequence || ops[ i ] == FORMAT )
+        result.append( ' ' ).append( refs[ i ] );
+      if ( ops[ i ] == OPEN_WORD_N || ops[ i ] == WORD_N )
+        result.append( nums[ i ] );
+    }
+    return result.append( ']' ).toString();
+  }
+
+  /**
+   * Collects nodes and builds a {@link RtfText}. Appended {@code RtfText} objects are
+   * copied in if they are small and referenced with a {@link #NESTED} node otherwise.
+   */
+  static final class Builder {
+    private byte[] ops;
+    private int[] nums;
+    private @Nullable Object[] refs;
+    private int size;
+
+    Builder() {
+      this( 8 );
+    }
+
+    Builder( int capacity ) {
+      ops = new byte[ capacity ];
+      nums = new int[ capacity ];
+      refs = new Object[ capacity ];
+    }
+
+    private void ensureCapacity( int capacity ) {
+      if ( capacity > ops.length ) {
+        int newCapacity = Math.max( capacity, ops.length * 2 );
+        ops = Arrays.copyOf( ops, newCapacity );
+        nums = Arrays.copyOf( nums, newCapacity );
+        refs = Arrays.copyOf( refs, newCapacity );
+      }
+    }
+
+    Builder op( byte op, @Nullable Object ref, int num ) {
+      ensureCapacity( size + 1 );
+      ops[ size ] = op;
+      refs[ size ] = ref;
+      nums[ size ] = num;
+      size++;
+      return this;
+    }
+
+    Builder op( byte op ) {
+      return op( op, null, 0 );
+    }
+
+    Builder op( byte op, Object ref ) {
+      return op( op, ref, 0 );
+    }
+
+    /**
+     * Copies the nodes of {@code text} if there are at most {@link #MAX_COPIED_NODES},
+     * otherwise adds a {@link #NESTED} node that references it.
+     */
+    Builder add( RtfText text ) {
+      int n = text.ops.length;
+      if ( n > MAX_COPIED_NODES )
+        return op( NESTED, text );
+      ensureCapacity( size + n );
+      System.arraycopy( text.ops, 0, ops, size, n );
+      System.arraycopy( text.nums, 0, nums, size, n );
+      System.arraycopy( text.refs, 0, refs, size, n );
+      size += n;
+      return this;
+    }
+
+    /**
+     * Copies the nodes of {@code text} and of all texts it references with {@link #NESTED}
+     * nodes, using an explicit stack instead of recursion.
+     */
+    Builder addFlattened( RtfText text ) {
+      RtfText[] outer = new RtfText[ 8 ];
+      int[] continueAt = new int[ 8 ];
+      int depth = 0;
+      RtfText current = text;
+      for ( int i = 0; ; i++ ) {
+        if ( i == current.ops.length ) {
+          if ( depth == 0 )
+            return this;
+          current = outer[ --depth ];
+          i = continueAt[ depth ] - 1;
+        }
+        else if ( current.ops[ i ] == NESTED ) {
+          if ( depth == outer.length ) {
+            outer = Arrays.copyOf( outer, depth * 2 );
+            continueAt = Arrays.copyOf( continueAt, depth * 2 );
+          }
+          outer[ depth ] = current;
+          continueAt[ depth++ ] = i + 1;
+          current = (RtfText) current.refs[ i ];
+          i = -1;
+        }
+        else
+          op( current.ops[ i ], current.refs[ i ], current.nums[ i ] );
+      }
+    }
+
+    /**
+     * Adds an object the way {@link RtfText#text(Object...)} resolves each element.
+     */
+    Builder add( @Nullable Object text ) {
+      if ( text == null )
+        return this;
+      if ( text instanceof RtfText )
+        return add( (RtfText) text );
+      if ( text instanceof RtfTemplate )
+        return op( TEMPLATE, text );
+      if ( text instanceof RtfPara )
+        throw new RtfException(
+            "RtfPara in method text() is not allowed. There is no sensible toString() method declared" );
+      return op( TEXT, text );
+    }
+
+    RtfText build() {
+      return new RtfText( Arrays.copyOf( ops, size ), Arrays.copyOf( nums, size ), Arrays.copyOf( refs, size ) );
+    }
+  }
+
+  /**
+   * Writes an object directly, resolved like an element of {@link #text(Object...)},
+   * without building an {@code RtfText} first.
+   */
+  static void write( RtfOutput out, @Nullable Object text ) {
+    if ( text == null )
+      return;
+    if ( text instanceof RtfText )
+      ((RtfText) text).rtf( out );
+    else if ( text instanceof RtfTemplate )
+      out.append( ((RtfTemplate) text).out() );
+    else if ( text instanceof RtfPara )
+      throw new RtfException(
+          "RtfPara in method text() is not allowed. There is no sensible toString() method declared" );
+    else
+      Rtf.asRtf( out, text.toString() );
+  }
+
+  /**
+   * Concatenates texts into one object; larger operands are referenced, not copied.
+   */
+  static RtfText concat( RtfText... texts ) {
+    Builder builder = new Builder( Math.max( texts.length, 1 ) );
+    for ( RtfText text : texts )
+      builder.add( text );
+    return builder.build();
+  }
+
+  /**
+   * Wraps {@code text} in a group with a leading control word: <code>{\word text}</code>.
+   */
+  private static RtfText group( String controlWord, @Nullable Object text ) {
+    return new Builder().op( OPEN_WORD, controlWord ).add( text ).op( CLOSE ).build();
+  }
+
+  /**
+   * Wraps {@code text} in a group with a leading valued control word: <code>{\wordN text}</code>.
+   */
+  private static RtfText group( String controlWord, int value, @Nullable Object text ) {
+    return new Builder().op( OPEN_WORD_N, controlWord, value ).add( text ).op( CLOSE ).build();
+  }
+
+  /**
+   * A single control word followed by a line break.
+   */
+  private static RtfText control( String controlWord ) {
+    return new Builder( 1 ).op( CTRL, controlWord ).build();
   }
 
   /**
@@ -127,28 +508,20 @@ public class RtfText {
    */
   public static RtfText textJoinWithSpace( boolean joinWithSpace, @Nullable Object @Nullable ... texts ) {
     if ( texts == null || texts.length == 0 )
-      return new RtfText( out -> {} );
+      return new Builder( 0 ).build();
 
-    return new RtfText( out -> {
-      for ( int i = 0; i < texts.length; i++ ) {
-        if ( texts[ i ] == null )
-          continue;
-
-        if ( joinWithSpace
-             && i > 0 && texts[ i - 1 ] != null )  // if preceding element is null, no space
-          out.sp();
-
-        if ( texts[ i ] instanceof RtfText )
-          ((RtfText) texts[ i ]).rtf( out );
-        else if ( texts[ i ] instanceof RtfTemplate )
-          out.append( ((RtfTemplate) texts[ i ]).out() );
-        else if ( texts[ i ] instanceof RtfPara )  // check more
-          throw new RtfException(
-              "RtfPara in method text() is not allowed. There is no sensible toString() method declared" );
-        else
-          Rtf.asRtf( out, texts[ i ].toString() );
-      }
-    } );
+    Builder builder = new Builder( texts.length * 2 );
+    for ( int i = 0; i < texts.length; i++ ) {
+      if ( texts[ i ] == null )
+        continue;
+
+      if ( joinWithSpace
+           && i > 0 && texts[ i - 1 ] != null )  // if preceding element is null, no space
+        builder.op( SPACE );
+
+      builder.add( texts[ i ] );
+    }
+    return builder.build();
   }
 
   /**
@@ -162,8 +535,52 @@ public class RtfText {
     if ( text == null )
       text = "";
 
-    String t = text;
-    return new RtfText( out -> Rtf.asRtf( out, t ) );
+    return new Builder( 1 ).op( TEXT, text ).build();
+  }
+
+  /**
+   * Formats a number with a {@link java.text.DecimalFormat} pattern and the symbols of a locale,
+   * for example {@code number( 1234.5, "#,##0.00", Locale.GERMANY )} gives {@code 1.234,50}.
+   * The compiled pattern is cached and shared by all threads, so formatting many cells with the
+   * same pattern is cheap. The number is formatted when the document is written, or by {@link #freeze()}.
+   *
+   * @param value   Number.
+   * @param pattern Pattern like {@code "#,##0.00"}.
+   * @param locale  Locale for the decimal and grouping separators.
+   * @return New RtfText object representing this number.
+   * @throws IllegalArgumentException if the pattern is invalid.
+   */
+  public static RtfText number( double value, String pattern, Locale locale ) {
+    return new Builder( 1 ).op( FORMAT, RtfFormats.number( value, pattern, locale ) ).build();
+  }
+
+  /**
+   * Formats an integral number with a {@link java.text.DecimalFormat} pattern and the symbols of a locale.
+   * See {@link #number(double, String, Locale)}.
+   *
+   * @param value   Number.
+   * @param pattern Pattern like {@code "#,##0"}.
+   * @param locale  Locale for the grouping separator.
+   * @return New RtfText object representing this number.
+   * @throws IllegalArgumentException if the pattern is invalid.
+   */
+  public static RtfText number( long value, String pattern, Locale locale ) {
+    return new Builder( 1 ).op( FORMAT, RtfFormats.number( value, pattern, locale ) ).build();
+  }
+
+  /**
+   * Formats a date or time with a {@link java.time.format.DateTimeFormatter} pattern, for example
+   * {@code date( LocalDate.of( 2024, 3, 1 ), "d. MMMM yyyy", Locale.GERMANY )} gives {@code 1. März 2024}.
+   * The compiled pattern is cached.
+   *
+   * @param value   Date, time or date-time.
+   * @param pattern Pattern like {@code "dd.MM.yyyy"}.
+   * @param locale  Locale for month and day names.
+   * @return New RtfText object representing this date.
+   * @throws IllegalArgumentException if the pattern is invalid.
+   */
+  public static RtfText date( TemporalAccessor value, String pattern, Locale locale ) {
+    return new Builder( 1 ).op( FORMAT, RtfFormats.date( value, pattern, locale ) ).build();
   }
 
   // -- Language ----------------------------------------------------------------
@@ -249,12 +666,7 @@ public class RtfText {
    * @return New RtfText object.
    */
   public static RtfText language( int lcid, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.LANGUAGE, lcid ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.LANGUAGE, lcid, text );
   }
 
   /**
@@ -264,12 +676,7 @@ public class RtfText {
    * @return New RtfText object.
    */
   public static RtfText emboss( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.EMBOSS ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.EMBOSS, text );
   }
 
   /**
@@ -279,12 +686,7 @@ public class RtfText {
    * @return New RtfText object.
    */
   public static RtfText engrave( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.ENGRAVE ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.ENGRAVE, text );
   }
 
   /**
@@ -294,12 +696,7 @@ public class RtfText {
    * @return New RtfText object.
    */
   public static RtfText outline( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.OUTLINE ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.OUTLINE, text );
   }
 
   /**
@@ -310,12 +707,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText font( int fontnum, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.FONT ).append( fontnum ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.FONT, fontnum, text );
   }
 
   /**
@@ -325,12 +717,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText italic( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.ITALIC ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.ITALIC, text );
   }
 
   /**
@@ -340,12 +727,7 @@ public class RtfText {
    * @return New RtfText object representing this bold text.
    */
   public static RtfText bold( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.BOLD ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.BOLD, text );
   }
 
   /**
@@ -355,12 +737,7 @@ public class RtfText {
    * @return New RtfText object representing this underlined text.
    */
   public static RtfText underline( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.UNDERLINE ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.UNDERLINE, text );
   }
 
   /**
@@ -370,12 +747,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText dottedUnderline( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.UNDERLINE_DOTTED ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.UNDERLINE_DOTTED, text );
   }
 
   /**
@@ -385,12 +757,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText doubleUnderline( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.UNDERLINE_DOUBLE ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.UNDERLINE_DOUBLE, text );
   }
 
   /**
@@ -400,12 +767,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText wordUnderline( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.UNDERLINE_WORD ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.UNDERLINE_WORD, text );
   }
 
   /**
@@ -415,12 +777,7 @@ public class RtfText {
    * @return New RtfText object representing this subscripted text.
    */
   public static RtfText subscript( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.SUBSCRIPT ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SUBSCRIPT, text );
   }
 
   /**
@@ -430,12 +787,7 @@ public class RtfText {
    * @return New RtfText object representing this resivisioned text.
    */
   public static RtfText revised( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.REVISED ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.REVISED, text );
   }
 
   /**
@@ -445,12 +797,7 @@ public class RtfText {
    * @return New RtfText object representing this superscripted text.
    */
   public static RtfText superscript( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.SUPERSCRIPT ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SUPERSCRIPT, text );
   }
 
   /**
@@ -460,12 +807,7 @@ public class RtfText {
    * @return New RtfText object representing this strikes through text.
    */
   public static RtfText strikethru( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.STRIKETHROUGH ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.STRIKETHROUGH, text );
   }
 
   /**
@@ -475,12 +817,7 @@ public class RtfText {
    * @return New RtfText object representing this shadowed text.
    */
   public static RtfText shadow( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.SHADOW ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SHADOW, text );
   }
 
   /**
@@ -490,12 +827,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText smallCapitals( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.SMALL_CAPS ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SMALL_CAPS, text );
   }
 
   /**
@@ -505,12 +837,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText capitals( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.CAPS ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.CAPS, text );
   }
 
   /**
@@ -520,12 +847,7 @@ public class RtfText {
    * @return New RtfText object representing this hidden text.
    */
   public static RtfText hidden( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.HIDDEN ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.HIDDEN, text );
   }
 
   /**
@@ -539,12 +861,7 @@ public class RtfText {
     if ( fontSize < 0 )
       throw new IllegalArgumentException( "Font size can't be negative" );
 
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.KERNING, fontSize ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.KERNING, fontSize, text );
   }
 
   /**
@@ -555,12 +872,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText expand( int twentiethsOfPoint, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.CHAR_EXPAND, twentiethsOfPoint ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.CHAR_EXPAND, twentiethsOfPoint, text );
   }
 
   /**
@@ -575,12 +887,7 @@ public class RtfText {
     if ( halfPoints < 0 )
       throw new IllegalArgumentException( "Amount can't be negative" );
 
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.SUBSCRIPT_LOWER, halfPoints ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SUBSCRIPT_LOWER, halfPoints, text );
   }
 
   /**
@@ -595,12 +902,7 @@ public class RtfText {
     if ( halfPoints < 0 )
       throw new IllegalArgumentException( "Amount can't be negative" );
 
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.SUPERSCRIPT_RAISE, halfPoints ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.SUPERSCRIPT_RAISE, halfPoints, text );
   }
 
   /**
@@ -614,12 +916,7 @@ public class RtfText {
     if ( fontSize < 0 )
       throw new IllegalArgumentException( "Font size can't be negative" );
 
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.FONT_SIZE, fontSize ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.FONT_SIZE, fontSize, text );
   }
 
   /**
@@ -630,12 +927,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText backgroundcolor( int colorindex, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.CHAR_BACKGROUND_COLOR, colorindex ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.CHAR_BACKGROUND_COLOR, colorindex, text );
   }
 
   /**
@@ -649,6 +941,18 @@ public class RtfText {
     return backgroundcolor( colorindex, text( text ) );
   }
 
+  /**
+   * Sets a background color given by value for the given text. The color has to be registered
+   * in the header unless {@link Rtf#autoColorTable()} is enabled.
+   *
+   * @param color Color, e.g. {@code RtfHeader.color( 0xFFFF00 )}.
+   * @param text  Text to color. See {@link #text(Object...)} for how {@code text} is resolved.
+   * @return New RtfText object representing this text.
+   */
+  public static RtfText backgroundcolor( RtfHeaderColor color, Object text ) {
+    return new Builder().op( OPEN_COLOR, color, 1 ).add( text ).op( CLOSE ).build();
+  }
+
   /**
    * Colors text.
    *
@@ -657,12 +961,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText color( int colorindex, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open().cw( RtfControlWords.CHAR_FOREGROUND_COLOR, colorindex ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.CHAR_FOREGROUND_COLOR, colorindex, text );
   }
 
   /**
@@ -676,6 +975,18 @@ public class RtfText {
     return color( colorindex, text( text ) );
   }
 
+  /**
+   * Colors text with a color given by value. The color has to be registered in the header
+   * unless {@link Rtf#autoColorTable()} is enabled.
+   *
+   * @param color Color, e.g. {@code RtfHeader.color( 0x336699 )}.
+   * @param text  Text to color. See {@link #text(Object...)} for how {@code text} is resolved.
+   * @return New RtfText object representing this text.
+   */
+  public static RtfText color( RtfHeaderColor color, Object text ) {
+    return new Builder().op( OPEN_COLOR, color, 0 ).add( text ).op( CLOSE ).build();
+  }
+
   /**
    * Colors text with a foreground and a background color at once.
    *
@@ -685,15 +996,13 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText color( int foregroundColorIndex, int backgroundColorIndex, Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open()
-         .cw( RtfControlWords.CHAR_FOREGROUND_COLOR, foregroundColorIndex )
-         .cw( RtfControlWords.CHAR_BACKGROUND_COLOR, backgroundColorIndex )
-         .sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return new Builder().op( OPEN )
+                        .op( WORD_N, RtfControlWords.CHAR_FOREGROUND_COLOR, foregroundColorIndex )
+                        .op( WORD_N, RtfControlWords.CHAR_BACKGROUND_COLOR, backgroundColorIndex )
+                        .op( SPACE )
+                        .add( text )
+                        .op( CLOSE )
+                        .build();
   }
 
   // Special Characters
@@ -705,7 +1014,7 @@ public class RtfText {
    * @return New RtfText object representing this current date.
    */
   public static RtfText currentDate() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_DATE ) );
+    return control( RtfControlWords.CURRENT_DATE );
   }
 
   /**
@@ -714,7 +1023,7 @@ public class RtfText {
    * @return New RtfText object representing this current date.
    */
   public static RtfText currentDateLong() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_DATE_LONG ) );
+    return control( RtfControlWords.CURRENT_DATE_LONG );
   }
 
   /**
@@ -723,7 +1032,7 @@ public class RtfText {
    * @return New RtfText object representing this current date.
    */
   public static RtfText currentDateAbbreviated() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_DATE_ABBREVIATED ) );
+    return control( RtfControlWords.CURRENT_DATE_ABBREVIATED );
   }
 
   /**
@@ -732,7 +1041,7 @@ public class RtfText {
    * @return New RtfText object representing current time.
    */
   public static RtfText currentTime() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_TIME ) );
+    return control( RtfControlWords.CURRENT_TIME );
   }
 
   /**
@@ -741,7 +1050,7 @@ public class RtfText {
    * @return New RtfText object representing page number.
    */
   public static RtfText currentPageNumber() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_PAGE_NUMBER ) );
+    return control( RtfControlWords.CURRENT_PAGE_NUMBER );
   }
 
   /**
@@ -750,7 +1059,7 @@ public class RtfText {
    * @return New RtfText object representing the section number.
    */
   public static RtfText currentSectionNumber() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.CURRENT_SECTION_NUMBER ) );
+    return control( RtfControlWords.CURRENT_SECTION_NUMBER );
   }
 
   /**
@@ -759,7 +1068,7 @@ public class RtfText {
    * @return New RtfText object representing a page break.
    */
   public static RtfText pageBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.PAGE_BREAK ) );
+    return control( RtfControlWords.PAGE_BREAK );
   }
 
   /**
@@ -768,7 +1077,7 @@ public class RtfText {
    * @return New RtfText object representing a column break.
    */
   public static RtfText columnBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.COLUMN_BREAK ) );
+    return control( RtfControlWords.COLUMN_BREAK );
   }
 
   /**
@@ -777,7 +1086,7 @@ public class RtfText {
    * @return New RtfText object representing a like break.
    */
   public static RtfText lineBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.LINE_BREAK ) );
+    return control( RtfControlWords.LINE_BREAK );
   }
 
   /**
@@ -786,7 +1095,7 @@ public class RtfText {
    * @return New RtfText object representing a soft page break.
    */
   public static RtfText softPageBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.SOFT_PAGE_BREAK ) );
+    return control( RtfControlWords.SOFT_PAGE_BREAK );
   }
 
   /**
@@ -796,12 +1105,10 @@ public class RtfText {
    */
   public static RtfText hardRule( double lineWidth, RtfUnit lineWidthUnit ) {
     int lineWidthTwips = lineWidthUnit.toTwips( lineWidth );
-    return new RtfText( out -> {
-      out.cw( RtfControlWords.BOTTOM_BORDER ).cw( RtfControlWords.BORDER_SINGLE )
-         .cw( RtfControlWords.BORDER_WIDTH ).append( lineWidthTwips )
-         .open( RtfControlWords.FONT_SIZE ).append( "0" )
-         .cw( RtfControlWords.NON_BREAKING_SPACE ).close();
-    } );
+    return new Builder().op( WORD, RtfControlWords.BOTTOM_BORDER ).op( WORD, RtfControlWords.BORDER_SINGLE )
+                        .op( WORD_N, RtfControlWords.BORDER_WIDTH, lineWidthTwips )
+                        .op( RAW, "{\\" + RtfControlWords.FONT_SIZE + "0\\" + RtfControlWords.NON_BREAKING_SPACE + "}" )
+                        .build();
   }
 
   /**
@@ -810,7 +1117,7 @@ public class RtfText {
    * @return New RtfText object representing a column break.
    */
   public static RtfText softColumnBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.SOFT_COLUMN_BREAK ) );
+    return control( RtfControlWords.SOFT_COLUMN_BREAK );
   }
 
   /**
@@ -819,7 +1126,7 @@ public class RtfText {
    * @return New RtfText object representing a soft line break.
    */
   public static RtfText softLineBreak() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.SOFT_LINE_BREAK ) );
+    return control( RtfControlWords.SOFT_LINE_BREAK );
   }
 
   /**
@@ -829,7 +1136,7 @@ public class RtfText {
    * @return New RtfText object representing a tab.
    */
   public static RtfText tab() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.TAB ) );
+    return control( RtfControlWords.TAB );
   }
 
   /**
@@ -838,7 +1145,7 @@ public class RtfText {
    * @return New RtfText object representing a hyphen.
    */
   public static RtfText longHyphen() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.EM_DASH ) );
+    return control( RtfControlWords.EM_DASH );
   }
 
   /**
@@ -847,7 +1154,7 @@ public class RtfText {
    * @return New RtfText object representing a hypen.
    */
   public static RtfText shortHyphen() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.EN_DASH ) );
+    return control( RtfControlWords.EN_DASH );
   }
 
   /**
@@ -856,7 +1163,7 @@ public class RtfText {
    * @return New RtfText object representing a bullet.
    */
   public static RtfText bullet() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.BULLET ) );
+    return control( RtfControlWords.BULLET );
   }
 
   /**
@@ -865,7 +1172,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText leftQuotationMark() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.LEFT_SINGLE_QUOTE ) );
+    return control( RtfControlWords.LEFT_SINGLE_QUOTE );
   }
 
   /**
@@ -874,7 +1181,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText rightQuotationMark() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.RIGHT_SINGLE_QUOTE ) );
+    return control( RtfControlWords.RIGHT_SINGLE_QUOTE );
   }
 
   /**
@@ -884,12 +1191,8 @@ public class RtfText {
    * @return New RtfText object representing this text in quotation marks.
    */
   public static RtfText quote( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.ctrl( RtfControlWords.LEFT_SINGLE_QUOTE );
-      inner.rtf( out );
-      out.ctrl( RtfControlWords.RIGHT_SINGLE_QUOTE );
-    } );
+    return new Builder().op( CTRL, RtfControlWords.LEFT_SINGLE_QUOTE ).add( text )
+                        .op( CTRL, RtfControlWords.RIGHT_SINGLE_QUOTE ).build();
   }
 
   /**
@@ -898,7 +1201,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText leftDoubleQuotationMark() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.LEFT_DOUBLE_QUOTE ) );
+    return control( RtfControlWords.LEFT_DOUBLE_QUOTE );
   }
 
   /**
@@ -907,7 +1210,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText rightDoubleQuotationMark() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.RIGHT_DOUBLE_QUOTE ) );
+    return control( RtfControlWords.RIGHT_DOUBLE_QUOTE );
   }
 
   /**
@@ -917,12 +1220,8 @@ public class RtfText {
    * @return New RtfText object representing this text in quotation marks.
    */
   public static RtfText doubleQuote( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.ctrl( RtfControlWords.LEFT_DOUBLE_QUOTE );
-      inner.rtf( out );
-      out.ctrl( RtfControlWords.RIGHT_DOUBLE_QUOTE );
-    } );
+    return new Builder().op( CTRL, RtfControlWords.LEFT_DOUBLE_QUOTE ).add( text )
+                        .op( CTRL, RtfControlWords.RIGHT_DOUBLE_QUOTE ).build();
   }
 
   /**
@@ -931,7 +1230,7 @@ public class RtfText {
    * @return New RtfText object representing this text.
    */
   public static RtfText nonBreakingSpace() {
-    return new RtfText( out -> out.ctrl( RtfControlWords.NON_BREAKING_SPACE ) );
+    return control( RtfControlWords.NON_BREAKING_SPACE );
   }
 
   // <pict>
@@ -1049,7 +1348,7 @@ public class RtfText {
      * <fldalt>    := \fldalt
      * <fieldrslt> := '{' \fldrslt <para>+ '}'
      */
-    return new RtfText( out -> {
+    return fieldText( out -> {
       out.open().cw( RtfControlWords.FIELD );
 
       if ( fieldModifier != null )
@@ -1089,7 +1388,7 @@ public class RtfText {
       throw new IllegalArgumentException( "URL must not be null" );
     if ( text == null )
       throw new IllegalArgumentException( "Hyperlink text must not be null" );
-    return new RtfText( out -> {
+    return fieldText( out -> {
       out.open().cw( RtfControlWords.FIELD )
          .open().cw( RtfControlWords.FIELD_INSTRUCTION_DESTINATION ).append( "{HYPERLINK \"" )
          .append( Rtf.asRtf( url ) )
@@ -1113,7 +1412,7 @@ public class RtfText {
       throw new IllegalArgumentException( "Bookmark name must not be null" );
     if ( text == null )
       throw new IllegalArgumentException( "Hyperlink text must not be null" );
-    return new RtfText( out -> {
+    return fieldText( out -> {
       out.open().cw( RtfControlWords.FIELD )
          .open().cw( RtfControlWords.FIELD_INSTRUCTION_DESTINATION ).append( "{HYPERLINK " )
          .append( RtfFields.FIELD_SWITCH_HYPERLINK_BOOKMARK ).append( " \"" )
@@ -1140,12 +1439,10 @@ public class RtfText {
     if ( name == null )
       throw new IllegalArgumentException( "Bookmark name can't be null" );
 
-    RtfText content = text( texts );
-    return new RtfText( out -> {
-      out.tag( RtfControlWords.BOOKMARK_START, " " + name );
-      content.rtf( out );
-      out.tag( RtfControlWords.BOOKMARK_END, " " + name );
-    } );
+    return new Builder().op( RAW, "{\\" + RtfControlWords.BOOKMARK_START + " " + name + "}" )
+                        .add( text( texts ) )
+                        .op( RAW, "{\\" + RtfControlWords.BOOKMARK_END + " " + name + "}" )
+                        .build();
   }
 
   // RtfField — generic field support
@@ -1158,7 +1455,7 @@ public class RtfText {
    * @return New RtfText object representing this field.
    */
   public static RtfText field( RtfField rtfField ) {
-    return new RtfText( out -> {
+    return fieldText( out -> {
       out.open().cw( RtfControlWords.FIELD );
 
       if ( rtfField.modifier != null )
@@ -1188,7 +1485,7 @@ public class RtfText {
    * @return New RtfText object representing this form field.
    */
   public static RtfText formField( RtfFormField formField ) {
-    return new RtfText( formField::rtf );
+    return fieldText( formField::rtf );
   }
 
   // Annotations / comments
@@ -1230,18 +1527,13 @@ public class RtfText {
    * @return New RtfText object representing this tracked change.
    */
   public static RtfText revision( @Nullable String author, Object original, Object revised ) {
-    return new RtfText( out -> {
-      if ( author != null && !author.isEmpty() ) {
-        out.cw( RtfControlWords.REVISION_AUTHOR ).sp()
-           .append( Rtf.asRtf( author ) );
-      }
-      // deleted original
-      out.open( RtfControlWords.REVISED ).sp();
-      RtfText.text( original ).rtf( out );
-      out.close();
-      // inserted revision
-      RtfText.text( revised ).rtf( out );
-    } );
+    Builder builder = new Builder();
+    if ( author != null && !author.isEmpty() )
+      builder.op( WORD, RtfControlWords.REVISION_AUTHOR ).op( SPACE ).op( RAW, Rtf.asRtf( author ) );
+    // deleted original
+    builder.op( OPEN_WORD, RtfControlWords.REVISED ).add( original ).op( CLOSE );
+    // inserted revision
+    return builder.add( revised ).build();
   }
 
   // Bidirectional text
@@ -1254,12 +1546,7 @@ public class RtfText {
    * @return New RtfText object with RTL direction.
    */
   public static RtfText rightToLeft( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.RIGHT_TO_LEFT_CHAR ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.RIGHT_TO_LEFT_CHAR, text );
   }
 
   /**
@@ -1270,11 +1557,6 @@ public class RtfText {
    * @return New RtfText object with LTR direction.
    */
   public static RtfText leftToRight( Object text ) {
-    RtfText inner = text( text );
-    return new RtfText( out -> {
-      out.open( RtfControlWords.LEFT_TO_RIGHT_CHAR ).sp();
-      inner.rtf( out );
-      out.close();
-    } );
+    return group( RtfControlWords.LEFT_TO_RIGHT_CHAR, text );
   }
 }
@@ -31,8 +31,6 @@
  */
 package com.tutego.jrtf;
 
-import java.util.function.Consumer;
-
 import org.jspecify.annotations.Nullable;
 
 /**
@@ -40,7 +38,10 @@ import org.jspecify.annotations.Nullable;
  */
 public class RtfTextPara extends RtfPara {
 
-  Consumer<RtfOutput> renderer;
+  /**
+   * Flattened content of the paragraph, {@code null} for an empty paragraph.
+   */
+  @Nullable RtfText text;
   int styleId;
   boolean resetDefaults;
   boolean emptyParagraph;
@@ -49,6 +50,16 @@ public class RtfTextPara extends RtfPara {
   RtfTextPara() {}
 
   @Override void rtf( RtfOutput out, boolean withEndingPar ) {
+    rtf( out, withEndingPar, -1 );
+  }
+
+  /**
+   * Writes the paragraph, with {@code decimalTabTwips >= 0} with an additional decimal tab stop
+   * and a tab in front of the content, see {@link RtfCell#alignDecimal(double, RtfUnit)}.
+   * The paragraph itself is not changed.
+   */
+  void rtf( RtfOutput out, boolean withEndingPar, int decimalTabTwips ) {
+    out.count( RtfMetrics.Counter.PARAGRAPHS, 1 );
     if ( emptyParagraph ) {
       if ( resetDefaults )
         out.cw( RtfControlWords.PARAGRAPH_DEFAULTS );
@@ -59,10 +70,16 @@ public class RtfTextPara extends RtfPara {
     out.open();
     if ( resetDefaults )
       out.cw( RtfControlWords.PARAGRAPH_DEFAULTS );
-    out.cw( RtfControlWords.STYLE ).append( styleId ).sp();
+    if ( styleId != 0 || !out.compact )
+      out.cw( RtfControlWords.STYLE ).append( styleId ).sp();
     writeFormattingTo( out );
-    if ( renderer != null )
-      renderer.accept( out );
+    if ( decimalTabTwips >= 0 ) {
+      out.append( '\\' ).append( RtfControlWords.TAB_DECIMAL ).ctrl( RtfControlWords.TAB_POSITION, decimalTabTwips );
+      out.ctrl( RtfControlWords.TAB );
+    }
+    RtfText content = text;
+    if ( content != null )
+      content.rtf( out );
     if ( withEndingPar )
       out.cw( RtfControlWords.PAR );
     out.close().nl();
@@ -105,12 +122,34 @@ public class RtfTextPara extends RtfPara {
    */
   int cellWidthTwips = -1;
 
+  /**
+   * Background color given by value, resolved against the document color table
+   * when the paragraph is written, or {@code null}.
+   */
+  private @Nullable RtfHeaderColor backgroundColor;
+
+  /**
+   * List of the paragraph and its level, see {@link #list(RtfList, int)}. The number of the list
+   * ({@code \ls}) is looked up in the document when the paragraph is written.
+   */
+  private @Nullable RtfList list;
+  private int listLevel;
+
   /**
    * Writes accumulated paragraph formatting (borders, paragraph format, tabs)
    * directly to the output.
    */
   void writeFormattingTo( RtfOutput out ) {
-    out.append( brdrdef ).append( parfmt ).append( tabdef );
+    out.append( brdrdef ).append( parfmt );
+    RtfList paraList = list;
+    if ( paraList != null )
+      out.cw( RtfControlWords.LIST_OVERRIDE_INDEX, out.listNumber( paraList ) )
+         .cw( RtfControlWords.LIST_LEVEL_INDEX, listLevel ).nl();
+    RtfHeaderColor color = backgroundColor;
+    if ( color != null )
+      out.cw( RtfControlWords.PARAGRAPH_SHADING, 10000 )
+         .cw( RtfControlWords.PARAGRAPH_BACKGROUND_COLOR, out.colorIndex( color ) ).nl();
+    out.append( tabdef );
   }
 
   // Paragraph-Formatting Properties
@@ -922,6 +961,18 @@ public class RtfTextPara extends RtfPara {
     return this;
   }
 
+  /**
+   * Sets the background (shading) color of this paragraph by value. The color has to be
+   * registered in the header unless {@link Rtf#autoColorTable()} is enabled.
+   *
+   * @param color Color, e.g. {@code RtfHeader.color( 0xEEEEEE )}.
+   * @return {@code this}-object.
+   */
+  public RtfTextPara backgroundColor( RtfHeaderColor color ) {
+    this.backgroundColor = color;
+    return this;
+  }
+
   /**
    * Marks this paragraph as an item of the given {@link RtfList} at the given level, so
    * word processors render and interactively renumber a genuine bullet or number &mdash;
@@ -929,24 +980,23 @@ public class RtfTextPara extends RtfPara {
    * Also sets the paragraph's left/first-line indent to match the level, for readers that
    * don't support {@code \listtable}.
    *
-   * @param list       List this paragraph belongs to. Must already be registered with
-   *                   {@link Rtf#lists(RtfList...)}.
+   * @param list       List this paragraph belongs to. Must be registered with
+   *                   {@link Rtf#lists(RtfList...)} of the document the paragraph is written in,
+   *                   otherwise writing fails with an {@link RtfException}.
    * @param levelIndex 0-based level of {@code list} this paragraph uses.
    * @return {@code this}-object.
    */
   public RtfTextPara list( RtfList list, int levelIndex ) {
     if ( list == null )
       throw new IllegalArgumentException( "List can't be null" );
-    if ( list.overrideIndex < 0 )
-      throw new RtfException( "List must be registered with Rtf.lists(...) before it can be used" );
     if ( levelIndex < 0 || levelIndex >= list.levelCount() )
       throw new IllegalArgumentException( "Level " + levelIndex + " is not configured on this list" );
 
     parfmt.append( '\\' ).append( RtfControlWords.LEFT_INDENT ).append( list.indentTwipsAt( levelIndex ) )
           .append( '\\' ).append( RtfControlWords.FIRST_LINE_INDENT ).append( "-" ).append( list.hangingTwipsAt( levelIndex ) )
-          .append( '\\' ).append( RtfControlWords.LIST_OVERRIDE_INDEX ).append( list.overrideIndex )
-          .append( '\\' ).append( RtfControlWords.LIST_LEVEL_INDEX ).append( levelIndex )
           .append( '\n' );
+    this.list = list;
+    this.listLevel = levelIndex;
 
     return this;
   }
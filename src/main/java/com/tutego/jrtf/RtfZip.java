@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2010-2026 Christian Ullenboom
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jRTF' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tutego.jrtf;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes many documents as entries of one ZIP archive, in a single pass and without an
+ * uncompressed copy of the documents.
+ * <pre>
+ * try ( RtfZip zip = RtfZip.zip( Files.newOutputStream( archive ) ).level( Deflater.BEST_SPEED ) ) {
+ *   for ( Customer c : customers )
+ *     zip.entry( c.id() + ".rtf", letter( c ) );
+ * }
+ * </pre>
+ * Every document is compressed while it is written. Closing the archive writes the ZIP directory
+ * and closes the stream. Not thread-safe; an archive is written by one thread.
+ */
+public final class RtfZip implements Closeable {
+
+  /** Comment of an entry whose document failed. */
+  public static final String INCOMPLETE_COMMENT = "incomplete";
+
+  private final ZipOutputStream zip;
+  private int entries;
+
+  private RtfZip( OutputStream out ) {
+    zip = new ZipOutputStream( out );
+  }
+
+  /**
+   * Creates a ZIP archive that is written to an {@link OutputStream}.
+   *
+   * @param out Destination of the archive, closed with the archive. Must not be {@code null}.
+   * @return New archive.
+   * @throws IllegalArgumentException if {@code out} is {@code null}.
+   */
+  public static RtfZip zip( OutputStream out ) {
+    if ( out == null )
+      throw new IllegalArgumentException( "OutputStream is not allowed to be null" );
+    return new RtfZip( out );
+  }
+
+  /**
+   * Sets the compression level of the following entries. Lower levels are faster,
+   * higher levels are smaller. The default is {@link Deflater#DEFAULT_COMPRESSION}.
+   *
+   * @param level Level from {@code 0} (no compression) to {@code 9} (best compression),
+   *              or {@link Deflater#DEFAULT_COMPRESSION}.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if {@code level} is not a compression level.
+   */
+  public RtfZip level( int level ) {
+    zip.setLevel( checkLevel( level ) );
+    return this;
+  }
+
+  /**
+   * Writes a document as a new entry of the archive. Every entry is written through its own
+   * writer, so an entry whose document fails doesn't affect the following entries. The
+   * failed entry stays in the archive, it is incomplete and marked with the comment
+   * {@value #INCOMPLETE_COMMENT}.
+   *
+   * @param name     Name of the entry, e.g. {@code "letters/4711.rtf"}. Must not be {@code null}.
+   * @param document Document to write. Must not be {@code null}.
+   * @return {@code this}-reference.
+   * @throws IllegalArgumentException if {@code name} or {@code document} is {@code null}.
+   * @throws RtfException if the entry can't be written, e.g. because the name is used already.
+   */
+  public RtfZip entry( String name, Rtf document ) {
+    if ( name == null || document == null )
+      throw new IllegalArgumentException( "Name and document of an entry must not be null" );
+
+    try {
+      ZipEntry entry = new ZipEntry( name );
+      zip.putNextEntry( entry );
+      boolean complete = false;
+      try {
+        // Not flushed if the document fails, so what is buffered is dropped with the writer
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new EntryStream( zip ), Rtf.charset ) );
+        document.writeRtfDocument( writer, null );
+        writer.flush();
+        complete = true;
+      }
+      finally {
+        if ( !complete )
+          entry.setComment( INCOMPLETE_COMMENT );
+        zip.closeEntry();
+      }
+      entries++;
+      return this;
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Returns the number of entries written so far.
+   *
+   * @return Number of entries.
+   */
+  public int entries() {
+    return entries;
+  }
+
+  /**
+   * Finishes the archive and closes the underlying stream.
+   *
+   * @throws RtfException if the archive can't be finished.
+   */
+  @Override public void close() {
+    try {
+      zip.close();
+    }
+    catch ( IOException e ) {
+      throw new RtfException( e );
+    }
+  }
+
+  /**
+   * Passes the bytes of one entry on to the archive, but doesn't close it.
+   */
+  private static final class EntryStream extends FilterOutputStream {
+    EntryStream( OutputStream out ) {
+      super( out );
+    }
+
+    @Override public void write( byte[] b, int off, int len ) throws IOException {
+      out.write( b, off, len );
+    }
+
+    @Override public void close() {}
+  }
+
+  static int checkLevel( int level ) {
+    if ( level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) )
+      throw new IllegalArgumentException( "Compression level must be between 0 and 9 or -1 but was " + level );
+    return level;
+  }
+}
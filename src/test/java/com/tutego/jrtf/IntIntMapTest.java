@@ -0,0 +1,39 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class IntIntMapTest {
+
+  @Test void missingKeyReturnsDefault() {
+    IntIntMap map = new IntIntMap( 4 );
+    assertThat( map.get( 0xFF0000, -1 ) ).isEqualTo( -1 );
+    assertThat( map.size() ).isZero();
+  }
+
+  @Test void putReplacesAndPutIfAbsentKeeps() {
+    IntIntMap map = new IntIntMap( 4 );
+    map.put( 7, 1 );
+    map.put( 7, 2 );
+    map.putIfAbsent( 7, 3 );
+    assertThat( map.get( 7, -1 ) ).isEqualTo( 2 );
+    assertThat( map.size() ).isEqualTo( 1 );
+  }
+
+  @Test void growsBeyondInitialCapacity() {
+    IntIntMap map = new IntIntMap( 1 );
+    for ( int i = 0; i < 10_000; i++ )
+      map.put( i * 257, i );
+    assertThat( map.size() ).isEqualTo( 10_000 );
+    for ( int i = 0; i < 10_000; i++ )
+      assertThat( map.get( i * 257, -1 ) ).isEqualTo( i );
+    assertThat( map.get( 1, -1 ) ).isEqualTo( -1 );
+  }
+
+  @Test void negativeKeysAreRejected() {
+    assertThatExceptionOfType( IllegalArgumentException.class )
+        .isThrownBy( () -> new IntIntMap( 4 ).put( -1, 0 ) );
+  }
+}
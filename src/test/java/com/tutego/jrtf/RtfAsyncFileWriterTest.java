@@ -0,0 +1,84 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class RtfAsyncFileWriterTest {
+
+  @Test void smallBuffersTakeTurns( @TempDir Path directory ) throws Exception {
+    Path file = directory.resolve( "out.rtf" );
+    StringBuilder expected = new StringBuilder();
+    try ( RtfAsyncFileWriter writer = RtfAsyncFileWriter.open( file, 16 ) ) {
+      for ( int i = 0; i < 100; i++ ) {
+        String line = "line " + i + " ä\n";
+        writer.append( line );
+        writer.write( '{' );
+        writer.write( new char[]{ 'x', 'y', 'z' }, 1, 2 );
+        expected.append( line ).append( "{yz" );
+      }
+    }
+    assertThat( new String( Files.readAllBytes( file ), Rtf.charset ) ).isEqualTo( expected.toString() );
+  }
+
+  @Test void outAsyncWritesTheDocument( @TempDir Path directory ) {
+    Rtf doc = Rtf.rtf().section( () -> IntStream.range( 0, 20_000 ).mapToObj( i -> RtfPara.p( "Paragraph " + i ) ) );
+    Path file = directory.resolve( "doc.rtf" );
+
+    long bytes = doc.outAsync( file ).join();
+
+    String expected = doc.toString();
+    assertThat( bytes ).isEqualTo( expected.length() );
+    assertThat( file ).hasContent( expected );
+  }
+
+  @Test void directBuffersAreReusedFromThePool( @TempDir Path directory ) throws Exception {
+    for ( int i = 0; i < 3; i++ ) {
+      try ( RtfAsyncFileWriter writer = RtfAsyncFileWriter.open( directory.resolve( i + ".rtf" ) ) ) {
+        writer.write( "document " + i );
+      }
+    }
+    int pooled = RtfAsyncFileWriter.pooledBuffers();
+    assertThat( pooled ).isBetween( 2, RtfAsyncFileWriter.MAX_POOLED_BUFFERS );
+
+    try ( RtfAsyncFileWriter writer = RtfAsyncFileWriter.open( directory.resolve( "next.rtf" ) ) ) {
+      assertThat( RtfAsyncFileWriter.pooledBuffers() ).isEqualTo( pooled - 2 );
+      writer.write( "next" );
+    }
+    assertThat( RtfAsyncFileWriter.pooledBuffers() ).isEqualTo( pooled );
+    assertThat( directory.resolve( "2.rtf" ) ).hasContent( "document 2" );
+  }
+
+  @Test void outAsyncFailsWithRtfException( @TempDir Path directory ) {
+    Path file = directory.resolve( "missing" ).resolve( "doc.rtf" );
+    assertThatExceptionOfType( CompletionException.class )
+        .isThrownBy( () -> Rtf.rtf().p( "x" ).outAsync( file ).join() )
+        .withCauseInstanceOf( RtfException.class );
+  }
+
+  @Test void failedOutAsyncLeavesTheTargetUntouched( @TempDir Path directory ) throws Exception {
+    Path file = directory.resolve( "doc.rtf" );
+    Files.write( file, "old".getBytes( Rtf.charset ) );
+    Rtf doc = Rtf.rtf().p( "start" ).section( () -> IntStream.range( 0, 50_000 ).mapToObj( i -> {
+      if ( i == 40_000 )
+        throw new IllegalStateException( "no more data" );
+      return RtfPara.p( "Paragraph " + i );
+    } ) );
+
+    assertThatExceptionOfType( CompletionException.class )
+        .isThrownBy( () -> doc.outAsync( file ).join() )
+        .withRootCauseInstanceOf( IllegalStateException.class );
+    assertThat( file ).hasContent( "old" );
+    try ( Stream<Path> files = Files.list( directory ) ) {
+      assertThat( files ).containsExactly( file );
+    }
+  }
+}
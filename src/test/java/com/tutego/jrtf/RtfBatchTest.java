@@ -0,0 +1,117 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RtfBatchTest {
+
+  @Test void allDocumentsAreWrittenAndFailuresAreReported( @TempDir Path directory ) throws Exception {
+    RtfBatch.Report report = RtfBatch.batch().parallelism( 4 ).run(
+        IntStream.range( 0, 50 ).mapToObj( i -> RtfBatch.job( () -> {
+          if ( i == 7 )
+            throw new IllegalStateException( "no data" );
+          return Rtf.rtf().p( "Letter " + i );
+        }, directory.resolve( i + ".rtf" ) ) ) );
+
+    assertThat( report.documents() ).isEqualTo( 49 );
+    assertThat( report.failures() ).isEqualTo( 1 );
+    assertThat( report.failed() ).singleElement().satisfies( failure -> {
+      assertThat( failure.job().target() ).isEqualTo( directory.resolve( "7.rtf" ) );
+      assertThat( failure.cause() ).hasMessage( "no data" );
+    } );
+    assertThat( new String( Files.readAllBytes( directory.resolve( "3.rtf" ) ), Rtf.charset ) )
+        .isEqualTo( Rtf.rtf().p( "Letter 3" ).toString() );
+    assertThat( report.percentile( 50 ) ).isPositive().isLessThanOrEqualTo( report.percentile( 99 ) );
+    assertThat( report.throughput() ).isPositive();
+    assertThat( report.toString() ).startsWith( "49 documents, 1 failed, " ).contains( "p50", "p99" );
+  }
+
+  @Test void aJobFailingWhileWritingLeavesTheTargetUntouched( @TempDir Path directory ) throws Exception {
+    Path target = directory.resolve( "letter.rtf" );
+    Files.write( target, "old".getBytes( Rtf.charset ) );
+
+    RtfBatch.Report report = RtfBatch.batch().run( Stream.of( RtfBatch.job(
+        () -> Rtf.rtf().p( "Dear customer" ).section( () -> Stream.of( "a", "b" ).map( s -> {
+          if ( s.equals( "b" ) )
+            throw new IllegalStateException( "connection lost" );
+          return RtfPara.p( s );
+        } ) ), target ) ) );
+
+    assertThat( report.failures() ).isEqualTo( 1 );
+    assertThat( new String( Files.readAllBytes( target ), Rtf.charset ) ).isEqualTo( "old" );
+    try ( Stream<Path> files = Files.list( directory ) ) {
+      assertThat( files ).containsExactly( target );
+    }
+  }
+
+  @Test void documentsGetTheUsualFilePermissions( @TempDir Path directory ) throws Exception {
+    assumeTrue( directory.getFileSystem().supportedFileAttributeViews().contains( "posix" ) );
+    Path reference = Files.write( directory.resolve( "reference.txt" ), new byte[ 0 ] );
+    Path target = directory.resolve( "letter.rtf" );
+
+    RtfBatch.batch().run( Stream.of( RtfBatch.job( () -> Rtf.rtf().p( "Dear customer" ), target ) ) );
+
+    assertThat( Files.getPosixFilePermissions( target ) ).isEqualTo( Files.getPosixFilePermissions( reference ) );
+  }
+
+  @Test void errorsAreCountedAsFailures( @TempDir Path directory ) {
+    RtfBatch.Report report = RtfBatch.batch().parallelism( 2 ).run(
+        IntStream.range( 0, 10 ).mapToObj( i -> RtfBatch.job( () -> {
+          if ( i % 5 == 0 )
+            throw new AssertionError( "broken template" );
+          return Rtf.rtf().p( i );
+        }, directory.resolve( i + ".rtf" ) ) ) );
+
+    assertThat( report.documents() ).isEqualTo( 8 );
+    assertThat( report.failures() ).isEqualTo( 2 );
+    assertThat( report.failed() ).extracting( RtfBatch.Failure::cause ).allSatisfy(
+        cause -> assertThat( cause ).isInstanceOf( AssertionError.class ) );
+  }
+
+  @Test void parallelismBoundsTheDocumentsInProgress( @TempDir Path directory ) {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger produced = new AtomicInteger();
+    AtomicInteger maxAhead = new AtomicInteger();
+    AtomicInteger finished = new AtomicInteger();
+
+    Stream<RtfBatch.Job> jobs = IntStream.range( 0, 40 ).mapToObj( i -> {
+      maxAhead.accumulateAndGet( produced.incrementAndGet() - finished.get(), Math::max );
+      return RtfBatch.job( () -> {
+        maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+        try { Thread.sleep( 2 ); } catch ( InterruptedException e ) { Thread.currentThread().interrupt(); }
+        running.decrementAndGet();
+        finished.incrementAndGet();
+        return Rtf.rtf().p( i );
+      }, directory.resolve( i + ".rtf" ) );
+    } );
+
+    RtfBatch.Report report = RtfBatch.batch().parallelism( 3 ).run( jobs );
+    assertThat( report.documents() ).isEqualTo( 40 );
+    assertThat( maxRunning.get() ).isLessThanOrEqualTo( 3 );
+    assertThat( maxAhead.get() ).isLessThanOrEqualTo( 4 );
+  }
+
+  @Test void emptyBatch() {
+    RtfBatch.Report report = RtfBatch.batch().run( Stream.empty() );
+    assertThat( report.documents() ).isZero();
+    assertThat( report.percentile( 99 ) ).isZero();
+  }
+
+  @Test void invalidArgumentsAreRejected() {
+    assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> RtfBatch.batch().parallelism( 0 ) );
+    assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> RtfBatch.job( null, Paths.get( "x" ) ) );
+    assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> RtfBatch.batch().run( Stream.empty() ).percentile( 0 ) );
+  }
+}
@@ -0,0 +1,149 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class RtfCacheTest {
+
+  private final AtomicInteger renders = new AtomicInteger();
+
+  private Supplier<Rtf> document( String text ) {
+    return () -> {
+      renders.incrementAndGet();
+      return Rtf.rtf().p( text );
+    };
+  }
+
+  private static long spilledFiles( Path directory ) throws Exception {
+    try ( Stream<Path> files = Files.list( directory ) ) {
+      return files.count();
+    }
+  }
+
+  @Test void secondRequestIsAHit() {
+    RtfCache cache = RtfCache.cache( 1 << 20 );
+    StringWriter first = new StringWriter();
+    cache.out( "a", document( "text" ), first );
+    StringWriter second = new StringWriter();
+    cache.out( "a", document( "other" ), second );
+
+    assertThat( second.toString() ).isEqualTo( first.toString() ).isEqualTo( Rtf.rtf().p( "text" ).toString() );
+    assertThat( renders ).hasValue( 1 );
+    assertThat( cache.hits() ).isEqualTo( 1 );
+    assertThat( cache.misses() ).isEqualTo( 1 );
+    assertThat( cache.hitRate() ).isEqualTo( 0.5 );
+    assertThat( cache.memoryBytes() ).isEqualTo( first.toString().length() );
+    assertThat( cache.toString() ).contains( "hits 1", "misses 1", "hit rate 50.0%" );
+  }
+
+  @Test void leastRecentlyUsedDocumentIsEvicted() {
+    int size = Rtf.rtf().p( "a" ).toString().length();
+    RtfCache cache = RtfCache.cache( 2L * size );
+    cache.bytes( "a", document( "a" ) );
+    cache.bytes( "b", document( "b" ) );
+    cache.bytes( "a", document( "a" ) );   // b is now the least recently used
+    cache.bytes( "c", document( "c" ) );
+
+    assertThat( cache.evictions() ).isEqualTo( 1 );
+    assertThat( cache.memoryBytes() ).isEqualTo( 2L * size );
+    cache.bytes( "a", document( "a" ) );
+    assertThat( renders ).hasValue( 3 );
+    cache.bytes( "b", document( "b" ) );
+    assertThat( renders ).hasValue( 4 );
+  }
+
+  @Test void evictedDocumentsAreSpilledAndReadBack( @TempDir Path directory ) throws Exception {
+    int size = Rtf.rtf().p( "a" ).toString().length();
+    RtfCache cache = RtfCache.cache( size ).spillTo( directory );
+    byte[] a = cache.bytes( "a", document( "a" ) );
+    cache.bytes( "b", document( "b" ) );
+    assertThat( spilledFiles( directory ) ).isEqualTo( 1 );
+
+    assertThat( cache.bytes( "a", document( "a" ) ) ).isEqualTo( a );
+    assertThat( cache.diskHits() ).isEqualTo( 1 );
+    assertThat( renders ).hasValue( 2 );
+
+    cache.clear();
+    assertThat( spilledFiles( directory ) ).isZero();
+  }
+
+  @Test void documentsLargerThanTheCacheGoToDisk( @TempDir Path directory ) throws Exception {
+    RtfCache cache = RtfCache.cache( 10 ).spillTo( directory );
+    cache.bytes( "a", document( "a" ) );
+    assertThat( cache.memoryBytes() ).isZero();
+    assertThat( spilledFiles( directory ) ).isEqualTo( 1 );
+    cache.invalidate( "a" );
+    assertThat( spilledFiles( directory ) ).isZero();
+  }
+
+  @Test void failedSpillsLeaveNoTemporaryFiles( @TempDir Path directory ) throws Exception {
+    RtfCache cache = RtfCache.cache( 10 ).spillTo( directory );
+    cache.bytes( "a", document( "a" ) );
+    Path file;
+    try ( Stream<Path> files = Files.list( directory ) ) {
+      file = files.findFirst().get();
+    }
+    cache.invalidate( "a" );
+    // A non-empty directory in place of the spill file makes the move fail
+    Files.createDirectory( file );
+    Files.createFile( file.resolve( "blocker" ) );
+
+    cache.bytes( "a", document( "a" ) );
+    assertThat( spilledFiles( directory ) ).isEqualTo( 1 );
+  }
+
+  @Test void expiredDocumentsAreRenderedAgain() {
+    AtomicLong nanos = new AtomicLong();
+    RtfCache cache = RtfCache.cache( 1 << 20 ).expireAfter( Duration.ofSeconds( 10 ) );
+    cache.clock = nanos::get;
+    cache.bytes( "a", document( "a" ) );
+    nanos.set( Duration.ofSeconds( 9 ).toNanos() );
+    cache.bytes( "a", document( "a" ) );
+    assertThat( renders ).hasValue( 1 );
+    nanos.set( Duration.ofSeconds( 10 ).toNanos() );
+    cache.bytes( "a", document( "a" ) );
+    assertThat( renders ).hasValue( 2 );
+  }
+
+  @Test void spilledDocumentsExpireAfterTheirRenderTime( @TempDir Path directory ) throws Exception {
+    AtomicLong nanos = new AtomicLong();
+    int size = Rtf.rtf().p( "a" ).toString().length();
+    RtfCache cache = RtfCache.cache( size ).spillTo( directory ).expireAfter( Duration.ofSeconds( 10 ) );
+    cache.clock = nanos::get;
+    cache.bytes( "a", document( "a" ) );
+    nanos.set( Duration.ofSeconds( 9 ).toNanos() );
+    cache.bytes( "b", document( "b" ) );   // spills a, rendered 9 seconds ago
+
+    try ( Stream<Path> files = Files.list( directory ) ) {
+      long modified = Files.getLastModifiedTime( files.findFirst().get() ).toMillis();
+      assertThat( modified ).isLessThanOrEqualTo( System.currentTimeMillis() - 8_000 );
+    }
+    cache.bytes( "a", document( "a" ) );
+    assertThat( cache.diskHits() ).isEqualTo( 1 );
+    assertThat( renders ).hasValue( 2 );
+
+    nanos.set( Duration.ofSeconds( 10 ).toNanos() );
+    cache.bytes( "a", document( "a" ) );
+    assertThat( renders ).hasValue( 3 );
+  }
+
+  @Test void invalidArgumentsAreRejected() {
+    assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> RtfCache.cache( -1 ) );
+    assertThatExceptionOfType( IllegalArgumentException.class )
+        .isThrownBy( () -> RtfCache.cache( 1 ).expireAfter( Duration.ofSeconds( -1 ) ) );
+    assertThatExceptionOfType( IllegalArgumentException.class )
+        .isThrownBy( () -> RtfCache.cache( 1 ).bytes( null, document( "a" ) ) );
+  }
+}
@@ -2,6 +2,8 @@ package com.tutego.jrtf;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Locale;
+
 import static com.tutego.jrtf.RtfCell.cell;
 import static com.tutego.jrtf.TestSupport.rtf;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -55,6 +57,22 @@ class RtfCellTest {
     assertThat( out ).contains( "\\qr" );
   }
 
+  @Test void alignDecimalSetsDecimalTabAndMovesContentToIt() {
+    String out = rtf( RtfPara.row( cell( RtfText.number( 3.5, "0.00", Locale.US ) ).alignDecimal( 1, RtfUnit.INCH ) ), true );
+    assertThat( out ).contains( "\\tqdec\\tx1440", "\\tab\n3.50" );
+  }
+
+  @Test void alignDecimalTwiceMovesTheTabStopAndKeepsTheParagraph() {
+    RtfTextPara shared = RtfPara.p( RtfText.number( 3.5, "0.00", Locale.US ) );
+    String plain = rtf( RtfPara.row( cell( shared ) ), true );
+    String out = rtf( RtfPara.row( cell( shared ).alignDecimal( 1, RtfUnit.INCH ).alignDecimal( 2, RtfUnit.INCH ) ), true );
+
+    assertThat( out ).contains( "\\tqdec\\tx2880", "\\tab\n3.50" ).doesNotContain( "\\tx1440" );
+    assertThat( out.split( "\\\\tqdec", -1 ) ).hasSize( 2 );
+    assertThat( out.split( "\\\\tab\n", -1 ) ).hasSize( 2 );
+    assertThat( rtf( RtfPara.row( cell( shared ) ), true ) ).isEqualTo( plain );
+  }
+
   @Test void cellWithMultipleParagraphsSeparatesWithParButTerminatesOnceWithCell() {
     String out = rtf( RtfPara.row( cell( RtfPara.p( "a" ), RtfPara.p( "b" ) ) ), true );
     // first paragraph ends with \par, second does not; single \cell terminates the cell
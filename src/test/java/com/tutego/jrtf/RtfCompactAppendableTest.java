@@ -0,0 +1,77 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RtfCompactAppendableTest {
+
+  private static String compact( String rtf ) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    RtfCompactAppendable out = new RtfCompactAppendable( sb );
+    out.append( rtf );
+    out.flush();
+    return sb.toString();
+  }
+
+  @Test void lineBreaksBetweenGroupsAreDropped() throws IOException {
+    assertThat( compact( "{\\rtf1\n{\\fonttbl;}\n}" ) ).isEqualTo( "{\\rtf1{\\fonttbl;}}" );
+  }
+
+  @Test void lineBreakTerminatingAControlWordBecomesASpaceBeforeText() throws IOException {
+    assertThat( compact( "a\\par\nb" ) ).isEqualTo( "a\\par b" );
+    assertThat( compact( "\\cellx1440\n2" ) ).isEqualTo( "\\cellx1440 2" );
+  }
+
+  @Test void lineBreakTerminatingAControlWordIsDroppedBeforeDelimiters() throws IOException {
+    assertThat( compact( "\\par\n\\par\n{x}" ) ).isEqualTo( "\\par\\par{x}" );
+  }
+
+  @Test void spaceAfterDroppedLineBreakIsKept() throws IOException {
+    assertThat( compact( "\\tab\n x" ) ).isEqualTo( "\\tab  x" );
+  }
+
+  @Test void adjacentGroupsWithSameFormattingAreMerged() throws IOException {
+    assertThat( compact( "{{\\b a}{\\b b}}" ) ).isEqualTo( "{{\\b ab}}" );
+    assertThat( compact( "{{\\fs24\\i a}{\\fs24\\i b}{\\fs24\\i c}}" ) ).isEqualTo( "{{\\fs24\\i abc}}" );
+  }
+
+  @Test void groupsWithDifferentFormattingAreNotMerged() throws IOException {
+    assertThat( compact( "{{\\b a}{\\i b}}" ) ).isEqualTo( "{{\\b a}{\\i b}}" );
+    assertThat( compact( "{{\\fs24 a}{\\fs28 b}}" ) ).isEqualTo( "{{\\fs24 a}{\\fs28 b}}" );
+  }
+
+  @Test void groupsAreNotMergedIfTheFirstChangesFormattingInside() throws IOException {
+    assertThat( compact( "{{\\b a\\i b}{\\b c}}" ) ).isEqualTo( "{{\\b a\\i b}{\\b c}}" );
+  }
+
+  @Test void destinationsAreNeverMerged() throws IOException {
+    assertThat( compact( "{{\\*\\bkmkstart x}{\\*\\bkmkstart x}}" ) )
+        .isEqualTo( "{{\\*\\bkmkstart x}{\\*\\bkmkstart x}}" );
+    assertThat( compact( "{{\\pict\\pngblip 00}{\\pict\\pngblip 00}}" ) )
+        .isEqualTo( "{{\\pict\\pngblip 00}{\\pict\\pngblip 00}}" );
+  }
+
+  @Test void mergedGroupKeepsDelimiterOfControlWordBeforeTheDroppedBrace() throws IOException {
+    assertThat( compact( "{{\\b a\\par}{\\b b}}" ) ).isEqualTo( "{{\\b a\\par b}}" );
+  }
+
+  @Test void emptyGroupsAreDropped() throws IOException {
+    assertThat( compact( "{a{}b{\\b }c}" ) ).isEqualTo( "{abc}" );
+    assertThat( compact( "{\\tab{}x}" ) ).isEqualTo( "{\\tab x}" );
+  }
+
+  @Test void escapesAreNotMistakenForGroups() throws IOException {
+    assertThat( compact( "{\\b \\{a\\}}{\\b \\'e9}" ) ).isEqualTo( "{\\b \\{a\\}\\'e9}" );
+  }
+
+  @Test void binaryDataIsPassedThrough() throws IOException {
+    assertThat( compact( "{\\bin3 \n{}x}" ) ).isEqualTo( "{\\bin3 \n{}x}" );
+  }
+
+  @Test void heldBraceIsWrittenOnFlush() throws IOException {
+    assertThat( compact( "{\\b a}" ) ).isEqualTo( "{\\b a}" );
+  }
+}
@@ -0,0 +1,106 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The JFR API is not part of the Java 8 compile target, so the recording is driven by reflection.
+ */
+class RtfFlightRecorderTest {
+
+  private static boolean jfrApiPresent() {
+    try {
+      Class.forName( "jdk.jfr.EventFactory" );
+      return true;
+    }
+    catch ( ClassNotFoundException e ) {
+      return false;
+    }
+  }
+
+  @Test void eventTypesAreRegisteredIfTheJfrApiIsPresent() {
+    assertThat( RtfFlightRecorder.available() ).isEqualTo( jfrApiPresent() );
+  }
+
+  @Test void noEventIsStartedWithoutRecording() {
+    assertThat( RtfFlightRecorder.DOCUMENT.begin() ).isNull();
+    RtfFlightRecorder.DOCUMENT.end( null, 1L, 1 );
+  }
+
+  /**
+   * Runs {@code action} while a recording has the document and section events enabled.
+   */
+  private static List<?> record( Runnable action ) throws Exception {
+    Class<?> recordingClass = Class.forName( "jdk.jfr.Recording" );
+    Object recording = recordingClass.getConstructor().newInstance();
+    recordingClass.getMethod( "enable", String.class ).invoke( recording, "com.tutego.jrtf.Document" );
+    recordingClass.getMethod( "enable", String.class ).invoke( recording, "com.tutego.jrtf.Section" );
+    recordingClass.getMethod( "start" ).invoke( recording );
+    try {
+      action.run();
+    }
+    finally {
+      recordingClass.getMethod( "stop" ).invoke( recording );
+    }
+    Path file = Files.createTempFile( "jrtf", ".jfr" );
+    try {
+      recordingClass.getMethod( "dump", Path.class ).invoke( recording, file );
+      recordingClass.getMethod( "close" ).invoke( recording );
+      return (List<?>) Class.forName( "jdk.jfr.consumer.RecordingFile" )
+                            .getMethod( "readAllEvents", Path.class ).invoke( null, file );
+    }
+    finally {
+      Files.delete( file );
+    }
+  }
+
+  private static String name( Object event ) throws Exception {
+    Object type = event.getClass().getMethod( "getEventType" ).invoke( event );
+    return (String) type.getClass().getMethod( "getName" ).invoke( type );
+  }
+
+  @Test void documentAndSectionEventsAreRecorded() throws Exception {
+    assumeTrue( RtfFlightRecorder.available() );
+
+    String[] out = new String[ 1 ];
+    List<?> events = record( () -> out[ 0 ] = Rtf.rtf().p( "a" ).newSection().p( "b" ).toString() );
+    List<String> names = new ArrayList<>();
+    for ( Object event : events ) {
+      String name = name( event );
+      names.add( name );
+      if ( name.equals( "com.tutego.jrtf.Document" ) ) {
+        assertThat( event.getClass().getMethod( "getLong", String.class ).invoke( event, "bytes" ) )
+            .isEqualTo( (long) out[ 0 ].length() );
+        assertThat( event.getClass().getMethod( "getInt", String.class ).invoke( event, "sections" ) ).isEqualTo( 2 );
+      }
+    }
+    assertThat( names ).containsOnlyOnce( "com.tutego.jrtf.Document" );
+    assertThat( names.stream().filter( "com.tutego.jrtf.Section"::equals ) ).hasSize( 2 );
+  }
+
+  @Test void abortedDocumentsAreRecorded() throws Exception {
+    assumeTrue( RtfFlightRecorder.available() );
+
+    List<?> events = record( () -> {
+      try {
+        Rtf.rtf().p( "a" ).p( "b" ).limits( RtfLimits.none().maxParagraphs( 1 ) ).toString();
+      }
+      catch ( RtfAbortedException e ) {
+        // expected
+      }
+    } );
+    List<String> names = new ArrayList<>();
+    for ( Object event : events )
+      names.add( name( event ) );
+    // The second section is aborted at its paragraph
+    assertThat( names ).containsOnlyOnce( "com.tutego.jrtf.Document" );
+    assertThat( names.stream().filter( "com.tutego.jrtf.Section"::equals ) ).hasSize( 2 );
+  }
+}
@@ -0,0 +1,70 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RtfFlushingWriterTest {
+
+  /** Remembers how much was written at every flush and fails if it is closed. */
+  private static final class RecordingWriter extends StringWriter {
+    final List<Integer> flushes = new ArrayList<>();
+
+    @Override public void flush() {
+      flushes.add( getBuffer().length() );
+    }
+
+    @Override public void close() {
+      throw new AssertionError( "closed" );
+    }
+  }
+
+  private static Rtf threeSections() {
+    return Rtf.rtf().p( "one" ).newSection().p( "two" ).newSection().p( "three" );
+  }
+
+  @Test void flushesAfterEachSection() {
+    Rtf doc = threeSections();
+    RecordingWriter out = new RecordingWriter();
+    doc.stream( out );
+
+    String expected = doc.toString();
+    assertThat( out.toString() ).isEqualTo( expected );
+    assertThat( out.flushes ).hasSize( 4 );
+    assertThat( expected.substring( 0, out.flushes.get( 0 ) ) ).contains( "one" ).doesNotContain( "two" );
+    assertThat( expected.substring( 0, out.flushes.get( 1 ) ) ).contains( "two" ).doesNotContain( "three" );
+  }
+
+  @Test void compactSectionsAreFlushedAsWell() {
+    Rtf doc = threeSections().compact();
+    RecordingWriter out = new RecordingWriter();
+    doc.stream( out );
+
+    assertThat( out.toString() ).isEqualTo( doc.toString() );
+    assertThat( doc.toString().substring( 0, out.flushes.get( 0 ) ) ).contains( "one" ).doesNotContain( "two" );
+  }
+
+  @Test void flushesEveryKilobytes() {
+    Rtf doc = Rtf.rtf();
+    for ( int i = 0; i < 1000; i++ )
+      doc.p( "Paragraph ", i );
+    RecordingWriter out = new RecordingWriter();
+    doc.stream( out, RtfFlushPolicy.everyKilobytes( 4 ) );
+
+    assertThat( out.toString() ).isEqualTo( doc.toString() );
+    assertThat( out.flushes.size() ).isGreaterThan( doc.toString().length() / 4096 );
+    for ( int i = 1; i < out.flushes.size() - 1; i++ )
+      assertThat( out.flushes.get( i ) - out.flushes.get( i - 1 ) ).isGreaterThanOrEqualTo( 4096 );
+  }
+
+  @Test void policies() {
+    assertThat( RtfFlushPolicy.everyKilobytes( 8 ).andAfterEachSection() ).hasToString( "every 8 KB and after each section" );
+    assertThat( RtfFlushPolicy.afterEachSection().andAfterEachSection() ).isSameAs( RtfFlushPolicy.afterEachSection() );
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfFlushPolicy.everyKilobytes( 0 ) );
+  }
+}
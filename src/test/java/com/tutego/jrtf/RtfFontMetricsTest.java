@@ -0,0 +1,50 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RtfFontMetricsTest {
+
+  private final RtfFontMetrics metrics = new RtfFontMetrics( Rtf.DEFAULT_FONT_NAME, RtfFontMetrics.DEFAULT_FONT_SIZE_POINTS );
+
+  @Test void longerTextIsWider() {
+    assertThat( metrics.widthTwips( "WWWW", false ) ).isGreaterThan( metrics.widthTwips( "W", false ) );
+    assertThat( metrics.widthTwips( "", false ) ).isZero();
+  }
+
+  @Test void rtfIsMeasuredAsItsPlainText() {
+    assertThat( metrics.rtfWidthTwips( "a\\{b\\}" ) ).isEqualTo( metrics.widthTwips( "a{b}", false ) );
+    assertThat( metrics.rtfWidthTwips( "M\\u228\\'e4rz" ) ).isEqualTo( metrics.widthTwips( "März", false ) );
+    assertThat( metrics.rtfWidthTwips( "{\\b bold}" ) ).isEqualTo( metrics.widthTwips( "bold", true ) );
+  }
+
+  @Test void widestLineCounts() {
+    assertThat( metrics.rtfWidthTwips( "short\\line much longer line" ) )
+        .isEqualTo( metrics.widthTwips( "much longer line", false ) );
+  }
+
+  @Test void hiddenDestinationsAreNotMeasured() {
+    int shown = metrics.widthTwips( "link", false );
+    assertThat( metrics.rtfWidthTwips( "{\\field{\\*\\fldinst HYPERLINK \"https://example.com/a/very/long/path\"}{\\fldrslt link}}" ) )
+        .isEqualTo( shown );
+    assertThat( metrics.rtfWidthTwips( "{\\pict\\pngblip\\picw10\\pich10 89504e470d0a1a0a0000000d49484452}link" ) )
+        .isEqualTo( shown );
+    assertThat( metrics.rtfWidthTwips( "{\\*\\shppict{\\pict\\bin2 {}}}link" ) ).isEqualTo( shown );
+    assertThat( metrics.rtfWidthTwips( "li{\\footnote note}nk" ) ).isEqualTo( metrics.widthTwips( "li", false ) + metrics.widthTwips( "nk", false ) );
+  }
+
+  @Test void runsAreMeasuredInTheirFontSizeAndWeight() {
+    RtfFontMetrics fonts = new RtfFontMetrics( Collections.singletonMap( 1, "Monospaced" ), "Serif", 12 );
+    RtfFontMetrics monospaced = new RtfFontMetrics( "Monospaced", 12 );
+    RtfFontMetrics large = new RtfFontMetrics( "Serif", 24 );
+
+    assertThat( fonts.rtfWidthTwips( "{\\f1 iiii}" ) ).isEqualTo( monospaced.widthTwips( "iiii", false ) );
+    assertThat( fonts.rtfWidthTwips( "{\\fs48 text}" ) ).isEqualTo( large.widthTwips( "text", false ) );
+    assertThat( fonts.rtfWidthTwips( "{\\b bold} plain" ) )
+        .isEqualTo( fonts.widthTwips( "bold", true ) + fonts.widthTwips( " plain", false ) );
+    assertThat( fonts.rtfWidthTwips( "{\\fs48 x}y" ) ).isEqualTo( large.widthTwips( "x", false ) + fonts.widthTwips( "y", false ) );
+  }
+}
@@ -2,6 +2,8 @@ package com.tutego.jrtf;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
@@ -30,4 +32,12 @@ class RtfHeaderTest {
     font.writeFontInfo( out );
     assertThat( sb.toString() ).isEqualTo( "{\\f2\\fswiss\\fcharset0\\fprq2 Arial;}" );
   }
+
+  @Test void embeddedFontIsWrittenIntoEveryOutput() {
+    Rtf doc = Rtf.rtf().header( RtfHeader.font( "Embedded" ).at( 1 ).embed( new ByteArrayInputStream( new byte[]{ 1, 2, (byte) 0xff } ) ) )
+                 .p( "x" );
+    String first = doc.toString();
+    assertThat( first ).contains( "\\fontfile\\fontemb\\cpg1252\\f1 0102ff}" );
+    assertThat( doc.toString() ).isEqualTo( first );
+  }
 }
@@ -0,0 +1,106 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RtfLimitsTest {
+
+  private static Rtf endless() {
+    return Rtf.rtf().section( () -> Stream.iterate( 0, i -> i + 1 ).map( i -> RtfPara.p( "Paragraph ", i ) ) );
+  }
+
+  private static RtfAbortedException.Reason abort( Rtf doc ) {
+    try {
+      doc.out( new StringBuilder() );
+    }
+    catch ( RtfAbortedException e ) {
+      return e.reason();
+    }
+    throw new AssertionError( "Not aborted" );
+  }
+
+  @Test void documentsWithinTheLimitsAreWritten() {
+    Rtf doc = Rtf.rtf().p( "a" ).p( "b" ).newSection().p( "c" );
+    String expected = doc.toString();
+    doc.limits( RtfLimits.none().maxParagraphs( 3 ).maxBytes( 10_000 ).timeout( Duration.ofMinutes( 1 ) ) );
+    assertThat( doc.toString() ).isEqualTo( expected );
+  }
+
+  @Test void tooManyParagraphsAbort() {
+    assertThat( abort( endless().limits( RtfLimits.none().maxParagraphs( 1000 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_PARAGRAPHS );
+    assertThat( abort( Rtf.rtf().p( "a" ).p( "b" ).limits( RtfLimits.none().maxParagraphs( 1 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_PARAGRAPHS );
+  }
+
+  @Test void tableRowsAreParagraphs() {
+    RtfTable table = RtfTable.table().column( 1, RtfUnit.INCH )
+                             .rows( IntStream.range( 0, 100 ).mapToObj( i -> new Object[]{ i } ) );
+    assertThat( abort( Rtf.rtf().section( table ).limits( RtfLimits.none().maxParagraphs( 50 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_PARAGRAPHS );
+  }
+
+  @Test void tooLargeOutputAborts() {
+    assertThat( abort( endless().limits( RtfLimits.none().maxBytes( 100_000 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_BYTES );
+    assertThat( abort( endless().compact().autoColorTable().limits( RtfLimits.none().maxBytes( 100_000 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_BYTES );
+  }
+
+  @Test void smallCompactDocumentsAreLimitedBeforeTheCompactBufferDrains() {
+    Rtf doc = Rtf.rtf().compact().p( "First paragraph" ).p( "Second paragraph" ).p( "Third paragraph" );
+    assertThat( doc.toString().length() ).isGreaterThan( 100 );
+    assertThat( abort( doc.limits( RtfLimits.none().maxBytes( 100 ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.MAX_BYTES );
+  }
+
+  @Test void timeoutAborts() {
+    assertThat( abort( endless().limits( RtfLimits.none().timeout( Duration.ofMillis( 50 ) ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.TIMEOUT );
+  }
+
+  @Test void cancellationAndInterruptionAbort() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Rtf doc = Rtf.rtf().section( () -> Stream.iterate( 0, i -> i + 1 ).map( i -> {
+      if ( i == 100 )
+        cancelled.set( true );
+      return RtfPara.p( i );
+    } ) );
+    assertThat( abort( doc.limits( RtfLimits.none().cancelWhen( cancelled::get ) ) ) )
+        .isEqualTo( RtfAbortedException.Reason.CANCELLED );
+
+    Thread.currentThread().interrupt();
+    try {
+      assertThat( abort( endless().limits( RtfLimits.none().maxBytes( Long.MAX_VALUE ) ) ) )
+          .isEqualTo( RtfAbortedException.Reason.INTERRUPTED );
+    }
+    finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test void templatesAreLimited() {
+    RtfTemplate template = Rtf.template( new ByteArrayInputStream( "{\\rtf1 %%A%% %%B%%}".getBytes( Rtf.charset ) ) )
+                              .inject( "A", "x" ).inject( "B", "y" );
+    assertThat( template.limits( RtfLimits.none().maxBytes( 100 ) ).out() ).isEqualTo( "{\\rtf1 x y}" );
+    assertThatExceptionOfType( RtfAbortedException.class )
+        .isThrownBy( () -> template.limits( RtfLimits.none().maxBytes( 5 ) ).out() )
+        .withMessageContaining( "5 bytes" );
+  }
+
+  @Test void invalidLimits() {
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfLimits.none().maxBytes( 0 ) );
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfLimits.none().timeout( Duration.ZERO ) );
+    assertThat( RtfLimits.none().maxParagraphs( 5 ) ).hasToString( "max 5 paragraphs, interruptible" );
+    assertThat( RtfLimits.NONE ).hasToString( "no limits" );
+  }
+}
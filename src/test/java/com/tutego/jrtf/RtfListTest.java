@@ -9,39 +9,55 @@ import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException
 
 class RtfListTest {
 
-  @Test void listMustBeRegisteredBeforeUse() {
+  @Test void listMustBeRegisteredWithTheDocument() {
     RtfList list = RtfList.bulleted();
+    RtfPara item = RtfPara.p( "a" ).list( list, 0 );
+    Rtf.rtf().lists( list );
+    assertThatExceptionOfType( RtfException.class )
+        .isThrownBy( () -> Rtf.rtf().section( item ).out() );
     assertThatExceptionOfType( RtfException.class )
-        .isThrownBy( () -> RtfPara.p( "a" ).list( list, 0 ) );
+        .isThrownBy( () -> rtf( item, true ) );
   }
 
   @Test void unconfiguredLevelIsRejected() {
     RtfList list = RtfList.bulleted();
-    Rtf.rtf().lists( list );
     assertThatIllegalArgumentException().isThrownBy( () -> RtfPara.p( "a" ).list( list, 1 ) );
   }
 
   @Test void paragraphEmitsLsAndIlvlWithMatchingIndent() {
     RtfList list = RtfList.bulleted();
-    Rtf.rtf().lists( list );
-    String out = rtf( RtfPara.p( "a" ).list( list, 0 ), true );
-    assertThat( out ).contains( "\\li720\\fi-360\\ls1\\ilvl0" );
+    String out = Rtf.rtf().lists( list ).section( RtfPara.p( "a" ).list( list, 0 ) ).out().toString();
+    assertThat( out ).contains( "\\li720\\fi-360\n\\ls1\\ilvl0" );
   }
 
   @Test void secondRegisteredListGetsNextOverrideIndex() {
     RtfList first = RtfList.bulleted();
     RtfList second = RtfList.numbered( RtfList.NumberFormat.DECIMAL );
-    Rtf.rtf().lists( first, second );
+    String out = Rtf.rtf().lists( first, second )
+                    .section( RtfPara.p( "a" ).list( first, 0 ), RtfPara.p( "b" ).list( second, 0 ) )
+                    .out().toString();
 
-    assertThat( rtf( RtfPara.p( "a" ).list( first, 0 ), true ) ).contains( "\\ls1\\ilvl0" );
-    assertThat( rtf( RtfPara.p( "b" ).list( second, 0 ), true ) ).contains( "\\ls2\\ilvl0" );
+    assertThat( out ).contains( "\\ls1\\ilvl0", "\\ls2\\ilvl0" );
   }
 
   @Test void registeringSameListTwiceKeepsFirstOverrideIndex() {
     RtfList list = RtfList.bulleted();
     Rtf rtf = Rtf.rtf().lists( list );
     rtf.lists( list );
-    assertThat( rtf( RtfPara.p( "a" ).list( list, 0 ), true ) ).contains( "\\ls1\\ilvl0" );
+    assertThat( rtf.section( RtfPara.p( "a" ).list( list, 0 ) ).out().toString() )
+        .contains( "\\ls1\\ilvl0" ).doesNotContain( "\\ls2" );
+  }
+
+  @Test void sharedListsAreNumberedByEachDocument() {
+    RtfList shared = RtfList.numbered( RtfList.NumberFormat.DECIMAL );
+    RtfPara item = RtfPara.p( "1" ).list( shared, 0 ).freeze();
+    Rtf alone = Rtf.rtf().lists( shared ).section( item );
+    String before = alone.out().toString();
+
+    String second = Rtf.rtf().lists( RtfList.bulleted(), shared ).section( item ).out().toString();
+
+    assertThat( second ).contains( "\\ls2\\ilvl0", "{\\listoverride\\listid2" );
+    assertThat( alone.out().toString() ).isEqualTo( before ).contains( "\\ls1\\ilvl0" );
   }
 
   @Test void documentContainsListtableAndListoverridetableWhenListsRegistered() {
@@ -50,8 +66,17 @@ class RtfListTest {
                      .section( RtfPara.p( "a" ).list( bullets, 0 ) )
                      .out().toString();
     assertThat( out ).contains( "{\\*\\listtable", "{\\list\\listtemplateid", "\\listsimple1",
-                                "\\listid" + listIdOf( bullets ), "{\\*\\listoverridetable",
-                                "{\\listoverride\\listid" + listIdOf( bullets ) );
+                                "\\listid1}", "{\\*\\listoverridetable",
+                                "{\\listoverride\\listid1" );
+  }
+
+  @Test void listIdsAreCountedPerDocument() {
+    Rtf.rtf().lists( RtfList.bulleted(), RtfList.bulleted() ).out();
+    RtfList numbers = RtfList.numbered( RtfList.NumberFormat.DECIMAL );
+    String first = Rtf.rtf().lists( numbers ).section( RtfPara.p( "1" ).list( numbers, 0 ) ).out().toString();
+    RtfList again = RtfList.numbered( RtfList.NumberFormat.DECIMAL );
+    String second = Rtf.rtf().lists( again ).section( RtfPara.p( "1" ).list( again, 0 ) ).out().toString();
+    assertThat( first ).isEqualTo( second ).contains( "\\listid1}" );
   }
 
   @Test void documentWithoutListsHasNoListtable() {
@@ -78,8 +103,4 @@ class RtfListTest {
     long listlevelCount = out.split( "\\\\listlevel", -1 ).length - 1;
     assertThat( listlevelCount ).isEqualTo( 9 );
   }
-
-  private static int listIdOf( RtfList list ) {
-    return list.listId;
-  }
 }
@@ -0,0 +1,90 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.tutego.jrtf.RtfMetrics.Counter;
+import static com.tutego.jrtf.RtfMetrics.Phase;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class RtfMetricsTest {
+
+  @Test void documentPhasesAndCountersAreReported() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    String out = Rtf.rtf().metrics( metrics ).coalesceParagraphs()
+                    .p( "a", RtfText.bold( "b" ) )
+                    .p( "c" )
+                    .newSection()
+                    .p( "d" )
+                    .toString();
+
+    assertThat( metrics.calls( Phase.DOCUMENT ) ).isEqualTo( 1 );
+    assertThat( metrics.calls( Phase.HEADER ) ).isEqualTo( 1 );
+    assertThat( metrics.calls( Phase.SECTION ) ).isEqualTo( 2 );
+    assertThat( metrics.nanos( Phase.DOCUMENT ) ).isPositive();
+    assertThat( metrics.count( Counter.BYTES ) ).isEqualTo( out.length() );
+    assertThat( metrics.count( Counter.PARAGRAPHS ) ).isEqualTo( 3 );
+    assertThat( metrics.count( Counter.RUNS ) ).isEqualTo( 4 );
+  }
+
+  @Test void phasesOfAbortedDocumentsAreReported() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf doc = Rtf.rtf().metrics( metrics ).limits( RtfLimits.none().maxParagraphs( 1 ) ).p( "a" ).p( "b" );
+    assertThatExceptionOfType( RtfAbortedException.class ).isThrownBy( doc::toString );
+
+    // The second section is aborted at its paragraph
+    assertThat( metrics.calls( Phase.DOCUMENT ) ).isEqualTo( 1 );
+    assertThat( metrics.calls( Phase.SECTION ) ).isEqualTo( 2 );
+  }
+
+  @Test void countersAddUpOverSeveralOutputs() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf doc = Rtf.rtf().metrics( metrics ).p( "x" );
+    doc.toString();
+    doc.toString();
+    assertThat( metrics.calls( Phase.DOCUMENT ) ).isEqualTo( 2 );
+    assertThat( metrics.count( Counter.PARAGRAPHS ) ).isEqualTo( 2 );
+    assertThat( metrics.toString() ).contains( "DOCUMENT 2x", "PARAGRAPHS 2" );
+    metrics.reset();
+    assertThat( metrics.toString() ).isEmpty();
+  }
+
+  @Test void tableRowsAreCounted() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf.rtf().metrics( metrics )
+       .section( RtfTable.table().column( 1, RtfUnit.INCH ).header( "h" )
+                         .rows( Arrays.asList( new Object[]{ 1 }, new Object[]{ 2 }, new Object[]{ 3 } ) ),
+                 RtfPara.row( "a", "b" ) )
+       .toString();
+    assertThat( metrics.count( Counter.ROWS ) ).isEqualTo( 5 );
+  }
+
+  @Test void pictureBytesAreCountedWhenThePictureIsLoaded() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    byte[] data = new byte[ 100 ];
+    Rtf.rtf().metrics( metrics )
+       .p( RtfText.picture( new ByteArrayInputStream( data ) ).type( RtfPicture.PictureType.PNG ) )
+       .toString();
+    assertThat( metrics.count( Counter.PICTURE_BYTES ) ).isEqualTo( 100 );
+    assertThat( metrics.calls( Phase.PICTURE_LOAD ) ).isEqualTo( 1 );
+  }
+
+  @Test void templatePlaceholderHitsAndMissesAreCounted() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf.template( new ByteArrayInputStream( "%%A%% %%B%% %%A%%".getBytes( StandardCharsets.US_ASCII ) ) )
+       .metrics( metrics ).inject( "A", "x" ).out();
+    assertThat( metrics.count( Counter.PLACEHOLDER_HITS ) ).isEqualTo( 2 );
+    assertThat( metrics.count( Counter.PLACEHOLDER_MISSES ) ).isEqualTo( 1 );
+    assertThat( metrics.calls( Phase.TEMPLATE ) ).isEqualTo( 1 );
+  }
+
+  @Test void outputIsTheSameWithAndWithoutMetrics() {
+    Rtf doc = Rtf.rtf().p( "same" );
+    String plain = doc.toString();
+    assertThat( doc.metrics( new RtfMetricsAggregator() ).toString() ).isEqualTo( plain );
+  }
+}
@@ -0,0 +1,44 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RtfOutputTest {
+
+  private static String fixed( double value, int fractionDigits ) {
+    StringBuilder sb = new StringBuilder();
+    new RtfOutput( sb ).appendFixed( value, fractionDigits );
+    return sb.toString();
+  }
+
+  @Test void digitsOfLongs() {
+    StringBuilder sb = new StringBuilder();
+    new RtfOutput( sb ).appendDigits( 0 ).semi().appendDigits( -42 ).semi()
+                       .appendDigits( Long.MAX_VALUE ).semi().appendDigits( Long.MIN_VALUE );
+    assertThat( sb ).hasToString( "0;-42;9223372036854775807;-9223372036854775808" );
+  }
+
+  @Test void fixedPointDoubles() {
+    assertThat( fixed( 1234.5, 2 ) ).isEqualTo( "1234.50" );
+    assertThat( fixed( 0.05, 2 ) ).isEqualTo( "0.05" );
+    assertThat( fixed( 0.125, 2 ) ).isEqualTo( "0.13" );
+    assertThat( fixed( -0.125, 2 ) ).isEqualTo( "-0.13" );
+    assertThat( fixed( -0.001, 2 ) ).isEqualTo( "0.00" );
+    assertThat( fixed( 2.5, 0 ) ).isEqualTo( "3" );
+    assertThat( fixed( 1e17, 3 ) ).isEqualTo( "100000000000000000.000" );
+    assertThat( fixed( Double.NaN, 2 ) ).isEqualTo( "NaN" );
+  }
+
+  @Test void digitsAreWrittenToWritersAndOtherAppendables() {
+    StringWriter writer = new StringWriter();
+    new RtfOutput( writer ).appendFixed( 3.14159, 3 );
+    assertThat( writer ).hasToString( "3.142" );
+
+    StringBuilder sb = new StringBuilder();
+    new RtfOutput( sb, true ).appendDigits( 987 ).flush();
+    assertThat( sb ).hasToString( "987" );
+  }
+}
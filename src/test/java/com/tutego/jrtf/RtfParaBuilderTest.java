@@ -0,0 +1,68 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import static com.tutego.jrtf.TestSupport.rtf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RtfParaBuilderTest {
+
+  @Test void runsAreWrittenWithTheirFormatting() {
+    RtfTextPara para = RtfPara.builder()
+                              .bold().append( "ERROR" ).plain().append( ' ' )
+                              .italic().fontSize( 20 ).color( 2 ).append( "disk" ).plain().append( " full" )
+                              .build();
+    assertThat( rtf( para, true ) ).isEqualTo( "{\\s0 {\\b ERROR} {\\i\\fs20\\cf2 disk} full\\par}\n" );
+  }
+
+  @Test void buildsTheSameRtfAsTheEquivalentRtfTexts() {
+    RtfTextPara built = RtfPara.builder().append( "a{" ).underline().append( "b" ).plain().append( 42L ).build();
+    RtfTextPara classic = RtfPara.p( "a{", RtfText.underline( "b" ), 42L );
+    assertThat( rtf( built, true ) ).isEqualTo( rtf( classic, true ) );
+  }
+
+  @Test void adjacentRunsWithSameFormattingAreMerged() {
+    RtfParaBuilder builder = RtfPara.builder().bold().append( "a" ).append( 1 ).append( "bc", 1, 2 )
+                                    .append( new char[]{ 'x', 'd' }, 1, 1 );
+    assertThat( builder.runCount() ).isEqualTo( 1 );
+    assertThat( rtf( builder.build(), false ) ).isEqualTo( "{\\s0 {\\b a1cd}}\n" );
+  }
+
+  @Test void builtParagraphIsASnapshotAndTheBuilderCanBeReused() {
+    RtfParaBuilder builder = RtfPara.builder();
+    RtfTextPara first = builder.bold().append( "first" ).build();
+    RtfTextPara second = builder.reset().append( "second" ).build();
+    assertThat( rtf( first, false ) ).isEqualTo( "{\\s0 {\\b first}}\n" );
+    assertThat( rtf( second, false ) ).isEqualTo( "{\\s0 second}\n" );
+  }
+
+  @Test void builtParagraphCanBeFormattedFurther() {
+    RtfTextPara para = RtfPara.builder().append( "x" ).build().alignCentered();
+    assertThat( rtf( para, false ) ).contains( "\\qc" ).contains( "x" );
+  }
+
+  @Test void emptyBuilderBuildsAnEmptyParagraph() {
+    assertThat( rtf( RtfPara.builder().append( "" ).build(), true ) ).isEqualTo( "\\par" );
+  }
+
+  @Test void runsAreNodesOfAnOrdinaryText() {
+    RtfTextPara para = RtfPara.builder().bold().append( "ERROR" ).plain().append( " disk full" ).build();
+    assertThat( para.text.describe() ).isEqualTo( "[OPEN, WORD b, SPACE, TEXT ERROR, CLOSE, TEXT  disk full]" );
+    assertThat( para.text.freeze().describe() ).startsWith( "[RAW " );
+  }
+
+  @Test void colorsGivenByValueUseTheColorTableOfTheDocument() {
+    RtfHeaderColor red = RtfHeader.color( 255, 0, 0 );
+    RtfTextPara para = RtfPara.builder().color( red ).append( "red" ).plain().append( ' ' )
+                              .color( red ).bold().append( "bold red" ).build();
+    String out = Rtf.rtf().autoColorTable().section( para ).out().toString();
+    assertThat( out ).contains( "{\\colortbl;\\red255\\green0\\blue0;}", "{\\cf1 red} {\\cf1 \\b bold red}" );
+  }
+
+  @Test void negativeFormattingValuesAreRejected() {
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfPara.builder().fontSize( -1 ) );
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfPara.builder().color( -1 ) );
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfPara.builder().color( null ) );
+  }
+}
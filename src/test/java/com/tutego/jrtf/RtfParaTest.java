@@ -74,4 +74,52 @@ class RtfParaTest {
     assertThatExceptionOfType( RtfException.class )
         .isThrownBy( () -> RtfPara.rowWithBackgroundColor( 0, (Object[]) null ) );
   }
+
+  @Test void cachedParagraphsAreRenderedOnceForAllDocuments() {
+    int[] renders = { 0 };
+    RtfPara counting = RtfPara.of( out -> { renders[ 0 ]++; out.append( "counted" ); } );
+    RtfPara terms = RtfPara.cached( RtfPara.p( "Terms" ), counting );
+
+    String first = Rtf.rtf().section( RtfPara.p( "A" ), terms ).toString();
+    String second = Rtf.rtf().section( RtfPara.p( "B" ), terms ).toString();
+
+    assertThat( renders[ 0 ] ).isEqualTo( 1 );
+    assertThat( first ).isEqualTo( Rtf.rtf().section( RtfPara.p( "A" ), RtfPara.p( "Terms" ), counting ).toString() );
+    assertThat( second ).contains( "{\\s0 B\\par}", "Terms", "counted" );
+  }
+
+  @Test void cachedParagraphsAreRenderedAgainForOtherColorIndexes() {
+    RtfHeaderColor red = RtfHeader.color( 0xFF0000 );
+    RtfHeaderColor blue = RtfHeader.color( 0x0000FF );
+    RtfPara cached = RtfPara.cached( RtfPara.p( RtfText.color( blue, "blue" ) ) );
+
+    String blueFirst = Rtf.rtf().autoColorTable().section( cached, RtfPara.p( RtfText.color( red, "red" ) ) ).toString();
+    String redFirst = Rtf.rtf().autoColorTable().section( RtfPara.p( RtfText.color( red, "red" ) ), cached ).toString();
+
+    assertThat( blueFirst ).contains( "{\\cf1 blue}" );
+    assertThat( redFirst ).contains( "{\\cf1 red}", "{\\cf2 blue}" );
+    assertThat( redFirst ).isEqualTo( Rtf.rtf().autoColorTable()
+                                         .section( RtfPara.p( RtfText.color( red, "red" ) ),
+                                                   RtfPara.p( RtfText.color( blue, "blue" ) ) ).toString() );
+  }
+
+  @Test void cachedParagraphsReplayTheirMetrics() {
+    RtfPara cached = RtfPara.cached( RtfPara.p( "a" ), RtfPara.p( "b" ) );
+    Rtf.rtf().section( cached ).toString();
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf.rtf().metrics( metrics ).section( cached ).toString();
+    assertThat( metrics.count( RtfMetrics.Counter.PARAGRAPHS ) ).isEqualTo( 2 );
+  }
+
+  @Test void cachedRejectsNull() {
+    assertThatExceptionOfType( IllegalArgumentException.class ).isThrownBy( () -> RtfPara.cached( (RtfPara) null ) );
+  }
+
+  @Test void frozenParagraphIsWrittenLikeTheParagraph() {
+    RtfPara para = RtfPara.p( "Legal", RtfText.bold( "footer" ) ).alignCentered();
+    RtfPara frozen = para.freeze();
+    assertThat( rtf( frozen, true ) ).isEqualTo( rtf( para, true ) );
+    assertThat( rtf( frozen, false ) ).isEqualTo( rtf( para, false ) );
+    assertThat( frozen.freeze() ).isSameAs( frozen );
+  }
 }
@@ -0,0 +1,145 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.tutego.jrtf.TestSupport.rtf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class RtfResultSetsTest {
+
+  /**
+   * In-memory stand-in for a forward-only result set over the given rows.
+   */
+  static final class FakeResultSet {
+    final String[] labels;
+    final int[] types;
+    final List<Object[]> rows;
+    int cursor = -1;
+    int maxCursor = -1;
+    int fetchSize;
+    boolean wasNull;
+
+    FakeResultSet( String[] labels, int[] types, Object[]... rows ) {
+      this.labels = labels;
+      this.types = types;
+      this.rows = Arrays.asList( rows );
+    }
+
+    ResultSet resultSet() {
+      ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(
+          getClass().getClassLoader(), new Class<?>[]{ ResultSetMetaData.class }, ( proxy, method, args ) -> {
+            switch ( method.getName() ) {
+              case "getColumnCount":       return labels.length;
+              case "getColumnLabel":       return labels[ (Integer) args[ 0 ] - 1 ];
+              case "getColumnType":        return types[ (Integer) args[ 0 ] - 1 ];
+              case "getColumnDisplaySize": return 10;
+              default: throw new UnsupportedOperationException( method.getName() );
+            }
+          } );
+
+      return (ResultSet) Proxy.newProxyInstance(
+          getClass().getClassLoader(), new Class<?>[]{ ResultSet.class }, ( proxy, method, args ) -> {
+            switch ( method.getName() ) {
+              case "getMetaData":  return meta;
+              case "getFetchSize": return fetchSize;
+              case "setFetchSize": fetchSize = (Integer) args[ 0 ]; return null;
+              case "next":
+                maxCursor = Math.max( maxCursor, ++cursor );
+                return cursor < rows.size();
+              case "wasNull":      return wasNull;
+              case "getLong": {
+                Object value = value( (Integer) args[ 0 ] );
+                wasNull = value == null;
+                return value == null ? 0L : ((Number) value).longValue();
+              }
+              case "getDouble": {
+                Object value = value( (Integer) args[ 0 ] );
+                wasNull = value == null;
+                return value == null ? 0.0 : ((Number) value).doubleValue();
+              }
+              case "getBigDecimal":
+              case "getDate":
+              case "getTimestamp":
+                return value( (Integer) args[ 0 ] );
+              case "getString": {
+                Object value = value( (Integer) args[ 0 ] );
+                return value == null ? null : value.toString();
+              }
+              default: throw new UnsupportedOperationException( method.getName() );
+            }
+          } );
+    }
+
+    private Object value( int column ) throws SQLException {
+      if ( cursor < 0 || cursor >= rows.size() )
+        throw new SQLException( "Not on a row" );
+      return rows.get( cursor )[ column - 1 ];
+    }
+  }
+
+  @Test void headerAndRowsAreWrittenWithTypeSpecificFormatting() {
+    FakeResultSet data = new FakeResultSet(
+        new String[]{ "Name", "Qty", "Price", "Ratio", "Day", "At" },
+        new int[]{ Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.DOUBLE, Types.DATE, Types.TIMESTAMP },
+        new Object[]{ "Tea {green}", 3, new BigDecimal( "1E+1" ), 0.5,
+                      Date.valueOf( "2024-02-29" ), Timestamp.valueOf( "2024-02-29 13:45:00" ) },
+        new Object[]{ null, null, null, null, null, null } );
+
+    String out = rtf( RtfResultSets.table( data.resultSet() ), true );
+
+    assertThat( out ).contains( "\\trhdr", "{\\ql Name}\\cell", "{\\qr Qty}\\cell" )
+                     .contains( "{\\ql Tea \\{green\\}}\\cell\n{\\qr 3}\\cell\n{\\qr 10}\\cell\n{\\qr 0.5}\\cell\n"
+                                + "{\\ql 2024-02-29}\\cell\n{\\ql 2024-02-29 13:45:00}\\cell\n" )
+                     .contains( "{\\ql }\\cell\n{\\qr }\\cell\n{\\qr }\\cell\n{\\qr }\\cell\n{\\ql }\\cell\n{\\ql }\\cell\n" );
+    assertThat( data.fetchSize ).isEqualTo( RtfResultSets.DEFAULT_FETCH_SIZE );
+  }
+
+  @Test void floatingPointNumbersAndTimestampsHaveAFixedFormat() {
+    FakeResultSet data = new FakeResultSet(
+        new String[]{ "Value", "At" },
+        new int[]{ Types.DOUBLE, Types.TIMESTAMP },
+        new Object[]{ 12345678.9, Timestamp.valueOf( "2024-02-29 13:45:00" ) },
+        new Object[]{ 0.0000001, Timestamp.valueOf( "2024-02-29 13:45:07.123456789" ) },
+        new Object[]{ 1e21, Timestamp.valueOf( "2024-03-01 00:00:00" ) },
+        new Object[]{ -2.0, null } );
+
+    String out = rtf( RtfResultSets.table( data.resultSet() ), true );
+
+    assertThat( out ).contains( "{\\qr 12345678.9}\\cell\n{\\ql 2024-02-29 13:45:00}\\cell",
+                                "{\\qr 0.0000001}\\cell\n{\\ql 2024-02-29 13:45:07}\\cell",
+                                "{\\qr 1000000000000000000000}\\cell\n{\\ql 2024-03-01 00:00:00}\\cell",
+                                "{\\qr -2}\\cell" )
+                     .doesNotContain( "E7", "E-7", "E21" );
+    assertThat( RtfResultSets.plain( Double.NaN ) ).isEqualTo( "NaN" );
+    assertThat( RtfResultSets.plain( 0.0 ) ).isEqualTo( "0" );
+  }
+
+  @Test void columnWidthsFillTheGivenTableWidth() {
+    FakeResultSet data = new FakeResultSet( new String[]{ "A", "B" }, new int[]{ Types.VARCHAR, Types.VARCHAR } );
+    String out = rtf( RtfResultSets.table( data.resultSet(), 2, RtfUnit.INCH ), true );
+    assertThat( out ).contains( "\\cellx1440\n\\cellx2880\n" );
+  }
+
+  @Test void rowsAreReadOnlyWhileTheDocumentIsWrittenAndOnlyOnce() {
+    FakeResultSet data = new FakeResultSet( new String[]{ "N" }, new int[]{ Types.BIGINT },
+                                            new Object[]{ 1L }, new Object[]{ 2L } );
+    Rtf doc = Rtf.rtf().section( RtfResultSets.table( data.resultSet() ) );
+    assertThat( data.maxCursor ).isEqualTo( -1 );
+
+    assertThat( doc.toString() ).contains( "{\\qr 1}\\cell", "{\\qr 2}\\cell" );
+    assertThat( data.maxCursor ).isEqualTo( 2 );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( doc::toString );
+  }
+}
@@ -0,0 +1,85 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import static com.tutego.jrtf.RtfSizeReport.Category;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RtfSizeReportTest {
+
+  private static long sum( RtfSizeReport report ) {
+    return report.entries().stream().mapToLong( RtfSizeReport.Entry::bytes ).sum();
+  }
+
+  @Test void entriesAddUpToTheWrittenDocument() {
+    Rtf doc = Rtf.rtf().p( "a", RtfText.bold( "b" ) ).newSection().p( "c" );
+    StringBuilder out = new StringBuilder();
+    RtfSizeReport report = doc.outWithSizeReport( out );
+
+    assertThat( out.toString() ).isEqualTo( doc.toString() );
+    assertThat( report.totalBytes() ).isEqualTo( out.length() );
+    assertThat( sum( report ) ).isEqualTo( report.totalBytes() );
+    assertThat( report.bytes( Category.HEADER ) ).isPositive();
+    assertThat( report.bytes( Category.TEXT ) ).isPositive();
+    assertThat( report.sectionBytes() ).hasSize( 2 );
+  }
+
+  @Test void compactDocumentsAreAttributedToTheirParts() {
+    Rtf doc = Rtf.rtf().compact().p( "a", RtfText.bold( "b" ) ).newSection().p( "c" );
+    StringBuilder out = new StringBuilder();
+    RtfSizeReport report = doc.outWithSizeReport( out );
+
+    assertThat( report.totalBytes() ).isEqualTo( out.length() );
+    assertThat( sum( report ) ).isEqualTo( report.totalBytes() );
+    assertThat( report.bytes( Category.HEADER ) ).isPositive();
+    assertThat( report.bytes( Category.TEXT ) ).isPositive();
+    assertThat( report.bytes( Category.OTHER ) ).isLessThan( report.totalBytes() / 2 );
+    assertThat( report.sectionBytes() ).hasSize( 2 ).doesNotContain( 0 );
+  }
+
+  @Test void picturesAndEmbeddedFontsAreNamed() {
+    RtfSizeReport report = Rtf.rtf()
+        .header( RtfHeader.font( "Embedded" ).at( 1 ).embed( new ByteArrayInputStream( new byte[ 50 ] ) ) )
+        .p( RtfText.picture( new ByteArrayInputStream( new byte[ 100 ] ) ).type( RtfPicture.PictureType.PNG ) )
+        .outWithSizeReport( new StringBuilder() );
+
+    assertThat( report.entries() ).anySatisfy( entry -> {
+      assertThat( entry.category() ).isEqualTo( Category.PICTURE );
+      assertThat( entry.name() ).isEqualTo( "picture 1" );
+      assertThat( entry.bytes() ).isGreaterThan( 200 );
+    } );
+    assertThat( report.entries() ).anySatisfy( entry -> {
+      assertThat( entry.category() ).isEqualTo( Category.FONT );
+      assertThat( entry.name() ).isEqualTo( "Embedded" );
+      assertThat( entry.bytes() ).isGreaterThan( 100 );
+    } );
+    assertThat( sum( report ) ).isEqualTo( report.totalBytes() );
+  }
+
+  @Test void tableDefinitionsAndFieldsAreSeparated() {
+    RtfSizeReport report = Rtf.rtf()
+        .section( RtfTable.table().column( 1, RtfUnit.INCH ).header( "h" )
+                          .rows( Arrays.asList( new Object[]{ 1 }, new Object[]{ 2 } ) ),
+                  RtfPara.row( "a", "b" ),
+                  RtfPara.p( RtfText.hyperlink( "https://example.com", RtfPara.p( "link" ) ) ) )
+        .outWithSizeReport( new StringBuilder() );
+
+    assertThat( report.bytes( Category.TABLE_DEFINITION ) ).isPositive();
+    assertThat( report.bytes( Category.FIELD ) ).isPositive();
+    assertThat( sum( report ) ).isEqualTo( report.totalBytes() );
+  }
+
+  @Test void bufferedColorTableIsNotCountedTwice() {
+    Rtf doc = Rtf.rtf().autoColorTable().p( "a" ).newSection().p( "b" );
+    StringBuilder out = new StringBuilder();
+    RtfSizeReport report = doc.outWithSizeReport( out );
+
+    assertThat( report.totalBytes() ).isEqualTo( out.length() );
+    assertThat( sum( report ) ).isEqualTo( report.totalBytes() );
+    assertThat( Arrays.stream( report.sectionBytes() ).sum() ).isLessThan( report.totalBytes() );
+    assertThat( report.toString() ).contains( "SECTION", "section 1" );
+  }
+}
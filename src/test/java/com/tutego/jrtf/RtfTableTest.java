@@ -0,0 +1,167 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.tutego.jrtf.TestSupport.rtf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RtfTableTest {
+
+  private static RtfTable twoColumns() {
+    return RtfTable.table().column( 1, RtfUnit.INCH ).column( 2, RtfUnit.INCH, RtfTable.Alignment.RIGHT );
+  }
+
+  @Test void rowsShareOnePrecomputedRowDefinition() {
+    List<Object[]> rows = Arrays.asList( new Object[]{ "a", 1 }, new Object[]{ "b{", 2 } );
+    assertThat( rtf( twoColumns().rows( rows ), true ) ).isEqualTo(
+        "{\\trowd\\trgaph108\\intbl\n\\cellx1440\n\\cellx4320\n" +
+        "{\\ql a}\\cell\n{\\qr 1}\\cell\n\\row}\n" +
+        "{\\trowd\\trgaph108\\intbl\n\\cellx1440\n\\cellx4320\n" +
+        "{\\ql b\\{}\\cell\n{\\qr 2}\\cell\n\\row}\n" );
+  }
+
+  @Test void headerRowIsRepeatedUnlessDisabled() {
+    String repeated = rtf( twoColumns().header( RtfText.bold( "Name" ), "Price" ), true );
+    assertThat( repeated ).startsWith( "{\\trowd\\trgaph108\\trhdr\\intbl\n" ).contains( "{\\ql {\\b Name}}\\cell" );
+    assertThat( rtf( twoColumns().header( "Name" ).repeatHeader( false ), true ) ).doesNotContain( "\\trhdr" );
+  }
+
+  @Test void bordersAreWrittenForEveryColumn() {
+    String out = rtf( twoColumns().allBorders().header( "x" ), true );
+    assertThat( out ).contains( "\\clbrdrt\\brdrs\\clbrdrl\\brdrs\\clbrdrb\\brdrs\\clbrdrr\\brdrs\\cellx1440\n",
+                                "\\clbrdrr\\brdrs\\cellx4320\n" );
+  }
+
+  @Test void shortRowsLeaveCellsEmpty() {
+    String out = rtf( twoColumns().rows( Arrays.asList( new Object[]{ "a" }, null ) ), true );
+    assertThat( out ).contains( "{\\ql a}\\cell\n{\\qr }\\cell\n", "{\\ql }\\cell\n{\\qr }\\cell\n" );
+  }
+
+  @Test void rowsArePulledWhileTheDocumentIsWritten() {
+    AtomicInteger pulled = new AtomicInteger();
+    Iterator<Object[]> rows = IntStream.range( 0, 1000 ).mapToObj( i -> {
+      pulled.incrementAndGet();
+      return new Object[]{ i };
+    } ).iterator();
+
+    Rtf doc = Rtf.rtf().section( twoColumns().rows( rows ) );
+    assertThat( pulled ).hasValue( 0 );
+    assertThat( doc.toString() ).contains( "{\\ql 999}\\cell" );
+    assertThat( pulled ).hasValue( 1000 );
+  }
+
+  @Test void streamIsClosedAndCanOnlyBeWrittenOnce() {
+    AtomicBoolean closed = new AtomicBoolean();
+    Stream<Object[]> rows = Stream.<Object[]>of( new Object[]{ "x" } ).onClose( () -> closed.set( true ) );
+    Rtf doc = Rtf.rtf().section( twoColumns().rows( rows ) );
+    doc.toString();
+    assertThat( closed ).isTrue();
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( doc::toString );
+  }
+
+  @Test void iterableCanBeWrittenTwice() {
+    Rtf doc = Rtf.rtf().section( twoColumns().rows( Arrays.<Object[]>asList( new Object[]{ "x" } ) ) );
+    assertThat( doc.toString() ).isEqualTo( doc.toString() );
+  }
+
+  @Test void invalidSchemasAndRowsAreRejected() {
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfTable.table().column( 0, RtfUnit.CM ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( () -> rtf( RtfTable.table(), true ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy(
+        () -> rtf( twoColumns().rows( Arrays.<Object[]>asList( new Object[]{ 1, 2, 3 } ) ), true ) );
+  }
+
+  @Test void columnarDataIsWrittenRowByRow() {
+    RtfTable table = RtfTable.table().column( 1, RtfUnit.INCH ).column( 1, RtfUnit.INCH ).column( 1, RtfUnit.INCH )
+                             .columnar( new String[]{ "a&{", null }, new double[]{ 1.5, -2 }, new long[]{ 7, 8 } );
+    String out = rtf( table, true );
+    assertThat( out ).contains( "{\\ql a&\\{}\\cell\n{\\ql 1.50}\\cell\n{\\ql 7}\\cell\n",
+                                "{\\ql }\\cell\n{\\ql -2.00}\\cell\n{\\ql 8}\\cell\n" );
+    assertThat( rtf( table.fractionDigits( 0 ), true ) ).contains( "{\\ql 2}\\cell", "{\\ql -2}\\cell" );
+  }
+
+  @Test void columnarArraysAreValidated() {
+    assertThatIllegalArgumentException().isThrownBy( () -> twoColumns().columnar( new double[ 2 ], new long[ 3 ] ) );
+    assertThatIllegalArgumentException().isThrownBy( () -> twoColumns().columnar( new Object[]{ "x" } ) );
+    assertThatIllegalArgumentException().isThrownBy( () -> twoColumns().fractionDigits( 10 ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy(
+        () -> rtf( twoColumns().columnar( new int[ 1 ], new int[ 1 ], new int[ 1 ] ), true ) );
+  }
+
+  private static int[] cellBoundaries( String rtf ) {
+    Matcher matcher = Pattern.compile( "\\\\cellx(\\d+)" ).matcher( rtf.substring( 0, rtf.indexOf( "\\cell\n" ) ) );
+    List<Integer> boundaries = new ArrayList<>();
+    while ( matcher.find() )
+      boundaries.add( Integer.parseInt( matcher.group( 1 ) ) );
+    return boundaries.stream().mapToInt( Integer::intValue ).toArray();
+  }
+
+  @Test void autoSizedColumnsAreAsWideAsTheirWidestSampledValue() {
+    List<Object[]> rows = Arrays.asList( new Object[]{ "a", "short" },
+                                         new Object[]{ "b", "a considerably longer value in the second column" } );
+    int[] boundaries = cellBoundaries( rtf( RtfTable.table().column().column().rows( rows ), true ) );
+    assertThat( boundaries ).hasSize( 2 );
+    assertThat( boundaries[ 1 ] - boundaries[ 0 ] ).isGreaterThan( 4 * boundaries[ 0 ] );
+  }
+
+  @Test void autoSizedColumnsMeasureTheFontSizeOfTheCells() {
+    List<Object[]> small = Collections.singletonList( new Object[]{ "some value" } );
+    List<Object[]> large = Collections.singletonList( new Object[]{ RtfText.fontSize( 48, "some value" ) } );
+    int smallWidth = cellBoundaries( Rtf.rtf().section( RtfTable.table().column().rows( small ) ).toString() )[ 0 ];
+    int largeWidth = cellBoundaries( Rtf.rtf().section( RtfTable.table().column().rows( large ) ).toString() )[ 0 ];
+    assertThat( largeWidth ).isGreaterThan( smallWidth + smallWidth / 2 );
+  }
+
+  @Test void autoSizedColumnsIgnoreFieldInstructionsAndPictureData() {
+    List<Object[]> plain = Collections.singletonList( new Object[]{ "link" } );
+    List<Object[]> link = Collections.singletonList( new Object[]{
+        RtfText.hyperlink( "https://example.com/" + String.join( "", Collections.nCopies( 50, "path/" ) ), RtfPara.p( "link" ) ) } );
+    List<Object[]> picture = Collections.singletonList( new Object[]{
+        RtfText.text( RtfText.picture( new ByteArrayInputStream( new byte[ 5000 ] ) ).type( RtfPicture.PictureType.PNG ), "link" ) } );
+    int plainWidth = cellBoundaries( Rtf.rtf().section( RtfTable.table().column().rows( plain ) ).toString() )[ 0 ];
+    int linkWidth = cellBoundaries( Rtf.rtf().section( RtfTable.table().column().rows( link ) ).toString() )[ 0 ];
+    int pictureWidth = cellBoundaries( Rtf.rtf().section( RtfTable.table().column().rows( picture ) ).toString() )[ 0 ];
+    assertThat( linkWidth ).isEqualTo( plainWidth );
+    assertThat( pictureWidth ).isEqualTo( plainWidth );
+  }
+
+  @Test void autoSizedColumnsMixWithFixedColumns() {
+    String out = rtf( RtfTable.table().column( 1, RtfUnit.INCH ).column().header( "Title" ), true );
+    int[] boundaries = cellBoundaries( out );
+    assertThat( boundaries[ 0 ] ).isEqualTo( 1440 );
+    assertThat( boundaries[ 1 ] ).isGreaterThan( 1440 );
+  }
+
+  @Test void sampledRowsOfAStreamAreWrittenInOrder() {
+    Stream<Object[]> rows = IntStream.range( 0, 5 ).mapToObj( i -> new Object[]{ "r" + i } );
+    String out = rtf( RtfTable.table().column().sampleRows( 2 ).rows( rows ), true );
+    assertThat( out ).containsSubsequence( "r0", "r1", "r2", "r3", "r4" );
+    assertThat( out.split( "\\\\row}", -1 ) ).hasSize( 6 );
+  }
+
+  @Test void maxWidthNarrowsAutoSizedColumns() {
+    List<Object[]> rows = Collections.singletonList( new Object[]{ "a very long value that would never fit into two inches",
+                                                                   "another very long value for the second column" } );
+    int[] boundaries = cellBoundaries( rtf( RtfTable.table().column().column().maxWidth( 2, RtfUnit.INCH ).rows( rows ), true ) );
+    assertThat( boundaries[ 1 ] ).isLessThanOrEqualTo( 2880 );
+  }
+
+  @Test void sampleRowsMustNotBeNegative() {
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfTable.table().sampleRows( -1 ) );
+  }
+}
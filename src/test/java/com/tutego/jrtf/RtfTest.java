@@ -2,7 +2,18 @@ package com.tutego.jrtf;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.Writer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -81,4 +92,249 @@ class RtfTest {
     assertThat( out.indexOf( "First" ) ).isLessThan( out.indexOf( "\\sect" ) );
     assertThat( out.indexOf( "\\sect" ) ).isLessThan( out.indexOf( "Second" ) );
   }
+
+  @Test void everyParagraphIsASectionByDefault() {
+    String out = Rtf.rtf().p( "a" ).p( "b" ).toString();
+    assertThat( out ).containsSubsequence( "a", "\\sect\n", "b" );
+  }
+
+  @Test void paragraphsAfterAFormattedSectionGetTheirOwnSectionByDefault() {
+    String out = Rtf.rtf()
+                    .section( RtfSectionFormatAndHeaderFooter.columns( 2 ), RtfPara.p( "First" ) )
+                    .p( "Second" )
+                    .p( "Third" )
+                    .toString();
+    assertThat( out.split( "\\\\sect\n", -1 ) ).hasSize( 3 );
+    assertThat( out ).containsSubsequence( "\\cols2", "First", "\\sect\n", "Second", "\\sect\n", "Third" );
+    assertThat( out.substring( out.indexOf( "First" ) ) ).doesNotContain( "\\cols" );
+  }
+
+  @Test void paragraphsAfterNewSectionAreAppendedByDefault() {
+    String out = Rtf.rtf().p( "a" ).newSection().p( "b" ).p( "c" ).toString();
+    assertThat( out.split( "\\\\sect\n", -1 ) ).hasSize( 2 );
+    assertThat( out ).containsSubsequence( "a", "\\sect\n", "b", "c" );
+  }
+
+  @Test void paragraphsAreAppendedToTheCurrentSection() {
+    Rtf doc = Rtf.rtf().coalesceParagraphs();
+    for ( int i = 0; i < 1000; i++ )
+      doc.p( "line " + i );
+    String out = doc.toString();
+    assertThat( out ).contains( "line 0", "line 999" ).doesNotContain( "\\sect" );
+  }
+
+  @Test void paragraphsFollowTheLastSection() {
+    String out = Rtf.rtf()
+                    .coalesceParagraphs()
+                    .section( RtfSectionFormatAndHeaderFooter.columns( 2 ), RtfPara.p( "First" ) )
+                    .p( "Second" )
+                    .newSection()
+                    .p( "Third" )
+                    .p( "Fourth" )
+                    .toString();
+    assertThat( out.split( "\\\\sect\n", -1 ) ).hasSize( 2 );
+    assertThat( out ).containsSubsequence( "First", "Second", "\\sect\n", "Third", "Fourth" );
+  }
+
+  @Test void newSectionWithFormattingStartsAFormattedSection() {
+    String out = Rtf.rtf().p( "a" ).newSection( RtfSectionFormatAndHeaderFooter.columns( 2 ) ).p( "b" ).toString();
+    assertThat( out ).containsSubsequence( "a", "\\sect\n", "\\cols2", "b" );
+  }
+
+  @Test void suppliedParagraphsAreGeneratedForEveryOutputAndTheStreamIsClosed() {
+    AtomicInteger calls = new AtomicInteger();
+    AtomicBoolean closed = new AtomicBoolean();
+    Rtf doc = Rtf.rtf().section( () -> {
+      calls.incrementAndGet();
+      return IntStream.range( 0, 3 ).mapToObj( i -> RtfPara.p( "row " + i ) ).onClose( () -> closed.set( true ) );
+    } );
+    assertThat( calls ).hasValue( 0 );
+    assertThat( doc.toString() ).containsSubsequence( "row 0\\par", "row 1\\par", "row 2\\par" );
+    assertThat( closed ).isTrue();
+    doc.toString();
+    assertThat( calls ).hasValue( 2 );
+  }
+
+  @Test void iterableParagraphsAreReadWhenTheDocumentIsWritten() {
+    List<RtfPara> paragraphs = new ArrayList<>();
+    Iterable<RtfPara> view = paragraphs::iterator;
+    Rtf doc = Rtf.rtf().coalesceParagraphs().section( view ).p( "after" );
+    paragraphs.add( RtfPara.p( "late" ) );
+    assertThat( doc.toString() ).containsSubsequence( "late", "after" ).doesNotContain( "\\sect" );
+  }
+
+  @Test void suppliedStreamMustNotContainNull() {
+    Rtf doc = Rtf.rtf().section( () -> Stream.of( RtfPara.p( "a" ), null ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( doc::toString );
+  }
+
+  @Test void compactDocumentHasNoLineBreaksAndNoDefaultStyle() {
+    assertThat( Rtf.rtf().compact().p( "Hi" ).toString() )
+        .isEqualTo( "{\\rtf1\\ansi\\deff0{\\fonttbl{\\f0 Times New Roman;}}{\\colortbl;}{Hi\\par}}" );
+  }
+
+  @Test void compactDocumentMergesRunsWithIdenticalFormatting() {
+    String out = Rtf.rtf().compact().p( RtfText.bold( "a" ), RtfText.bold( "b" ), RtfText.italic( "c" ) ).toString();
+    assertThat( out ).contains( "{\\b ab}{\\i c}" );
+  }
+
+  @Test void compactDocumentKeepsNonDefaultStyleAndShading() {
+    RtfHeaderStyle style = RtfHeaderStyle.builder( "S1" ).basedOn( RtfHeaderStyle.NORMAL ).build();
+    String out = Rtf.rtf().compact().headerStyles( RtfHeaderStyle.NORMAL, style )
+                    .section( RtfPara.p( style, "x" ), RtfPara.rowWithBackgroundColor( 2, "a" ),
+                              RtfPara.row( "b" ) )
+                    .toString();
+    assertThat( out ).contains( "{\\s1 x\\par}", "\\clcbpat2\\cellx1440" )
+                     .doesNotContain( "\\clcbpat0" );
+  }
+
+  @Test void colorByValueResolvesToTheRegisteredIndex() {
+    String out = Rtf.rtf().header( RtfHeader.color( 0, 0, 255 ).at( 3 ), RtfHeader.color( 0x0000FF ).at( 5 ) )
+                    .p( RtfText.color( RtfHeader.color( 0, 0, 255 ), "x" ) ).toString();
+    assertThat( out ).contains( "{\\cf3 x}" );
+  }
+
+  @Test void unregisteredColorByValueIsRejectedWithoutAutoColorTable() {
+    assertThatExceptionOfType( RtfException.class )
+        .isThrownBy( () -> Rtf.rtf().p( RtfText.color( RtfHeader.color( 0x123456 ), "x" ) ).toString() )
+        .withMessageContaining( "#123456" );
+  }
+
+  @Test void placedColorsOfOtherDocumentsAreLookedUpByValue() {
+    RtfHeaderColor placed = RtfHeader.color( 0x00FF00 ).at( 3 );
+    Rtf.rtf().header( placed ).p( RtfText.color( placed, "g" ) ).toString();
+
+    String out = Rtf.rtf().autoColorTable()
+                    .header( RtfHeader.color( 255, 0, 0 ).at( 1 ) )
+                    .p( RtfText.color( placed, "g" ) )
+                    .toString();
+    assertThat( out ).contains( "{\\colortbl;\\red255\\green0\\blue0;\\red0\\green255\\blue0;}", "{\\cf2 g}" )
+                     .doesNotContain( "\\cf3" );
+    assertThatExceptionOfType( RtfException.class )
+        .isThrownBy( () -> Rtf.rtf().header( RtfHeader.color( 0, 0, 255 ).at( 3 ) ).p( RtfText.color( placed, "g" ) ).toString() );
+  }
+
+  @Test void autoColorTableInternsColorsInOrderOfFirstUse() {
+    String out = Rtf.rtf().autoColorTable()
+                    .header( RtfHeader.color( 255, 0, 0 ).at( 1 ) )
+                    .section( RtfPara.p( RtfText.color( RtfHeader.color( 0x00FF00 ), "g" ),
+                                         RtfText.color( RtfHeader.color( 0xFF0000 ), "r" ),
+                                         RtfText.backgroundcolor( RtfHeader.color( 0x00FF00 ), "g" ) ),
+                              RtfPara.p( "p" ).backgroundColor( RtfHeader.color( 0x0000FF ) ),
+                              RtfPara.row( RtfCell.cell( "c" ).backgroundColor( RtfHeader.color( 0x00FF00 ) ) ) )
+                    .toString();
+    assertThat( out ).contains( "{\\colortbl;\\red255\\green0\\blue0;\\red0\\green255\\blue0;\\red0\\green0\\blue255;}",
+                                "{\\cf2 g}{\\cf1 r}{\\cb2 g}", "\\shading10000\\cbpat3", "\\clcbpat2\\cellx1440" );
+    assertThat( out.indexOf( "\\colortbl" ) ).isLessThan( out.indexOf( "\\cf2" ) );
+  }
+
+  @Test void autoColorTableInternsThemeColorsOnce() {
+    RtfHeaderColor accent = RtfHeaderColor.theme( RtfHeaderColor.ThemeColor.ACCENT_1 );
+    String out = Rtf.rtf().autoColorTable().p( RtfText.color( accent, "a" ), RtfText.color( accent, "b" ) ).toString();
+    assertThat( out ).contains( "{\\colortbl;\\caccentone;}", "{\\cf1 a}{\\cf1 b}" );
+  }
+
+  @Test void autoColorTableWorksInCompactMode() {
+    String out = Rtf.rtf().autoColorTable().compact().p( RtfText.color( RtfHeader.color( 0x010203 ), "x" ) ).toString();
+    assertThat( out ).isEqualTo( "{\\rtf1\\ansi\\deff0{\\fonttbl{\\f0 Times New Roman;}}"
+                                 + "{\\colortbl;\\red1\\green2\\blue3;}{{\\cf1 x}\\par}}" );
+  }
+
+  @Test void digestIsTheSha256OfTheOutput() throws Exception {
+    // the generator is written as it is, so the output is not pure ASCII
+    Rtf doc = Rtf.rtf().generator( "G\u00e9n\u00e9rateur" ).p( "digest \u00e4" );
+    StringBuilder out = new StringBuilder();
+    byte[] digest = doc.outWithDigest( out );
+    byte[] expected = MessageDigest.getInstance( "SHA-256" ).digest( out.toString().getBytes( Rtf.charset ) );
+    assertThat( digest ).hasSize( 32 ).isEqualTo( expected );
+    assertThat( doc.digest() ).isEqualTo( digest );
+  }
+
+  @Test void sameDocumentsHaveTheSameDigest() {
+    byte[] first = Rtf.rtf().p( "same" ).digest();
+    assertThat( Rtf.rtf().p( "same" ).digest() ).isEqualTo( first );
+    assertThat( Rtf.rtf().p( "other" ).digest() ).isNotEqualTo( first );
+  }
+
+  @Test void frozenSnapshotDoesNotSeeLaterChangesAndRejectsChanges() {
+    Rtf doc = Rtf.rtf().p( "first" );
+    Rtf frozen = doc.freeze();
+    doc.p( "second" ).newSection().p( "third" );
+
+    assertThat( frozen.toString() ).isEqualTo( Rtf.rtf().p( "first" ).toString() );
+    assertThat( frozen.freeze() ).isSameAs( frozen );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( () -> frozen.p( "x" ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( () -> frozen.section( RtfPara.p( "x" ) ) );
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( frozen::compact );
+  }
+
+  @Test void frozenSnapshotCanBeWrittenByManyThreads() throws Exception {
+    byte[] png = new byte[ 64 ];
+    png[ 1 ] = 'P'; png[ 2 ] = 'N'; png[ 3 ] = 'G';
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf frozen = Rtf.rtf().metrics( metrics )
+                    .header( RtfHeader.font( "Embedded" ).at( 1 ).embed( new ByteArrayInputStream( new byte[ 100 ] ) ) )
+                    .p( RtfText.picture( new ByteArrayInputStream( png ) ).type( RtfPicture.PictureType.AUTOMATIC ) )
+                    .p( "text" )
+                    .freeze();
+
+    ExecutorService pool = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<String>> outputs = new ArrayList<>();
+      for ( int i = 0; i < 32; i++ )
+        outputs.add( pool.submit( frozen::toString ) );
+      String expected = outputs.get( 0 ).get();
+      for ( Future<String> output : outputs )
+        assertThat( output.get() ).isEqualTo( expected );
+      assertThat( expected ).contains( "\\pngblip", "{\\*\\fontfile" );
+    }
+    finally {
+      pool.shutdown();
+    }
+    assertThat( metrics.count( RtfMetrics.Counter.PICTURE_BYTES ) ).isEqualTo( 64 );
+    assertThat( metrics.count( RtfMetrics.Counter.FONT_BYTES ) ).isEqualTo( 100 );
+  }
+
+  @Test void variantSharesSectionsAndReplacesOnlyWhatIsDifferent() {
+    Rtf manual = Rtf.rtf().header( RtfHeader.color( 0x003366 ).at( 1 ) )
+                    .section( RtfPara.p( "Intro" ) )
+                    .section( RtfPara.p( "Chapter" ) );
+    String original = manual.toString();
+
+    Rtf german = manual.variant().replaceSection( 0, RtfPara.p( "Einleitung" ) )
+                       .replaceHeader( RtfHeader.color( 0x990000 ).at( 1 ) );
+
+    assertThat( manual.toString() ).isEqualTo( original );
+    assertThat( german.toString() ).isEqualTo( Rtf.rtf().header( RtfHeader.color( 0x990000 ).at( 1 ) )
+                                                  .section( RtfPara.p( "Einleitung" ) )
+                                                  .section( RtfPara.p( "Chapter" ) ).toString() );
+  }
+
+  @Test void appendingToASharedSectionCopiesIt() {
+    Rtf manual = Rtf.rtf().p( "a" );
+    Rtf variant = manual.variant().p( "variant" );
+    manual.p( "original" );
+
+    assertThat( variant.toString() ).contains( "variant" ).doesNotContain( "original" );
+    assertThat( manual.toString() ).contains( "original" ).doesNotContain( "variant" );
+  }
+
+  @Test void frozenSnapshotSharesSectionsWithTheOriginal() {
+    Rtf doc = Rtf.rtf().p( "a" );
+    Rtf frozen = doc.freeze();
+    doc.p( "b" );
+    assertThat( frozen.toString() ).doesNotContain( "b\\par" );
+    assertThat( frozen.variant().p( "c" ).toString() ).contains( "a\\par", "c\\par" ).doesNotContain( "b\\par" );
+  }
+
+  @Test void replaceHeaderReplacesFontWithTheSameNumber() {
+    Rtf doc = Rtf.rtf().header( RtfHeader.font( "Arial" ).at( 1 ) ).p( "x" )
+                 .variant().replaceHeader( RtfHeader.font( "Courier" ).at( 1 ) );
+    assertThat( doc.toString() ).contains( "Courier" ).doesNotContain( "Arial" );
+  }
+
+  @Test void replaceSectionRejectsUnknownSections() {
+    assertThatExceptionOfType( IllegalArgumentException.class )
+        .isThrownBy( () -> Rtf.rtf().p( "a" ).replaceSection( 1, RtfPara.p( "b" ) ) );
+  }
 }
@@ -2,8 +2,13 @@ package com.tutego.jrtf;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.tutego.jrtf.TestSupport.rtf;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 class RtfTextTest {
@@ -181,4 +186,107 @@ class RtfTextTest {
     assertThat( rtf( RtfText.hyperlinkToBookmark( "TARGET", RtfPara.p( "link" ) ) ) )
         .isEqualTo( "{\\field{\\*\\fldinst{HYPERLINK \\\\l \"TARGET\"}}{\\fldrslt{\\ul {\\s0 link}\n}}}" );
   }
+
+  @Test void nestedFormattingIsFlattenedIntoOneNodeSequence() {
+    RtfText text = RtfText.bold( RtfText.italic( RtfText.text( "a", RtfText.tab(), "b" ) ) );
+    assertThat( text.describe() )
+        .isEqualTo( "[OPEN_WORD b, OPEN_WORD i, TEXT a, CTRL tab, TEXT b, CLOSE, CLOSE]" );
+    assertThat( rtf( text ) ).isEqualTo( "{\\b {\\i a\\tab\nb}}" );
+  }
+
+  @Test void deeplyNestedFormattingRendersWithoutRecursion() {
+    RtfText text = RtfText.text( "x" );
+    for ( int i = 0; i < 10_000; i++ )
+      text = RtfText.fontSize( 20, text );
+    String out = rtf( text );
+    assertThat( out ).startsWith( "{\\fs20 {\\fs20 " ).contains( " x}}" ).endsWith( "}}" ).hasSize( 10_000 * 8 + 1 );
+  }
+
+  @Test void repeatedConcatenationReferencesLargerTexts() {
+    RtfText text = RtfText.text( "x" );
+    for ( int i = 0; i < 100_000; i++ )
+      text = RtfText.text( text, "y" );
+    assertThat( text.describe() ).startsWith( "[TEXT x, TEXT y, TEXT y" ).endsWith( "TEXT y]" );
+    assertThat( text.size() ).isEqualTo( 100_001 );
+    assertThat( rtf( text ) ).hasSize( 100_001 ).startsWith( "xyy" );
+    assertThat( text.freeze().describe() ).isEqualTo( "[RAW " + rtf( text ) + "]" );
+  }
+
+  @Test void paragraphInTextIsRejectedWhenTheTextIsBuilt() {
+    assertThatExceptionOfType( RtfException.class ).isThrownBy( () -> RtfText.bold( RtfPara.p( "x" ) ) );
+  }
+
+  @Test void numberUsesPatternAndLocaleSymbols() {
+    assertThat( rtf( RtfText.number( 1234567.891, "#,##0.00", Locale.GERMANY ) ) ).isEqualTo( "1.234.567,89" );
+    assertThat( rtf( RtfText.number( 1234567.891, "#,##0.00", Locale.US ) ) ).isEqualTo( "1,234,567.89" );
+    assertThat( rtf( RtfText.number( 42L, "0000", Locale.US ) ) ).isEqualTo( "0042" );
+  }
+
+  @Test void numberEscapesNonAsciiGroupingSeparator() {
+    assertThat( rtf( RtfText.number( 1234, "#,##0", Locale.FRANCE ) ) ).startsWith( "1\\u" ).endsWith( "234" );
+  }
+
+  @Test void numberRejectsInvalidPatternEagerly() {
+    assertThatIllegalArgumentException().isThrownBy( () -> RtfText.number( 1.0, "#.#.#", Locale.US ) );
+  }
+
+  @Test void numberFormatIsCachedPerPatternAndLocale() {
+    assertThat( RtfFormats.numberFormat( "#,##0.00", Locale.US ) ).isSameAs( RtfFormats.numberFormat( "#,##0.00", Locale.US ) );
+    assertThat( RtfFormats.numberFormat( "#,##0.00", Locale.US ) ).isNotSameAs( RtfFormats.numberFormat( "#,##0.00", Locale.GERMANY ) );
+    assertThat( RtfFormats.dateFormat( "dd.MM.yyyy", Locale.US ) ).isSameAs( RtfFormats.dateFormat( "dd.MM.yyyy", Locale.US ) );
+  }
+
+  @Test void numbersAndDatesAreFlattenedAndFrozen() {
+    RtfText text = RtfText.text( "Total ", RtfText.number( 1234.5, "#,##0.00", Locale.US ), " on ",
+                                 RtfText.date( LocalDate.of( 2024, 3, 1 ), "yyyy-MM-dd", Locale.US ) );
+    assertThat( text.describe() ).isEqualTo( "[TEXT Total , FORMAT 1234.5, TEXT  on , FORMAT 2024-03-01]" );
+    assertThat( text.freeze().describe() ).isEqualTo( "[RAW Total 1,234.50 on 2024-03-01]" );
+  }
+
+  @Test void numberFormattersAreSharedBetweenThreads() throws Exception {
+    RtfFormats.NumberPattern pattern = RtfFormats.numberFormat( "0.000", Locale.US );
+    RtfText text = RtfText.number( 1.5, "0.000", Locale.US );
+    AtomicInteger wrong = new AtomicInteger();
+    Thread[] threads = new Thread[ 8 ];
+    for ( int t = 0; t < threads.length; t++ ) {
+      threads[ t ] = new Thread( () -> {
+        for ( int i = 0; i < 1000; i++ )
+          if ( !rtf( text ).equals( "1.500" ) )
+            wrong.incrementAndGet();
+      } );
+      threads[ t ].start();
+    }
+    for ( Thread thread : threads )
+      thread.join();
+    assertThat( wrong ).hasValue( 0 );
+    assertThat( pattern.idleFormatters() ).isBetween( 1, RtfFormats.MAX_IDLE_FORMATTERS );
+  }
+
+  @Test void dateUsesPatternAndLocale() {
+    assertThat( rtf( RtfText.date( LocalDate.of( 2024, 3, 1 ), "d. MMMM yyyy", Locale.GERMANY ) ) )
+        .isEqualTo( "1. M\\u228\\'e4rz 2024" );
+    assertThat( rtf( RtfText.date( LocalDate.of( 2024, 3, 1 ), "yyyy-MM-dd", Locale.US ) ) ).isEqualTo( "2024-03-01" );
+  }
+
+  @Test void freezeRendersEverythingThatDoesNotDependOnTheDocument() {
+    RtfText text = RtfText.text( RtfText.bold( "Disclaimer \u00e4" ), " ", RtfText.italic( "text" ) );
+    RtfText frozen = text.freeze();
+
+    assertThat( rtf( frozen ) ).isEqualTo( rtf( text ) );
+    assertThat( frozen.describe() ).isEqualTo( "[RAW " + rtf( text ) + "]" );
+    assertThat( frozen.freeze() ).isSameAs( frozen );
+  }
+
+  @Test void freezeKeepsColorsByValue() {
+    RtfHeaderColor red = RtfHeader.color( 0xFF0000 );
+    RtfText frozen = RtfText.text( "a", RtfText.color( red, "b" ), "c" ).freeze();
+    assertThat( frozen.describe() ).startsWith( "[RAW a, OPEN_COLOR, RAW b}c" );
+    assertThat( Rtf.rtf().autoColorTable().p( frozen ).toString() ).contains( "{\\cf1 b}c" );
+  }
+
+  @Test void frozenTextsStillCountTheirRuns() {
+    RtfMetricsAggregator metrics = new RtfMetricsAggregator();
+    Rtf.rtf().metrics( metrics ).p( RtfText.text( "a", RtfText.bold( "b" ) ).freeze() ).toString();
+    assertThat( metrics.count( RtfMetrics.Counter.RUNS ) ).isEqualTo( 2 );
+  }
 }
@@ -0,0 +1,104 @@
+package com.tutego.jrtf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RtfZipTest {
+
+  private static String read( InputStream in ) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[ 4096 ];
+    for ( int len; (len = in.read( buffer )) > 0; )
+      result.write( buffer, 0, len );
+    return new String( result.toByteArray(), Rtf.charset );
+  }
+
+  private static Rtf document( int paragraphs ) {
+    Rtf doc = Rtf.rtf().generator( "Générateur" );
+    for ( int i = 0; i < paragraphs; i++ )
+      doc.p( "Paragraph ", i );
+    return doc;
+  }
+
+  @Test void gzipContainsTheDocument() throws IOException {
+    Rtf doc = document( 1000 );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    doc.outGzip( out );
+
+    String expected = doc.toString();
+    assertThat( out.size() ).isLessThan( expected.length() / 5 );
+    assertThat( read( new GZIPInputStream( new ByteArrayInputStream( out.toByteArray() ) ) ) ).isEqualTo( expected );
+  }
+
+  @Test void levelChangesTheSize() {
+    Rtf doc = document( 1000 );
+    ByteArrayOutputStream stored = new ByteArrayOutputStream();
+    ByteArrayOutputStream best = new ByteArrayOutputStream();
+    doc.outGzip( stored, Deflater.NO_COMPRESSION );
+    doc.outGzip( best, Deflater.BEST_COMPRESSION );
+
+    assertThat( stored.size() ).isGreaterThan( doc.toString().length() );
+    assertThat( best.size() ).isLessThan( stored.size() );
+    assertThatIllegalArgumentException().isThrownBy( () -> doc.outGzip( best, 10 ) );
+  }
+
+  @Test void zipContainsEveryDocumentAsEntry() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try ( RtfZip zip = RtfZip.zip( out ).level( Deflater.BEST_SPEED ) ) {
+      zip.entry( "a.rtf", document( 1 ) ).entry( "dir/b.rtf", document( 2 ) );
+      assertThat( zip.entries() ).isEqualTo( 2 );
+    }
+
+    try ( ZipInputStream in = new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) ) ) {
+      ZipEntry entry = in.getNextEntry();
+      assertThat( entry.getName() ).isEqualTo( "a.rtf" );
+      assertThat( read( in ) ).isEqualTo( document( 1 ).toString() );
+      entry = in.getNextEntry();
+      assertThat( entry.getName() ).isEqualTo( "dir/b.rtf" );
+      assertThat( read( in ) ).isEqualTo( document( 2 ).toString() );
+      assertThat( in.getNextEntry() ).isNull();
+    }
+  }
+
+  @Test void duplicateEntriesFail() {
+    try ( RtfZip zip = RtfZip.zip( new ByteArrayOutputStream() ) ) {
+      zip.entry( "a.rtf", document( 1 ) );
+      assertThatExceptionOfType( RtfException.class ).isThrownBy( () -> zip.entry( "a.rtf", document( 1 ) ) );
+    }
+  }
+
+  @Test void failedEntryDoesNotSpillIntoTheNextOne( @TempDir Path directory ) throws IOException {
+    Rtf bad = document( 5000 ).limits( RtfLimits.none().maxBytes( 20_000 ) );
+    Path archive = directory.resolve( "letters.zip" );
+    try ( RtfZip zip = RtfZip.zip( Files.newOutputStream( archive ) ) ) {
+      zip.entry( "first.rtf", document( 1 ) );
+      assertThatExceptionOfType( RtfAbortedException.class ).isThrownBy( () -> zip.entry( "bad.rtf", bad ) );
+      zip.entry( "good.rtf", document( 2 ) );
+      assertThat( zip.entries() ).isEqualTo( 2 );
+    }
+
+    try ( ZipFile zip = new ZipFile( archive.toFile() ) ) {
+      assertThat( read( zip.getInputStream( zip.getEntry( "first.rtf" ) ) ) ).isEqualTo( document( 1 ).toString() );
+      assertThat( read( zip.getInputStream( zip.getEntry( "good.rtf" ) ) ) ).isEqualTo( document( 2 ).toString() );
+      assertThat( document( 5000 ).toString() ).startsWith( read( zip.getInputStream( zip.getEntry( "bad.rtf" ) ) ) );
+      assertThat( zip.getEntry( "bad.rtf" ).getComment() ).isEqualTo( RtfZip.INCOMPLETE_COMMENT );
+      assertThat( zip.getEntry( "good.rtf" ).getComment() ).isNull();
+    }
+  }
+}
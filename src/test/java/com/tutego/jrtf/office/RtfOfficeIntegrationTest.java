@@ -127,6 +127,22 @@ class RtfOfficeIntegrationTest {
         .contains( MARKER );
   }
 
+  @Test
+  void compactDocumentRendersTheSameTextAsTheRegularDocument() throws Exception {
+    Path regular = tempDir.resolve( "regular.rtf" );
+    Path compact = tempDir.resolve( "compact.rtf" );
+    writeDocument( buildKitchenSinkDocument(), regular );
+    writeDocument( buildKitchenSinkDocument().compact(), compact );
+
+    assertThat( Files.size( compact ) ).isLessThan( Files.size( regular ) );
+
+    ConversionResult regularResult = convertToPlainText( regular, tempDir.resolve( "out-regular" ) );
+    ConversionResult compactResult = convertToPlainText( compact, tempDir.resolve( "out-compact" ) );
+
+    assertThat( compactResult.exitCode ).isZero();
+    assertThat( compactResult.outputText ).isEqualTo( regularResult.outputText );
+  }
+
   /**
    * Control test proving the detection mechanism in {@link #kitchenSinkDocumentIsAcceptedByOffice()}
    * actually detects something: take the same well-formed document and cut it off well before any